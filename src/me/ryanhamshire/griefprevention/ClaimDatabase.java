@@ -0,0 +1,318 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.ClaimData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.ClaimDataNode;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.SubDivisionDataNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.service.sql.SqlService;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+// claims kept in an embedded h2 database file
+//
+// gp_claim holds the claim document, compressed the same as region records, which is what claims are loaded from
+// next to it the claim is spread over indexed columns and tables so claims can be looked up by world, owner, type and
+// last activity with sql: gp_subdivision, gp_trust and gp_flag hold the subdivisions, trusted players and set flags
+// area lookups are left to the claim index of the loaded world
+// every table is keyed by the top level claim id, a save replaces all rows of the claim through the database writer
+class ClaimDatabase {
+
+    private static final String[] CREATE_TABLES = {
+            "CREATE TABLE IF NOT EXISTS gp_claim (id VARCHAR(36) PRIMARY KEY, world VARCHAR(36) NOT NULL, owner VARCHAR(36), claim_type VARCHAR(16), "
+                    + "lesser_x INT, lesser_y INT, lesser_z INT, greater_x INT, greater_y INT, greater_z INT, date_created VARCHAR(64), "
+                    + "last_active TIMESTAMP, document BLOB)",
+            "CREATE INDEX IF NOT EXISTS gp_claim_world ON gp_claim (world)",
+            "CREATE INDEX IF NOT EXISTS gp_claim_owner ON gp_claim (owner)",
+            "CREATE INDEX IF NOT EXISTS gp_claim_last_active ON gp_claim (world, last_active)",
+            "CREATE INDEX IF NOT EXISTS gp_claim_type ON gp_claim (world, claim_type)",
+            "CREATE TABLE IF NOT EXISTS gp_subdivision (id VARCHAR(36) PRIMARY KEY, claim_id VARCHAR(36) NOT NULL, lesser_x INT, lesser_y INT, "
+                    + "lesser_z INT, greater_x INT, greater_y INT, greater_z INT, last_active TIMESTAMP)",
+            "CREATE INDEX IF NOT EXISTS gp_subdivision_claim ON gp_subdivision (claim_id)",
+            "CREATE TABLE IF NOT EXISTS gp_trust (claim_id VARCHAR(36) NOT NULL, target_id VARCHAR(36) NOT NULL, player VARCHAR(36) NOT NULL, "
+                    + "trust_type VARCHAR(16) NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS gp_trust_claim ON gp_trust (claim_id)",
+            "CREATE INDEX IF NOT EXISTS gp_trust_player ON gp_trust (player)",
+            "CREATE TABLE IF NOT EXISTS gp_flag (claim_id VARCHAR(36) NOT NULL, target_id VARCHAR(36) NOT NULL, flag VARCHAR(64) NOT NULL, "
+                    + "flag_value CLOB)",
+            "CREATE INDEX IF NOT EXISTS gp_flag_claim ON gp_flag (claim_id)"
+    };
+
+    private static final String DELETE_CLAIM = "DELETE FROM gp_claim WHERE id = ?";
+    private static final String INSERT_CLAIM = "INSERT INTO gp_claim (id, world, owner, claim_type, lesser_x, lesser_y, lesser_z, greater_x, "
+            + "greater_y, greater_z, date_created, last_active, document) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SUBDIVISIONS = "DELETE FROM gp_subdivision WHERE claim_id = ?";
+    private static final String INSERT_SUBDIVISION = "INSERT INTO gp_subdivision (id, claim_id, lesser_x, lesser_y, lesser_z, greater_x, "
+            + "greater_y, greater_z, last_active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_TRUSTS = "DELETE FROM gp_trust WHERE claim_id = ?";
+    private static final String INSERT_TRUST = "INSERT INTO gp_trust (claim_id, target_id, player, trust_type) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_FLAGS = "DELETE FROM gp_flag WHERE claim_id = ?";
+    private static final String INSERT_FLAG = "INSERT INTO gp_flag (claim_id, target_id, flag, flag_value) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_WORLD_CLAIMS = "SELECT id, document FROM gp_claim WHERE world = ?";
+    private static final String SELECT_CLAIM = "SELECT document FROM gp_claim WHERE id = ?";
+    private static final String SELECT_WORLD_CLAIM_IDS = "SELECT id FROM gp_claim WHERE world = ?";
+    private static final String SELECT_ANY_WORLD_CLAIM = "SELECT id FROM gp_claim WHERE world = ? LIMIT 1";
+    private static final String SELECT_INACTIVE_CLAIMS = "SELECT id FROM gp_claim WHERE world = ? AND last_active < ?";
+    private static final String SELECT_OWNER_CLAIMS = "SELECT id FROM gp_claim WHERE owner = ?";
+    private static final String SELECT_TYPE_CLAIMS = "SELECT id FROM gp_claim WHERE world = ? AND claim_type = ?";
+
+    private final Path databaseFile;
+    private final DataSource dataSource;
+    private final DatabaseWriter databaseWriter;
+
+    ClaimDatabase(Path databaseFile) throws SQLException {
+        this.databaseFile = databaseFile;
+        // h2 adds its own extension to the file
+        this.dataSource = Sponge.getServiceManager().provide(SqlService.class).get().getDataSource("jdbc:h2:" + databaseFile.toAbsolutePath());
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : CREATE_TABLES) {
+                statement.execute(sql);
+            }
+        }
+        this.databaseWriter = new DatabaseWriter(this.dataSource, "GriefPrevention Claim Database Writer");
+    }
+
+    Path getDatabaseFile() {
+        return this.databaseFile;
+    }
+
+    // the compressed documents of every claim in the world, by claim id
+    Map<UUID, byte[]> readClaims(UUID worldUniqueId) throws SQLException {
+        this.databaseWriter.flush();
+        Map<UUID, byte[]> claims = new LinkedHashMap<>();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_WORLD_CLAIMS)) {
+            statement.setString(1, worldUniqueId.toString());
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    String claimId = results.getString("id");
+                    try {
+                        claims.put(UUID.fromString(claimId), results.getBytes("document"));
+                    } catch (IllegalArgumentException e) {
+                        GriefPrevention.addLogEntry("ERROR!! could not read claim " + claimId + " from " + this.databaseFile);
+                    }
+                }
+            }
+        }
+        return claims;
+    }
+
+    // the compressed document of the claim, null if it has no row
+    // not flushed first, a claim with writes still queued has live storage that is used instead
+    @Nullable
+    byte[] readClaim(UUID claimId) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(SELECT_CLAIM)) {
+            statement.setString(1, claimId.toString());
+            try (ResultSet results = statement.executeQuery()) {
+                return results.next() ? results.getBytes(1) : null;
+            }
+        }
+    }
+
+    boolean hasClaims(UUID worldUniqueId) throws SQLException {
+        this.databaseWriter.flush();
+        return !this.queryClaimIds(SELECT_ANY_WORLD_CLAIM, worldUniqueId.toString()).isEmpty();
+    }
+
+    Set<UUID> getClaimIdsInactiveSince(UUID worldUniqueId, Instant lastActive) throws SQLException {
+        return this.queryClaimIds(SELECT_INACTIVE_CLAIMS, worldUniqueId.toString(), Timestamp.from(lastActive));
+    }
+
+    Set<UUID> getClaimIdsOwnedBy(UUID ownerUniqueId) throws SQLException {
+        return this.queryClaimIds(SELECT_OWNER_CLAIMS, ownerUniqueId.toString());
+    }
+
+    Set<UUID> getClaimIdsOfType(UUID worldUniqueId, Claim.Type type) throws SQLException {
+        return this.queryClaimIds(SELECT_TYPE_CLAIMS, worldUniqueId.toString(), type.name());
+    }
+
+    private Set<UUID> queryClaimIds(String sql, Object... parameters) throws SQLException {
+        Set<UUID> claimIds = new HashSet<>();
+        try (Connection connection = this.dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    try {
+                        claimIds.add(UUID.fromString(results.getString(1)));
+                    } catch (IllegalArgumentException e) {
+                        // not a claim written by us, skip it
+                    }
+                }
+            }
+        }
+        return claimIds;
+    }
+
+    // captures the rows of the claim as it is now, must be called on the thread that mutates the claim
+    // the returned task compresses the document and queues the rows, it may run on any thread
+    @Nullable
+    Runnable prepareWrite(UUID claimId, ClaimStorageData claimStorage) {
+        final String content = claimStorage.render();
+        if (content == null) {
+            return null;
+        }
+
+        ClaimDataNode config = claimStorage.getConfig();
+        String id = claimId.toString();
+        String world = config.worldUniqueId == null ? "" : config.worldUniqueId.toString();
+        int[] lesser = parsePosition(config.lesserBoundaryCornerPos);
+        int[] greater = parsePosition(config.greaterBoundaryCornerPos);
+        final Object[] claimRow = {id, world, config.ownerUniqueId == null ? null : config.ownerUniqueId.toString(),
+                config.claimType == null ? null : config.claimType.name(), lesser[0], lesser[1], lesser[2], greater[0], greater[1], greater[2],
+                config.dateCreated, parseTimestamp(config.dateLastActive), null};
+
+        final List<Object[]> subdivisionRows = new ArrayList<>(config.subdivisions.size());
+        final List<Object[]> trustRows = new ArrayList<>();
+        final List<Object[]> flagRows = new ArrayList<>();
+        addTrustRows(trustRows, id, id, config);
+        addFlagRows(flagRows, id, id, claimStorage.getRootNode().getNode("flags"));
+        for (Map.Entry<UUID, SubDivisionDataNode> entry : config.subdivisions.entrySet()) {
+            String subdivisionId = entry.getKey().toString();
+            SubDivisionDataNode subdivision = entry.getValue();
+            int[] subdivisionLesser = parsePosition(subdivision.lesserBoundaryCornerPos);
+            int[] subdivisionGreater = parsePosition(subdivision.greaterBoundaryCornerPos);
+            subdivisionRows.add(new Object[] {subdivisionId, id, subdivisionLesser[0], subdivisionLesser[1], subdivisionLesser[2],
+                    subdivisionGreater[0], subdivisionGreater[1], subdivisionGreater[2], parseTimestamp(subdivision.dateLastActive)});
+            addTrustRows(trustRows, id, subdivisionId, subdivision);
+            addFlagRows(flagRows, id, subdivisionId, claimStorage.getRootNode().getNode("subdivisions", subdivisionId, "flags"));
+        }
+
+        return () -> {
+            claimRow[claimRow.length - 1] = ClaimStorageData.compress(content);
+            Object[] claimKey = {id};
+            this.databaseWriter.replace(DELETE_CLAIM, claimKey, INSERT_CLAIM, Collections.singletonList(claimRow));
+            this.databaseWriter.replace(DELETE_SUBDIVISIONS, claimKey, INSERT_SUBDIVISION, subdivisionRows);
+            this.databaseWriter.replace(DELETE_TRUSTS, claimKey, INSERT_TRUST, trustRows);
+            this.databaseWriter.replace(DELETE_FLAGS, claimKey, INSERT_FLAG, flagRows);
+        };
+    }
+
+    void delete(UUID claimId) {
+        String id = claimId.toString();
+        this.databaseWriter.delete(DELETE_SUBDIVISIONS, id);
+        this.databaseWriter.delete(DELETE_TRUSTS, id);
+        this.databaseWriter.delete(DELETE_FLAGS, id);
+        this.databaseWriter.delete(DELETE_CLAIM, id);
+    }
+
+    // removes every claim of the world, used before a migration writes the world again
+    // claims are deleted one by one, the writer only keeps the order of writes to the same table
+    void deleteWorld(UUID worldUniqueId) throws SQLException {
+        this.databaseWriter.flush();
+        for (UUID claimId : this.queryClaimIds(SELECT_WORLD_CLAIM_IDS, worldUniqueId.toString())) {
+            this.delete(claimId);
+        }
+    }
+
+    void flush() {
+        this.databaseWriter.flush();
+    }
+
+    // writes made after closing are sent right away on the calling thread
+    void close() {
+        this.databaseWriter.close();
+    }
+
+    private static void addTrustRows(List<Object[]> rows, String claimId, String targetId, ClaimData claimData) {
+        addTrustRows(rows, claimId, targetId, claimData.getAccessors(), "accessor");
+        addTrustRows(rows, claimId, targetId, claimData.getBuilders(), "builder");
+        addTrustRows(rows, claimId, targetId, claimData.getContainers(), "container");
+        addTrustRows(rows, claimId, targetId, claimData.getCoowners(), "coowner");
+    }
+
+    private static void addTrustRows(List<Object[]> rows, String claimId, String targetId, @Nullable Collection<UUID> players, String trustType) {
+        if (players == null) {
+            return;
+        }
+        for (UUID player : players) {
+            rows.add(new Object[] {claimId, targetId, player.toString(), trustType});
+        }
+    }
+
+    // only flags that are set get a row
+    private static void addFlagRows(List<Object[]> rows, String claimId, String targetId, CommentedConfigurationNode flagsNode) {
+        for (Map.Entry<Object, ? extends CommentedConfigurationNode> entry : flagsNode.getChildrenMap().entrySet()) {
+            Object value = entry.getValue().getValue();
+            if (value == null || "UNDEFINED".equals(value.toString()) || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+                continue;
+            }
+            rows.add(new Object[] {claimId, targetId, entry.getKey().toString(), value.toString()});
+        }
+    }
+
+    // returns the x, y and z of a "x;y;z" position, unreadable positions are 0,0,0
+    private static int[] parsePosition(@Nullable String position) {
+        if (position != null) {
+            String[] elements = position.split(";");
+            if (elements.length >= 3) {
+                try {
+                    return new int[] {Integer.parseInt(elements[0]), Integer.parseInt(elements[1]), Integer.parseInt(elements[2])};
+                } catch (NumberFormatException e) {
+                    // fall through
+                }
+            }
+        }
+        return new int[] {0, 0, 0};
+    }
+
+    @Nullable
+    private static Timestamp parseTimestamp(@Nullable String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return Timestamp.from(Instant.parse(date));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+// the allow/deny claim flags, indexed by ordinal in each claim's table of effective values
+// block-commands holds a command list rather than a value so it isn't part of this enum
+public enum ClaimFlag {
+
+    BLOCK_BREAK(GPFlags.BLOCK_BREAK, GPPermissions.BLOCK_BREAK),
+    BLOCK_PLACE(GPFlags.BLOCK_PLACE, GPPermissions.BLOCK_PLACE),
+    EXPLOSIONS(GPFlags.EXPLOSIONS, GPPermissions.EXPLOSIONS),
+    FAREWELL_MESSAGE(GPFlags.FAREWELL_MESSAGE, GPPermissions.FAREWELL_MESSAGE),
+    FIRE_SPREAD(GPFlags.FIRE_SPREAD, GPPermissions.FIRE_SPREAD),
+    FORCE_DENY_ALL(GPFlags.FORCE_DENY_ALL, GPPermissions.FORCE_DENY_ALL),
+    GREETING_MESSAGE(GPFlags.GREETING_MESSAGE, GPPermissions.GREETING_MESSAGE),
+    INTERACT_PRIMARY(GPFlags.INTERACT_PRIMARY, GPPermissions.INTERACT_PRIMARY),
+    INTERACT_SECONDARY(GPFlags.INTERACT_SECONDARY, GPPermissions.INTERACT_SECONDARY),
+    INTERACT_INVENTORY(GPFlags.INTERACT_INVENTORY, GPPermissions.INTERACT_INVENTORY),
+    ITEM_DROP(GPFlags.ITEM_DROP, GPPermissions.ITEM_DROP),
+    ITEM_PICKUP(GPFlags.ITEM_PICKUP, GPPermissions.ITEM_PICKUP),
+    ITEM_USE(GPFlags.ITEM_USE, GPPermissions.ITEM_USE),
+    LAVA_FLOW(GPFlags.LAVA_FLOW, GPPermissions.LAVA_FLOW),
+    MOB_BLOCK_DAMAGE(GPFlags.MOB_BLOCK_DAMAGE, GPPermissions.MOB_BLOCK_DAMAGE),
+    MOB_PLAYER_DAMAGE(GPFlags.MOB_PLAYER_DAMAGE, GPPermissions.MOB_PLAYER_DAMAGE),
+    MOB_RIDING(GPFlags.MOB_RIDING, GPPermissions.MOB_RIDING),
+    PORTAL_USE(GPFlags.PORTAL_USE, GPPermissions.PORTAL_USE),
+    PROJECTILES_ANY(GPFlags.PROJECTILES_ANY, GPPermissions.PROJECTILES_ANY),
+    PROJECTILES_MONSTER(GPFlags.PROJECTILES_MONSTER, GPPermissions.PROJECTILES_MONSTER),
+    PROJECTILES_PLAYER(GPFlags.PROJECTILES_PLAYER, GPPermissions.PROJECTILES_PLAYER),
+    PVP(GPFlags.PVP, GPPermissions.PVP),
+    SLEEP(GPFlags.SLEEP, GPPermissions.SLEEP),
+    SPAWN_AMBIENTS(GPFlags.SPAWN_AMBIENTS, GPPermissions.SPAWN_AMBIENTS),
+    SPAWN_ANY(GPFlags.SPAWN_ANY, GPPermissions.SPAWN_ANY),
+    SPAWN_AQUATICS(GPFlags.SPAWN_AQUATICS, GPPermissions.SPAWN_AQUATICS),
+    SPAWN_MONSTERS(GPFlags.SPAWN_MONSTERS, GPPermissions.SPAWN_MONSTERS),
+    SPAWN_PASSIVES(GPFlags.SPAWN_PASSIVES, GPPermissions.SPAWN_PASSIVES),
+    VILLAGER_TRADING(GPFlags.VILLAGER_TRADING, GPPermissions.VILLAGER_TRADING),
+    WATER_FLOW(GPFlags.WATER_FLOW, GPPermissions.WATER_FLOW);
+
+    private static final Map<String, ClaimFlag> BY_NAME = new HashMap<>();
+
+    static {
+        for (ClaimFlag flag : values()) {
+            BY_NAME.put(flag.name, flag);
+            BY_NAME.put(flag.permission, flag);
+        }
+    }
+
+    private final String name;
+    private final String permission;
+
+    ClaimFlag(String name, String permission) {
+        this.name = name;
+        this.permission = permission;
+    }
+
+    // the name used in claim and config files, ie. "block-break"
+    public String getName() {
+        return this.name;
+    }
+
+    public String getPermission() {
+        return this.permission;
+    }
+
+    // accepts either the flag name or its permission node
+    @Nullable
+    public static ClaimFlag fromString(String flag) {
+        return BY_NAME.get(flag);
+    }
+}
@@ -24,28 +24,56 @@
  */
 package me.ryanhamshire.griefprevention;
 
-import com.google.common.io.Files;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.scheduler.Scheduler;
 
 import java.io.File;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+// writes the abridged logs
+// any thread can add entries, they go into a fixed size ring buffer and a single writer
+// thread appends them to the log file of the day. when the buffer is full new entries are
+// dropped and counted instead of blocking the caller, the count is written to the log later
 public class CustomLogger {
 
-    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("HH:mm");
-    private final SimpleDateFormat filenameFormat = new SimpleDateFormat("yyyy_MM_dd");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter FILENAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    private static final Pattern inlineFormatterPattern = Pattern.compile("�.");
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final String logFolderPath = DataStore.dataLayerFolderPath + File.separator + "Logs";
-    private final int secondsBetweenWrites = 10;
+    private final EntryQueue queue = new EntryQueue(QUEUE_CAPACITY);
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final ZoneId zone = ZoneId.systemDefault();
 
-    // stringbuilder is not thread safe, stringbuffer is
-    private StringBuffer queuedEntries = new StringBuffer();
+    // only touched by the writer thread
+    private final StringBuilder batch = new StringBuilder(4096);
+    private int batchEntries = 0;
+    private long batchReportedDrops = 0;
+    private long reportedDrops = 0;
+    private FileChannel channel;
+    private LocalDate channelDate;
+
+    private volatile boolean running;
+    private Thread writerThread;
 
     CustomLogger() {
         // ensure log folder exists
@@ -55,24 +83,21 @@ public class CustomLogger {
         // delete any outdated log files immediately
         this.deleteExpiredLogs();
 
-        // unless disabled, schedule recurring tasks
+        // unless disabled, start the writer and schedule log cleanup
         int daysToKeepLogs = GriefPrevention.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
         if (daysToKeepLogs > 0) {
-            Scheduler scheduler = Sponge.getGame().getScheduler();
-            scheduler.createTaskBuilder().async().execute(new EntryWriter()).delay(this.secondsBetweenWrites, TimeUnit.SECONDS).interval(this
-                    .secondsBetweenWrites, TimeUnit.SECONDS).submit(GriefPrevention.instance);
-            scheduler.createTaskBuilder().async().execute(new ExpiredLogRemover()).delay(1, TimeUnit.DAYS).interval(1, TimeUnit.DAYS)
-                    .submit(GriefPrevention
-                            .instance);
+            this.running = true;
+            this.writerThread = new Thread(new EntryWriter(), "GriefPrevention log writer");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+            Sponge.getGame().getScheduler().createTaskBuilder().async().execute(new ExpiredLogRemover()).delay(1, TimeUnit.DAYS)
+                    .interval(1, TimeUnit.DAYS).submit(GriefPrevention.instance);
         }
     }
 
-    private static final Pattern inlineFormatterPattern = Pattern.compile("�.");
-
     void addEntry(String entry, CustomLogEntryTypes entryType) {
         // if disabled, do nothing
-        int daysToKeepLogs = GriefPrevention.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
-        if (daysToKeepLogs == 0) {
+        if (!this.running) {
             return;
         }
 
@@ -81,11 +106,15 @@ void addEntry(String entry, CustomLogEntryTypes entryType) {
             return;
         }
 
-        // otherwise write to the in-memory buffer, after removing formatters
-        Matcher matcher = inlineFormatterPattern.matcher(entry);
-        entry = matcher.replaceAll("");
-        String timestamp = this.timestampFormat.format(new Date());
-        this.queuedEntries.append(timestamp + " " + entry + "\n");
+        // otherwise queue it, formatting happens on the writer thread
+        if (!this.queue.offer(entry, System.currentTimeMillis())) {
+            this.droppedEntries.incrementAndGet();
+        }
+    }
+
+    // number of entries thrown away because the writer couldn't keep up or the disk failed
+    public long getDroppedEntries() {
+        return this.droppedEntries.get();
     }
 
     private boolean isEnabledType(CustomLogEntryTypes entryType) {
@@ -108,30 +137,114 @@ private boolean isEnabledType(CustomLogEntryTypes entryType) {
         return true;
     }
 
-    void writeEntries() {
+    // stops the writer after it has written everything queued so far
+    void close() {
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        LockSupport.unpark(this.writerThread);
         try {
-            // if nothing to write, stop here
-            if (this.queuedEntries.length() == 0) {
-                return;
+            this.writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // moves everything queued to the log files, called from the writer thread only
+    void writeEntries() {
+        this.appendDropReport();
+
+        while (true) {
+            long timestamp = this.queue.peekTimestamp();
+            if (timestamp == EntryQueue.EMPTY) {
+                break;
+            }
+
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), this.zone);
+            LocalDate date = time.toLocalDate();
+            if (!date.equals(this.channelDate)) {
+                // a new day starts a new file
+                this.flushBatch();
+                this.openChannel(date);
             }
 
-            // determine filename based on date
-            String filename = this.filenameFormat.format(new Date()) + ".log";
-            String filepath = this.logFolderPath + File.separator + filename;
-            File logFile = new File(filepath);
+            String entry = this.queue.poll();
+            if (entry.indexOf('�') >= 0) {
+                Matcher matcher = inlineFormatterPattern.matcher(entry);
+                entry = matcher.replaceAll("");
+            }
+            TIMESTAMP_FORMAT.formatTo(time, this.batch);
+            this.batch.append(' ').append(entry).append('\n');
+            this.batchEntries++;
+        }
 
-            // dump content
-            Files.append(this.queuedEntries.toString(), logFile, Charset.forName("UTF-8"));
+        this.flushBatch();
+    }
 
-            // in case of a failure to write the above due to exception,
-            // the unwritten entries will remain the buffer for the next write
-            // to retry
-            this.queuedEntries.setLength(0);
-        } catch (Exception e) {
+    private void appendDropReport() {
+        long dropped = this.droppedEntries.get();
+        if (dropped != this.reportedDrops) {
+            if (this.channelDate == null) {
+                this.openChannel(LocalDate.now(this.zone));
+            }
+            this.batch.append(LocalDateTime.now(this.zone).format(TIMESTAMP_FORMAT)).append(' ').append(dropped - this.reportedDrops)
+                    .append(" log entries were dropped.\n");
+            this.batchReportedDrops = dropped - this.reportedDrops;
+            this.reportedDrops = dropped;
+        }
+    }
+
+    private void openChannel(LocalDate date) {
+        this.closeChannel();
+        this.channelDate = date;
+        File logFile = new File(this.logFolderPath + File.separator + date.format(FILENAME_FORMAT) + ".log");
+        try {
+            this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.channel = null;
+        }
+    }
+
+    private void flushBatch() {
+        if (this.batch.length() == 0) {
+            return;
+        }
+
+        try {
+            if (this.channel == null) {
+                throw new IOException("Log file for " + this.channelDate + " is not open.");
+            }
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(this.batch));
+            while (bytes.hasRemaining()) {
+                this.channel.write(bytes);
+            }
+        } catch (IOException e) {
+            // nothing is kept around for a retry so memory stays bounded, the lost entries are
+            // counted and reported once the file can be written again
+            this.droppedEntries.addAndGet(this.batchEntries);
+            this.reportedDrops -= this.batchReportedDrops;
+            this.closeChannel();
+            this.channelDate = null;
+            e.printStackTrace();
+        }
+        this.batch.setLength(0);
+        this.batchEntries = 0;
+        this.batchReportedDrops = 0;
+    }
+
     private void deleteExpiredLogs() {
         try {
             // get list of log files
@@ -177,12 +290,23 @@ private void deleteExpiredLogs() {
         }
     }
 
-    // transfers the internal buffer to a log file
+    // transfers the ring buffer to the log files until the logger is closed
     private class EntryWriter implements Runnable {
 
         @Override
         public void run() {
+            while (running) {
+                LockSupport.parkNanos(WRITE_INTERVAL_NANOS);
+                try {
+                    writeEntries();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            // write whatever was queued before close
             writeEntries();
+            closeChannel();
         }
     }
 
@@ -193,4 +317,70 @@ public void run() {
             deleteExpiredLogs();
         }
     }
+
+    // bounded multi-producer single-consumer queue of log entries
+    // each slot carries a sequence number: producers claim a slot by advancing the tail and
+    // publish it by bumping the slot's sequence, the writer frees it by bumping it again
+    private static final class EntryQueue {
+
+        static final long EMPTY = Long.MIN_VALUE;
+
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final String[] entries;
+        private final long[] timestamps;
+        private final AtomicLong tail = new AtomicLong();
+        // only read and written by the writer thread
+        private long head = 0;
+
+        EntryQueue(int capacity) {
+            this.mask = capacity - 1;
+            this.sequences = new AtomicLongArray(capacity);
+            this.entries = new String[capacity];
+            this.timestamps = new long[capacity];
+            for (int i = 0; i < capacity; i++) {
+                this.sequences.set(i, i);
+            }
+        }
+
+        // returns false instead of waiting when the queue is full
+        boolean offer(String entry, long timestamp) {
+            long position = this.tail.get();
+            while (true) {
+                int index = (int) position & this.mask;
+                long difference = this.sequences.get(index) - position;
+                if (difference == 0) {
+                    if (this.tail.compareAndSet(position, position + 1)) {
+                        this.entries[index] = entry;
+                        this.timestamps[index] = timestamp;
+                        this.sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = this.tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = this.tail.get();
+                }
+            }
+        }
+
+        long peekTimestamp() {
+            int index = (int) this.head & this.mask;
+            if (this.sequences.get(index) != this.head + 1) {
+                return EMPTY;
+            }
+            return this.timestamps[index];
+        }
+
+        // only call after peekTimestamp() found an entry
+        String poll() {
+            int index = (int) this.head & this.mask;
+            String entry = this.entries[index];
+            this.entries[index] = null;
+            this.sequences.lazySet(index, this.head + this.mask + 1);
+            this.head++;
+            return entry;
+        }
+    }
 }
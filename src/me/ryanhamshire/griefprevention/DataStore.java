@@ -24,15 +24,17 @@
  */
 package me.ryanhamshire.griefprevention;
 
-import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimWorldIndex;
+import me.ryanhamshire.griefprevention.claim.PlayerClaimTracker;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.CreateClaimResult;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.SubDivisionDataNode;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.GlobalConfig;
@@ -55,7 +57,6 @@
 import org.spongepowered.api.text.format.TextColor;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.Tristate;
-import org.spongepowered.api.world.Chunk;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
@@ -71,6 +72,7 @@
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.EnumMap;
@@ -100,11 +102,22 @@ public abstract class DataStore {
     // in-memory cache for group (permission-based) data
     protected ConcurrentHashMap<String, Integer> permissionToBonusBlocksMap = new ConcurrentHashMap<>();
 
+    // group bonus totals of online players, see getGroupBonusBlocks
+    // sponge has no event for permission changes, so totals also expire after a short time
+    private static final long GROUP_BONUS_EXPIRE_MILLIS = 30000;
+    private final ConcurrentHashMap<UUID, GroupBonus> groupBonusCache = new ConcurrentHashMap<>();
+    private volatile int groupBonusVersion = 0;
+
     // in-memory cache for claim data
-    ConcurrentHashMap<String, ArrayList<Claim>> chunksToClaimsMap = new ConcurrentHashMap<>();
+    // World UUID -> chunk index of the claims in that world
+    protected final Map<UUID, ClaimWorldIndex> claimWorldIndexes = new ConcurrentHashMap<>();
+    // claim each online player is currently standing in
+    protected final PlayerClaimTracker playerClaimTracker = new PlayerClaimTracker(this);
+    protected final PlayerNameCache playerNameCache = new PlayerNameCache();
     public static Map<UUID, GriefPreventionConfig<DimensionConfig>> dimensionConfigMap = Maps.newHashMap();
     public static Map<UUID, GriefPreventionConfig<WorldConfig>> worldConfigMap = Maps.newHashMap();
     public static GriefPreventionConfig<GlobalConfig> globalConfig;
+    public static Map<UUID, EffectiveWorldConfig> effectiveConfigMap = new ConcurrentHashMap<>();
 
     // in-memory cache for messages
     protected EnumMap<Messages, CustomizableMessage> messages = new EnumMap<>(Messages.class);
@@ -301,21 +314,39 @@ public synchronized void clearCachedPlayerData(WorldProperties worldProperties,
     // gets the number of bonus blocks a player has from his permissions
     // Bukkit doesn't allow for checking permissions of an offline player.
     // this will return 0 when he's offline, and the correct number when online.
-    public synchronized int getGroupBonusBlocks(UUID playerID) {
+    public int getGroupBonusBlocks(UUID playerID) {
+        if (this.permissionToBonusBlocksMap.isEmpty()) {
+            return 0;
+        }
+
+        Optional<Player> player = Sponge.getGame().getServer().getPlayer(playerID);
+        if (!player.isPresent()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        int version = this.groupBonusVersion;
+        GroupBonus cached = this.groupBonusCache.get(playerID);
+        if (cached != null && cached.version == version && now < cached.expires) {
+            return cached.blocks;
+        }
+
         int bonusBlocks = 0;
-        Set<String> keys = permissionToBonusBlocksMap.keySet();
-        Iterator<String> iterator = keys.iterator();
-        while (iterator.hasNext()) {
-            String groupName = iterator.next();
-            Optional<Player> player = Sponge.getGame().getServer().getPlayer(playerID);
-            if (player.isPresent() && player.get().hasPermission(groupName)) {
-                bonusBlocks += this.permissionToBonusBlocksMap.get(groupName);
+        for (Map.Entry<String, Integer> entry : this.permissionToBonusBlocksMap.entrySet()) {
+            if (player.get().hasPermission(entry.getKey())) {
+                bonusBlocks += entry.getValue();
             }
         }
 
+        this.groupBonusCache.put(playerID, new GroupBonus(bonusBlocks, version, now + GROUP_BONUS_EXPIRE_MILLIS));
         return bonusBlocks;
     }
 
+    // forgets a player's group bonus total, call when their permissions may have changed
+    public void invalidateGroupBonusBlocks(UUID playerID) {
+        this.groupBonusCache.remove(playerID);
+    }
+
     // grants a group (players with a specific permission) bonus claim blocks as
     // long as they're still members of the group
     synchronized public int adjustGroupBonusBlocks(String groupName, int amount) {
@@ -326,6 +357,7 @@ synchronized public int adjustGroupBonusBlocks(String groupName, int amount) {
 
         currentValue += amount;
         this.permissionToBonusBlocksMap.put(groupName, currentValue);
+        this.groupBonusVersion++;
 
         // write changes to storage to ensure they don't get lost
         this.saveGroupBonusBlocks(groupName, currentValue);
@@ -339,17 +371,7 @@ synchronized public int adjustGroupBonusBlocks(String groupName, int amount) {
     void addClaim(Claim newClaim, boolean writeToStorage) {
         PlayerDataWorldManager playerWorldManager = this.getPlayerDataWorldManager(newClaim.world.getProperties());
         playerWorldManager.addPlayerClaim(newClaim);
-
-        ArrayList<String> chunkStrings = newClaim.getChunkStrings();
-        for (String chunkString : chunkStrings) {
-            ArrayList<Claim> claimsInChunk = this.chunksToClaimsMap.get(chunkString);
-            if (claimsInChunk == null) {
-                claimsInChunk = new ArrayList<Claim>();
-                this.chunksToClaimsMap.put(chunkString, claimsInChunk);
-            }
-
-            claimsInChunk.add(newClaim);
-        }
+        this.getClaimWorldIndex(newClaim.world.getUniqueId()).addClaim(newClaim);
 
         newClaim.inDataStore = true;
 
@@ -359,6 +381,20 @@ void addClaim(Claim newClaim, boolean writeToStorage) {
         }
     }
 
+    // adds claims read from storage, indexing them per world in one step
+    void addLoadedClaims(List<Claim> claims) {
+        Map<UUID, List<Claim>> worldClaims = new HashMap<>();
+        for (Claim claim : claims) {
+            this.getPlayerDataWorldManager(claim.world.getProperties()).addPlayerClaim(claim);
+            worldClaims.computeIfAbsent(claim.world.getUniqueId(), worldUniqueId -> new ArrayList<>()).add(claim);
+            claim.inDataStore = true;
+        }
+
+        for (Map.Entry<UUID, List<Claim>> entry : worldClaims.entrySet()) {
+            this.getClaimWorldIndex(entry.getKey()).addClaims(entry.getValue());
+        }
+    }
+
     // turns a location into a string, useful in data storage
     private String locationStringDelimiter = ";";
 
@@ -418,34 +454,37 @@ public void deleteClaim(Claim claim) {
     }
 
     public void deleteClaim(Claim claim, boolean fireEvent) {
-        // delete any children
-        for (int j = 0; j < claim.children.size(); j++) {
-            this.deleteClaim(claim.children.get(j--), true);
+        this.deleteClaim(claim, fireEvent, true, true);
+    }
+
+    // deleteStorage is false for a claim replaced by a resize, whose stored data was handed to the new claim
+    private void deleteClaim(Claim claim, boolean fireEvent, boolean saveParent, boolean deleteStorage) {
+        // delete any children, last first so the child list never shifts
+        // the parent storage is deleted below, so there is no need to save it for every child
+        for (int j = claim.children.size() - 1; j >= 0; j--) {
+            this.deleteClaim(claim.children.get(j), true, false, deleteStorage);
         }
 
         // subdivisions must also be removed from the parent claim child list
         if (claim.parent != null) {
             Claim parentClaim = claim.parent;
-            parentClaim.children.remove(claim);
-            parentClaim.getClaimStorage().getConfig().subdivisions.remove(claim.id);
-            parentClaim.getClaimStorage().save();
+            parentClaim.removeChild(claim);
+            if (deleteStorage) {
+                parentClaim.getClaimStorage().getConfig().subdivisions.remove(claim.id);
+            }
+            if (saveParent) {
+                parentClaim.getClaimStorage().save();
+            }
         } else {
             PlayerDataWorldManager playerWorldManager = this.getPlayerDataWorldManager(claim.world.getProperties());
             playerWorldManager.removePlayerClaim(claim);
-            this.deleteClaimFromSecondaryStorage(claim);
-        }
-
-        ArrayList<String> chunkStrings = claim.getChunkStrings();
-        for (String chunkString : chunkStrings) {
-            ArrayList<Claim> claimsInChunk = this.chunksToClaimsMap.get(chunkString);
-            for (int j = 0; j < claimsInChunk.size(); j++) {
-                if (claimsInChunk.get(j).id.equals(claim.id)) {
-                    claimsInChunk.remove(j);
-                    break;
-                }
+            if (deleteStorage) {
+                this.deleteClaimFromSecondaryStorage(claim);
             }
         }
 
+        this.getClaimWorldIndex(claim.world.getUniqueId()).removeClaim(claim);
+
         // mark as deleted so any references elsewhere can be ignored
         claim.inDataStore = false;
 
@@ -462,30 +501,37 @@ public void deleteClaim(Claim claim, boolean fireEvent) {
     // cachedClaim can be NULL, but will help performance if you have a
     // reasonable guess about which claim the location is in
     public Claim getClaimAt(Location<World> location, boolean ignoreHeight, Claim cachedClaim) {
+        return this.getClaimAt(location.getExtent().getUniqueId(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), ignoreHeight,
+                cachedClaim);
+    }
+
+    // same as getClaimAt(Location, ...) for callers that only have block coordinates, avoids creating a location
+    // safe to call from async threads, lookups read published index snapshots and never lock
+    public Claim getClaimAt(UUID worldUniqueId, int x, int y, int z, boolean ignoreHeight, Claim cachedClaim) {
         // check cachedClaim guess first. if it's in the datastore and the location is inside it, we're done
-        if (cachedClaim != null && cachedClaim.inDataStore && cachedClaim.contains(location, ignoreHeight, true)) {
+        if (cachedClaim != null && cachedClaim.inDataStore && cachedClaim.worldUniqueId.equals(worldUniqueId)
+                && cachedClaim.contains(x, y, z, ignoreHeight, true)) {
             return cachedClaim;
         }
 
         // find a top level claim
-        String chunkID = this.getChunkString(location);
-        ArrayList<Claim> claimsInChunk = this.chunksToClaimsMap.get(chunkID);
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(worldUniqueId);
+        if (claimIndex == null) {
+            return null;
+        }
+
+        Claim[] claimsInChunk = claimIndex.getClaimsInChunk(x >> 4, z >> 4);
         if (claimsInChunk == null) {
             return null;
         }
 
-        for (Claim claim : claimsInChunk) {
-            if (claim.inDataStore && claim.contains(location, ignoreHeight, false)) {
+        for (int i = 0; i < claimsInChunk.length; i++) {
+            Claim claim = claimsInChunk[i];
+            if (claim.inDataStore && claim.contains(x, y, z, ignoreHeight, false)) {
                 // when we find a top level claim, if the location is in one of its subdivisions,
                 // return the SUBDIVISION, not the top level claim
-                for (int j = 0; j < claim.children.size(); j++) {
-                    Claim subdivision = claim.children.get(j);
-                    if (subdivision.inDataStore && subdivision.contains(location, ignoreHeight, false)) {
-                        return subdivision;
-                    }
-                }
-
-                return claim;
+                Claim subdivision = claim.getSubdivisionAt(x, y, z, ignoreHeight);
+                return subdivision != null ? subdivision : claim;
             }
         }
 
@@ -493,14 +539,105 @@ public Claim getClaimAt(Location<World> location, boolean ignoreHeight, Claim ca
         return null;
     }
 
+    // fast wilderness check for listeners, true only if no claim can be at the location
+    public boolean isWilderness(Location<World> location) {
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(location.getExtent().getUniqueId());
+        return claimIndex == null || claimIndex.isWildernessChunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    // fast wilderness check for listeners, true only if no claim can be in the inclusive block area
+    public boolean isWilderness(World world, int minX, int minZ, int maxX, int maxZ) {
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(world.getUniqueId());
+        return claimIndex == null || claimIndex.isWildernessArea(minX, minZ, maxX, maxZ);
+    }
+
+    // gets the claims at many block positions in the same world in one pass
+    // consecutive positions in the same chunk share a single chunk lookup, and the claim found
+    // for the previous position is tried first since batches are usually spatially clustered
+    // the returned array is parallel to positions, with null entries for the wilderness
+    public Claim[] getClaimsAt(World world, List<Vector3i> positions, boolean ignoreHeight) {
+        Claim[] claims = new Claim[positions.size()];
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(world.getUniqueId());
+        if (claimIndex == null) {
+            return claims;
+        }
+
+        long lastChunkKey = 0;
+        Claim[] claimsInChunk = null;
+        Claim lastClaim = null;
+        for (int i = 0; i < claims.length; i++) {
+            Vector3i position = positions.get(i);
+            int x = position.getX();
+            int y = position.getY();
+            int z = position.getZ();
+            long chunkKey = ClaimWorldIndex.getChunkKey(x >> 4, z >> 4);
+            if (i == 0 || chunkKey != lastChunkKey) {
+                claimsInChunk = claimIndex.getClaimsInChunk(x >> 4, z >> 4);
+                lastChunkKey = chunkKey;
+            }
+
+            if (claimsInChunk == null) {
+                continue;
+            }
+
+            if (lastClaim != null && lastClaim.contains(x, y, z, ignoreHeight, true)) {
+                claims[i] = lastClaim;
+                continue;
+            }
+
+            for (int j = 0; j < claimsInChunk.length; j++) {
+                Claim claim = claimsInChunk[j];
+                if (claim.inDataStore && claim.parent == null && claim.contains(x, y, z, ignoreHeight, false)) {
+                    Claim subdivision = claim.getSubdivisionAt(x, y, z, ignoreHeight);
+                    Claim result = subdivision != null ? subdivision : claim;
+                    claims[i] = result;
+                    lastClaim = result;
+                    break;
+                }
+            }
+        }
+
+        return claims;
+    }
+
     // finds a claim by ID
     public Claim getClaim(World world, UUID id) {
         return this.getPlayerDataWorldManager(world.getProperties()).getClaimByUUID(id);
     }
 
-    // gets an almost-unique, persistent identifier string for a chunk
-    String getChunkString(Location<World> location) {
-        return String.valueOf(location.getBlockX() >> 4) + (location.getBlockZ() >> 4);
+    public PlayerClaimTracker getPlayerClaimTracker() {
+        return this.playerClaimTracker;
+    }
+
+    public PlayerNameCache getPlayerNameCache() {
+        return this.playerNameCache;
+    }
+
+    // gets the claim index for a world, creating it if necessary
+    public ClaimWorldIndex getClaimWorldIndex(UUID worldUniqueId) {
+        // async lookups can race the main thread here, so the index is created atomically
+        return this.claimWorldIndexes.computeIfAbsent(worldUniqueId, ClaimWorldIndex::new);
+    }
+
+    // the ids of the top level claims in a world last active before the given time
+    // returns null when the storage doesn't index activity and every claim has to be checked
+    @Nullable
+    public Set<UUID> getClaimIdsInactiveSince(WorldProperties worldProperties, Instant lastActive) {
+        return null;
+    }
+
+    // the ids of the top level claims the player owns in any world
+    // returns null when the storage doesn't index owners and the loaded claims have to be used
+    @Nullable
+    public Set<UUID> getClaimIdsOwnedBy(UUID ownerUniqueId) {
+        return null;
+    }
+
+    // the ids of the top level claims of a type in a world
+    // returns null when the storage doesn't index claim types and the loaded claims have to be checked
+    @Nullable
+    public Set<UUID> getClaimIdsOfType(WorldProperties worldProperties, Claim.Type type) {
+        return null;
     }
 
     // creates a claim.
@@ -516,6 +653,12 @@ String getChunkString(Location<World> location) {
     // does NOT check minimum claim size constraints
     // does NOT visualize the new claim for any players
     public CreateClaimResult createClaim(World world, int x1, int x2, int y1, int y2, int z1, int z2, UUID claimId, Claim parent, Player player) {
+        return this.createClaim(world, x1, x2, y1, y2, z1, z2, claimId, parent, player, null);
+    }
+
+    // original is the claim being resized, its owner, type and stored data carry over to the new claim
+    private CreateClaimResult createClaim(World world, int x1, int x2, int y1, int y2, int z1, int z2, UUID claimId, Claim parent, Player player,
+            @Nullable Claim original) {
         CreateClaimResult result = new CreateClaimResult();
 
         int smallx, bigx, smally, bigy, smallz, bigz;
@@ -559,17 +702,30 @@ public CreateClaimResult createClaim(World world, int x1, int x2, int y1, int y2
         newClaim.parent = parent;
 
         // ensure this new claim won't overlap any existing claims
-        ArrayList<Claim> claimsToCheck;
+        List<Claim> claimsToCheck;
         if (newClaim.parent != null) {
-            claimsToCheck = newClaim.parent.children;
+            // only subdivisions whose bounds intersect the new one can overlap it
+            claimsToCheck = newClaim.parent.getSubdivisions(smallx, smallz, bigx, bigz);
             newClaim.type = Claim.Type.SUBDIVISION;
             newClaim.setClaimStorage(newClaim.parent.getClaimStorage());
-            SubDivisionDataNode subData = new SubDivisionDataNode();
+            SubDivisionDataNode subData = original != null && original.getClaimData() instanceof SubDivisionDataNode
+                    ? (SubDivisionDataNode) original.getClaimData() : new SubDivisionDataNode();
             newClaim.setClaimData(subData);
             newClaim.getClaimStorage().getConfig().subdivisions.put(claimId, subData);
         } else {
-            claimsToCheck = (ArrayList<Claim>) this.getPlayerDataWorldManager(world.getProperties()).getWorldClaims();
-            newClaim.ownerID = player.getUniqueId();
+            // only top level claims whose bounds intersect the new claim can overlap it
+            claimsToCheck = this.getClaimWorldIndex(world.getUniqueId()).getTopLevelClaims(smallx, smallz, bigx, bigz);
+            if (original != null) {
+                newClaim.ownerID = original.ownerID;
+                newClaim.type = original.type;
+                // the same storage keeps the claim's trusts, flags and subdivisions, and any save still pending for it
+                if (original.getClaimStorage() != null) {
+                    newClaim.setClaimStorage(original.getClaimStorage());
+                    newClaim.setClaimData(original.getClaimStorage().getConfig());
+                }
+            } else {
+                newClaim.ownerID = player.getUniqueId();
+            }
         }
 
         if (claimsToCheck != null) {
@@ -649,19 +805,15 @@ synchronized public void extendClaim(Claim claim, int newDepth) {
         }
 
         // adjust to new depth
-        Vector3d newLesserPosition = new Vector3d(claim.lesserBoundaryCorner.getX(), newDepth, claim.lesserBoundaryCorner.getZ());
-        claim.lesserBoundaryCorner = claim.lesserBoundaryCorner.setPosition(newLesserPosition);
-        Vector3d newGreaterPosition = new Vector3d(claim.greaterBoundaryCorner.getX(), newDepth, claim.greaterBoundaryCorner.getZ());
-        claim.greaterBoundaryCorner = claim.greaterBoundaryCorner.setPosition(newGreaterPosition);
+        claim.setDepth(newDepth);
 
         for (Claim subdivision : claim.children) {
-            newLesserPosition = new Vector3d(subdivision.lesserBoundaryCorner.getX(), newDepth, subdivision.lesserBoundaryCorner.getZ());
-            subdivision.lesserBoundaryCorner = subdivision.lesserBoundaryCorner.setPosition(newLesserPosition);
-            newGreaterPosition = new Vector3d(subdivision.greaterBoundaryCorner.getX(), newDepth, subdivision.greaterBoundaryCorner.getZ());
-            subdivision.greaterBoundaryCorner = subdivision.greaterBoundaryCorner.setPosition(newGreaterPosition);
+            subdivision.setDepth(newDepth);
             this.saveClaim(subdivision);
         }
 
+        this.getClaimWorldIndex(claim.world.getUniqueId()).markModified();
+
         // save changes
         this.saveClaim(claim);
     }
@@ -676,6 +828,7 @@ synchronized public void startSiege(Player attacker, Player defender, Claim defe
         attackerData.siegeData = siegeData;
         defenderData.siegeData = siegeData;
         defenderClaim.siegeData = siegeData;
+        defenderClaim.getPermissionCache().invalidate();
 
         // start a task to monitor the siege
         // why isn't this a "repeating" task?
@@ -728,6 +881,7 @@ synchronized public void endSiege(SiegeData siegeData, String winnerName, String
         for (int i = 0; i < siegeData.claims.size(); i++) {
             Claim claim = siegeData.claims.get(i);
             claim.siegeData = null;
+            claim.getPermissionCache().invalidate();
             this.siegeCooldownRemaining.put(siegeData.attacker.getName() + "_" + claim.getOwnerName(), cooldownEnd);
 
             // if doors should be opened for looting, do that now
@@ -913,19 +1067,22 @@ public CreateClaimResult resizeClaim(Claim claim, int newx1, int newx2, int newy
             Player player) {
         // try to create this new claim, ignoring the original when checking for overlap
         CreateClaimResult result = this.createClaim(claim.getLesserBoundaryCorner().getExtent(), newx1, newx2, newy1, newy2, newz1, newz2,
-                claim.id, claim.parent, player);
+                claim.id, claim.parent, player, claim);
 
         // if succeeded
         if (result.succeeded) {
             // restore subdivisions
             for (Claim subdivision : claim.children) {
                 subdivision.parent = result.claim;
-                result.claim.children.add(subdivision);
+                result.claim.addChild(subdivision);
             }
+            // they belong to the new claim now, so deleting the original must not touch them
+            claim.clearChildren();
 
             // make original claim ineffective (it's still in the hash map, so let's make it ignored)
+            // its storage now belongs to the new claim, so it is only dropped from memory
             claim.inDataStore = false;
-            this.deleteClaim(claim);
+            this.deleteClaim(claim, true, true, false);
             // save those changes
             this.saveClaim(result.claim);
         }
@@ -1305,28 +1462,35 @@ protected List<String> convertNameListToUUIDList(List<String> names) {
     // gets all the claims "near" a location
     public Set<Claim> getNearbyClaims(Location<World> location) {
         Set<Claim> claims = new HashSet<Claim>();
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(location.getExtent().getUniqueId());
+        if (claimIndex == null) {
+            return claims;
+        }
 
-        Optional<Chunk> lesserChunk = location.getExtent().getChunk(location.sub(150, 0, 150).getBlockPosition());
-        Optional<Chunk> greaterChunk = location.getExtent().getChunk(location.add(300, 0, 300).getBlockPosition());
-
-        if (lesserChunk.isPresent() && greaterChunk.isPresent()) {
-            for (int chunk_x = lesserChunk.get().getPosition().getX(); chunk_x <= greaterChunk.get().getPosition().getX(); chunk_x++) {
-                for (int chunk_z = lesserChunk.get().getPosition().getZ(); chunk_z <= greaterChunk.get().getPosition().getZ(); chunk_z++) {
-                    Optional<Chunk> chunk = location.getExtent().getChunk(chunk_x, 0, chunk_z);
-                    if (chunk.isPresent()) {
-                        String chunkID = this.getChunkString(chunk.get().getWorld().getLocation(0, 0, 0));
-                        ArrayList<Claim> claimsInChunk = this.chunksToClaimsMap.get(chunkID);
-                        if (claimsInChunk != null) {
-                            claims.addAll(claimsInChunk);
-                        }
-                    }
-                }
-            }
+        // search the same chunk aligned area the chunk lookup used to cover
+        int lesserX = ((location.getBlockX() - 150) >> 4) << 4;
+        int lesserZ = ((location.getBlockZ() - 150) >> 4) << 4;
+        int greaterX = (((location.getBlockX() + 300) >> 4) << 4) + 15;
+        int greaterZ = (((location.getBlockZ() + 300) >> 4) << 4) + 15;
+        for (Claim claim : claimIndex.getTopLevelClaims(lesserX, lesserZ, greaterX, greaterZ)) {
+            claims.add(claim);
+            claims.addAll(claim.children);
         }
 
         return claims;
     }
 
+    // returns the top level claim closest to a location in its world, or null if that world has no claims
+    @Nullable
+    public Claim getNearestClaim(Location<World> location) {
+        ClaimWorldIndex claimIndex = this.claimWorldIndexes.get(location.getExtent().getUniqueId());
+        if (claimIndex == null) {
+            return null;
+        }
+
+        return claimIndex.getNearestTopLevelClaim(location.getBlockX(), location.getBlockZ());
+    }
+
     // retrieves player data from memory or secondary storage, as necessary
     // if the player has never been on the server before, this will return a
     // fresh player data with default values
@@ -1376,4 +1540,17 @@ public void removePlayerDataWorldManager(WorldProperties worldProperties) {
 
     public abstract void unloadWorldData(WorldProperties worldProperties);
 
+
+    private static final class GroupBonus {
+
+        final int blocks;
+        final int version;
+        final long expires;
+
+        GroupBonus(int blocks, int version, long expires) {
+            this.blocks = blocks;
+            this.version = version;
+            this.expires = expires;
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Claim storage kept as rows in a {@link ClaimDatabase}.
+ *
+ * <p>The claim document is stored compressed, the same as a region record.</p>
+ */
+class DatabaseClaimStorageData extends ClaimStorageData {
+
+    private final ClaimDatabase database;
+    private final UUID claimId;
+
+    // a new claim, written with its defaults
+    DatabaseClaimStorageData(ClaimDatabase database, Path path, UUID claimId) {
+        this(database, path, claimId, "");
+        this.save();
+    }
+
+    DatabaseClaimStorageData(ClaimDatabase database, Path path, UUID claimId, String content) {
+        super(path, content);
+        this.database = database;
+        this.claimId = claimId;
+    }
+
+    @Nullable
+    static DatabaseClaimStorageData fromDocument(ClaimDatabase database, Path path, UUID claimId, @Nullable byte[] document) {
+        String content = document == null ? null : decompress(document);
+        return content == null ? null : new DatabaseClaimStorageData(database, path, claimId, content);
+    }
+
+    @Nullable
+    @Override
+    protected Runnable prepareWrite() {
+        return this.database.prepareWrite(this.claimId, this);
+    }
+
+    @Override
+    protected void delete() {
+        this.database.delete(this.claimId);
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+// writes to a database from a background thread, off the main thread
+//
+// every write replaces the rows matched by a delete statement with new rows, which works as an upsert on any database
+// writes queued while the previous batch ran are coalesced by their delete statement and parameters, the last one wins,
+// and sent in a single transaction
+//
+// a write may only touch the one table its statements name, and its delete has to match every row it inserts
+// writes to different tables are then independent and are grouped by table, writes to the same table keep their
+// queue order and consecutive ones through the same statements share one jdbc batch
+//
+// if the transaction fails every write is retried in a transaction of its own, so one bad row only costs its own write,
+// writes that still fail are kept and tried again later, a newer write for the same rows drops them as soon as it
+// reaches the writer thread
+// the writer keeps its own pooled connection and reuses its prepared statements until the connection fails
+// once closed, writes are sent right away on the calling thread, worlds still save their claims while they unload after
+// the server stopped
+class DatabaseWriter {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final long FLUSH_TIMEOUT_SECONDS = 30;
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int VALID_CONNECTION_TIMEOUT_SECONDS = 5;
+
+    private final DataSource dataSource;
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // guarded by this
+    private long queuedWrites;
+    private long finishedWrites;
+    private boolean closed;
+
+    // only used by the writer thread, or by the closing thread once it stopped
+    private Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<List<Object>, Write> failedWrites = new LinkedHashMap<>();
+    private long nextRetry;
+
+    DatabaseWriter(DataSource dataSource, String name) {
+        this.dataSource = dataSource;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // replaces the rows matched by deleteSql with the given rows, no rows just deletes
+    // both statements must name the same table
+    void replace(String deleteSql, Object[] deleteParameters, @Nullable String insertSql, List<Object[]> rows) {
+        Write write = new Write(deleteSql, deleteParameters, insertSql, rows);
+        synchronized (this) {
+            if (this.closed) {
+                this.writeNow(Collections.singletonList(write));
+                return;
+            }
+            this.queuedWrites++;
+            this.queue.add(write);
+        }
+    }
+
+    void delete(String deleteSql, Object... deleteParameters) {
+        this.replace(deleteSql, deleteParameters, null, Collections.emptyList());
+    }
+
+    // waits until every write queued so far has been sent
+    void flush() {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT_SECONDS);
+        synchronized (this) {
+            long target = this.queuedWrites;
+            try {
+                while (this.finishedWrites < target && this.thread.isAlive()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        GriefPrevention.addLogEntry("Timed out waiting for " + (target - this.finishedWrites) + " database writes.");
+                        return;
+                    }
+                    this.wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (this.finishedWrites < target && !this.closed) {
+                GriefPrevention.addLogEntry("The database writer stopped with " + (target - this.finishedWrites) + " writes pending.");
+            }
+        }
+    }
+
+    void close() {
+        this.flush();
+        this.running = false;
+        this.thread.interrupt();
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(FLUSH_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.thread.isAlive()) {
+            GriefPrevention.addLogEntry("The database writer is still busy, later writes are queued behind it.");
+            return;
+        }
+
+        synchronized (this) {
+            this.closed = true;
+            // anything queued after the writer thread looked for the last time
+            List<Write> writes = new ArrayList<>(this.queue);
+            this.queue.clear();
+            this.finishedWrites += writes.size();
+            if (!writes.isEmpty()) {
+                this.writeNow(writes);
+            }
+        }
+    }
+
+    // sends the writes on the calling thread, only once closed, writes that fail are not kept
+    private void writeNow(List<Write> writes) {
+        this.writeBatch(writes);
+        if (!this.failedWrites.isEmpty()) {
+            GriefPrevention.addLogEntry("Dropping " + this.failedWrites.size() + " database writes that could not be written.");
+            this.failedWrites.clear();
+        }
+        this.closeConnection();
+    }
+
+    private void run() {
+        List<Write> writes = new ArrayList<>();
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                Write first = this.queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    writes.add(first);
+                    this.queue.drainTo(writes, MAX_BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // closing, drain what is left
+                if (this.queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+
+            int queued = writes.size();
+            // failed writes are older than anything queued since, so newer writes for the same rows replace them
+            if (!this.failedWrites.isEmpty() && System.currentTimeMillis() >= this.nextRetry) {
+                writes.addAll(0, this.failedWrites.values());
+                this.failedWrites.clear();
+            }
+
+            if (!writes.isEmpty()) {
+                this.writeBatch(writes);
+            }
+            if (queued > 0) {
+                synchronized (this) {
+                    this.finishedWrites += queued;
+                    this.notifyAll();
+                }
+            }
+            writes.clear();
+        }
+
+        // one last try before giving up on them
+        if (!this.failedWrites.isEmpty()) {
+            List<Write> lastTry = new ArrayList<>(this.failedWrites.values());
+            this.failedWrites.clear();
+            this.writeBatch(lastTry);
+            if (!this.failedWrites.isEmpty()) {
+                GriefPrevention.addLogEntry("Dropping " + this.failedWrites.size() + " database writes that could not be written.");
+            }
+        }
+
+        this.closeConnection();
+    }
+
+    private void writeBatch(List<Write> writes) {
+        Map<List<Object>, Write> coalesced = new LinkedHashMap<>();
+        for (Write write : writes) {
+            coalesced.remove(write.key);
+            coalesced.put(write.key, write);
+            // a failed write waiting for its retry is older, replaying it after this one would undo it
+            this.failedWrites.remove(write.key);
+        }
+
+        List<Write> batch = new ArrayList<>(coalesced.values());
+        try {
+            this.executeWithRetry(batch);
+            return;
+        } catch (SQLException e) {
+            if (batch.size() == 1) {
+                this.keepFailed(batch.get(0), e);
+                return;
+            }
+        }
+
+        // one bad row must not cost the others their writes
+        for (Write write : batch) {
+            try {
+                this.executeWithRetry(Collections.singletonList(write));
+            } catch (SQLException e) {
+                this.keepFailed(write, e);
+            }
+        }
+    }
+
+    private void keepFailed(Write write, SQLException e) {
+        if (!write.failed) {
+            write.failed = true;
+            GriefPrevention.addLogEntry("Unable to write to " + write.table + ", trying again later.  Details: " + e.getMessage());
+        }
+        this.failedWrites.put(write.key, write);
+        this.nextRetry = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+    }
+
+    // a stale pooled connection fails the first attempt, so try once more on a fresh one
+    private void executeWithRetry(List<Write> writes) throws SQLException {
+        try {
+            this.execute(writes);
+        } catch (SQLException e) {
+            if (this.isConnectionValid()) {
+                throw e;
+            }
+            this.closeConnection();
+            this.execute(writes);
+        }
+    }
+
+    private void execute(List<Write> writes) throws SQLException {
+        Map<String, List<Write>> tables = new LinkedHashMap<>();
+        for (Write write : writes) {
+            tables.computeIfAbsent(write.table, table -> new ArrayList<>()).add(write);
+        }
+
+        Connection connection = this.getConnection();
+        try {
+            for (List<Write> tableWrites : tables.values()) {
+                int start = 0;
+                while (start < tableWrites.size()) {
+                    Write first = tableWrites.get(start);
+                    int end = start + 1;
+                    while (end < tableWrites.size() && tableWrites.get(end).hasStatementsOf(first)) {
+                        end++;
+                    }
+                    this.executeRun(tableWrites.subList(start, end));
+                    start = end;
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    // deletes then inserts of consecutive writes through the same statements, which touch different rows
+    private void executeRun(List<Write> run) throws SQLException {
+        Write first = run.get(0);
+        List<Object[]> deleteParameters = new ArrayList<>(run.size());
+        List<Object[]> rows = new ArrayList<>();
+        for (Write write : run) {
+            deleteParameters.add(write.deleteParameters);
+            rows.addAll(write.rows);
+        }
+
+        this.executeBatch(first.deleteSql, deleteParameters);
+        if (first.insertSql != null && !rows.isEmpty()) {
+            this.executeBatch(first.insertSql, rows);
+        }
+    }
+
+    private void executeBatch(String sql, List<Object[]> batch) throws SQLException {
+        PreparedStatement statement = this.getStatement(sql);
+        for (Object[] parameters : batch) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            statement.addBatch();
+        }
+        statement.executeBatch();
+    }
+
+    private boolean isConnectionValid() {
+        try {
+            return this.connection != null && this.connection.isValid(VALID_CONNECTION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (this.connection == null) {
+            this.connection = this.dataSource.getConnection();
+            this.connection.setAutoCommit(false);
+        }
+        return this.connection;
+    }
+
+    private PreparedStatement getStatement(String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (statement == null) {
+            statement = this.getConnection().prepareStatement(sql);
+            this.statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    // returns the connection to the pool, its statements go with it
+    private void closeConnection() {
+        this.statements.clear();
+        if (this.connection != null) {
+            try {
+                this.connection.close();
+            } catch (SQLException ignored) {
+            }
+            this.connection = null;
+        }
+    }
+
+    // the table a statement works on, DELETE FROM table ... or INSERT INTO table ...
+    private static String getTable(String sql, String prefix) {
+        if (!sql.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            throw new IllegalArgumentException("Expected a statement starting with " + prefix + ": " + sql);
+        }
+
+        int start = prefix.length();
+        int end = start;
+        while (end < sql.length() && sql.charAt(end) != ' ' && sql.charAt(end) != '(') {
+            end++;
+        }
+        return sql.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Write {
+
+        final String table;
+        // the delete statement and its parameters, writes with the same key replace the same rows
+        final List<Object> key;
+        final String deleteSql;
+        final Object[] deleteParameters;
+        @Nullable final String insertSql;
+        final List<Object[]> rows;
+        // only used by the writer thread, the failure is logged once
+        boolean failed;
+
+        Write(String deleteSql, Object[] deleteParameters, @Nullable String insertSql, List<Object[]> rows) {
+            this.table = getTable(deleteSql, "DELETE FROM ");
+            if (insertSql != null && !this.table.equals(getTable(insertSql, "INSERT INTO "))) {
+                throw new IllegalArgumentException("A write must delete from and insert into the same table: " + deleteSql + " / " + insertSql);
+            }
+            this.key = new ArrayList<>(deleteParameters.length + 1);
+            this.key.add(deleteSql);
+            this.key.addAll(Arrays.asList(deleteParameters));
+            this.deleteSql = deleteSql;
+            this.deleteParameters = deleteParameters;
+            this.insertSql = insertSql;
+            this.rows = rows;
+        }
+
+        boolean hasStatementsOf(Write write) {
+            return this.deleteSql.equals(write.deleteSql) && Objects.equals(this.insertSql, write.insertSql);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageWriter;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
+
+// keeps claims in an embedded database with their world, owner, area and last activity indexed, player data and configs stay as in file mode
+// every world shares the database, a world's claims are read from it with one indexed query when the world loads
+public class EmbeddedDatabaseDataStore extends FlatFileDataStore {
+
+    public final static String STORAGE_FORMAT = "h2";
+
+    @Nullable private ClaimDatabase database;
+
+    public EmbeddedDatabaseDataStore() {
+    }
+
+    @Override
+    public String getStorageFormat() {
+        return STORAGE_FORMAT;
+    }
+
+    // opened with the first world, claims fall back to files while the database can't be opened
+    @Nullable
+    private ClaimDatabase getDatabase() {
+        if (this.database == null) {
+            Path databaseFile = this.getClaimDatabaseFile();
+            try {
+                this.database = new ClaimDatabase(databaseFile);
+            } catch (Exception e) {
+                GriefPrevention.addLogEntry("Unable to open the claim database " + databaseFile + ", claims are saved to files.  Details: "
+                        + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        return this.database;
+    }
+
+    @Override
+    void loadWorldClaims(WorldProperties worldProperties) throws Exception {
+        ClaimDatabase claimDatabase = this.getDatabase();
+        if (claimDatabase == null) {
+            super.loadWorldClaims(worldProperties);
+            return;
+        }
+
+        long loadStart = System.nanoTime();
+        Map<UUID, byte[]> documents = claimDatabase.readClaims(worldProperties.getUniqueId());
+        List<UUID> claimIds = new ArrayList<>(documents.keySet());
+
+        // inflating and mapping the documents runs on the fork join pool, the same as claim files
+        Path claimFolder = this.getWorldDataPath(worldProperties, claimDataPath);
+        ClaimStorageData[] claimStorage = new ClaimStorageData[claimIds.size()];
+        IntStream.range(0, claimStorage.length).parallel()
+                .forEach(i -> claimStorage[i] = DatabaseClaimStorageData.fromDocument(claimDatabase, claimFolder.resolve(claimIds.get(i).toString()),
+                        claimIds.get(i), documents.get(claimIds.get(i))));
+
+        this.loadClaims(worldProperties, claimIds, claimStorage, loadStart);
+    }
+
+    @Override
+    ClaimStorageData createClaimStorage(WorldProperties worldProperties, UUID claimId) throws Exception {
+        ClaimDatabase claimDatabase = this.getDatabase();
+        if (claimDatabase == null) {
+            return super.createClaimStorage(worldProperties, claimId);
+        }
+        // starts from the claim's row if it has one, the same as a claim file
+        Path claimFile = this.getWorldDataPath(worldProperties, claimDataPath).resolve(claimId.toString());
+        byte[] document = claimDatabase.readClaim(claimId);
+        ClaimStorageData claimStorage = document == null ? null : DatabaseClaimStorageData.fromDocument(claimDatabase, claimFile, claimId, document);
+        return claimStorage != null ? claimStorage : new DatabaseClaimStorageData(claimDatabase, claimFile, claimId);
+    }
+
+    @Override
+    boolean hasStoredClaims(WorldProperties worldProperties) throws IOException {
+        ClaimDatabase claimDatabase = this.getDatabase();
+        if (claimDatabase == null) {
+            return super.hasStoredClaims(worldProperties);
+        }
+        try {
+            return claimDatabase.hasClaims(worldProperties.getUniqueId()) || super.hasStoredClaims(worldProperties);
+        } catch (SQLException e) {
+            throw new IOException("Unable to look up the claims of " + worldProperties.getWorldName() + " in the claim database", e);
+        }
+    }
+
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        if (this.database != null) {
+            this.database.flush();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<UUID> getClaimIdsInactiveSince(WorldProperties worldProperties, Instant lastActive) {
+        if (this.database == null) {
+            return null;
+        }
+        try {
+            return this.database.getClaimIdsInactiveSince(worldProperties.getUniqueId(), lastActive);
+        } catch (SQLException e) {
+            GriefPrevention.addLogEntry("Unable to look up inactive claims in the claim database.  Details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<UUID> getClaimIdsOwnedBy(UUID ownerUniqueId) {
+        if (this.database == null) {
+            return null;
+        }
+        try {
+            return this.database.getClaimIdsOwnedBy(ownerUniqueId);
+        } catch (SQLException e) {
+            GriefPrevention.addLogEntry("Unable to look up the claims of " + ownerUniqueId + " in the claim database.  Details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<UUID> getClaimIdsOfType(WorldProperties worldProperties, Claim.Type type) {
+        if (this.database == null) {
+            return null;
+        }
+        try {
+            return this.database.getClaimIdsOfType(worldProperties.getUniqueId(), type);
+        } catch (SQLException e) {
+            GriefPrevention.addLogEntry("Unable to look up claims by type in the claim database.  Details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // sends every pending claim write and stops the database writer, called once pending claim saves have been handed over on shutdown
+    // the database stays usable, worlds unloading after this write their claims to it directly
+    public void closeDatabase() {
+        ClaimStorageWriter.flush();
+        if (this.database != null) {
+            this.database.close();
+        }
+    }
+}
@@ -26,8 +26,11 @@
 
 import com.flowpowered.math.vector.Vector3i;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.ClaimRegionStorage;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.SubDivisionDataNode;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageWriter;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.Type;
@@ -47,12 +50,19 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
 
 //manages data stored in the file system
 public class FlatFileDataStore extends DataStore {
@@ -61,6 +71,9 @@ public class FlatFileDataStore extends DataStore {
     private final static Path worldsConfigFolderPath = dataLayerFolderPath.resolve("worlds");
     public final static Path claimDataPath = Paths.get("GriefPreventionData", "ClaimData");
     public final static Path playerDataPath = Paths.get("GriefPreventionData", "PlayerData");
+    public final static Path claimRegionPath = Paths.get("GriefPreventionData", "ClaimRegions");
+    public final static Path claimDatabasePath = Paths.get("GriefPreventionData", "ClaimDatabase");
+    public final static String STORAGE_FORMAT = "file";
     private final Path rootConfigPath = Sponge.getGame().getSavesDirectory().resolve("config").resolve("GriefPrevention").resolve("worlds");
     private Path rootWorldSavePath;
 
@@ -98,6 +111,8 @@ public void loadWorldData(WorldProperties worldProperties) {
         // create world config
         DataStore.worldConfigMap.put(worldProperties.getUniqueId(), new GriefPreventionConfig<>(Type.WORLD,
                 rootConfigPath.resolve(dimType.getId()).resolve(worldProperties.getWorldName()).resolve("world.conf")));
+        GPFlags.invalidateDefaults();
+        DataStore.effectiveConfigMap.put(worldProperties.getUniqueId(), new EffectiveWorldConfig(GriefPrevention.getActiveConfig(worldProperties)));
 
         // check if claims are supported
         GriefPreventionConfig<GriefPreventionConfig.WorldConfig> worldConfig = DataStore.worldConfigMap.get(worldProperties.getUniqueId());
@@ -114,28 +129,24 @@ public void loadWorldData(WorldProperties worldProperties) {
         }
 
         // check if world has existing data
-        Path worldClaimDataPath = Paths.get(worldProperties.getWorldName()).resolve(claimDataPath);
-        Path worldPlayerDataPath = Paths.get(worldProperties.getWorldName()).resolve(playerDataPath);
-        if (worldProperties.getUniqueId() == Sponge.getGame().getServer().getDefaultWorld().get().getUniqueId()) {
-            worldClaimDataPath = claimDataPath;
-            worldPlayerDataPath = playerDataPath;
-        }
+        Path worldPlayerDataPath = this.getWorldDataPath(worldProperties, playerDataPath);
 
         try {
-            if (Files.exists(rootWorldSavePath.resolve(worldClaimDataPath))) {
-                File[] files = rootWorldSavePath.resolve(worldClaimDataPath).toFile().listFiles();
-                this.loadClaimData(files);
-                GriefPrevention.addLogEntry("[" + worldProperties.getWorldName() + "]" + files.length + " total claims loaded.");
-            } else {
-                Files.createDirectories(rootWorldSavePath.resolve(worldClaimDataPath));
+            this.loadWorldClaims(worldProperties);
+
+            // warm up owner names for claim messages and listings
+            List<UUID> owners = new ArrayList<>();
+            for (Claim claim : this.getClaimWorldIndex(worldProperties.getUniqueId()).getTopLevelClaims()) {
+                owners.add(claim.ownerID);
             }
+            this.playerNameCache.prefetch(owners);
     
-            if (Files.exists(rootWorldSavePath.resolve(worldPlayerDataPath))) {
-                File[] files = rootWorldSavePath.resolve(worldPlayerDataPath).toFile().listFiles();
+            if (Files.exists(worldPlayerDataPath)) {
+                File[] files = worldPlayerDataPath.toFile().listFiles();
                 this.loadPlayerData(worldProperties, files);
             }
-            if (!Files.exists(rootWorldSavePath.resolve(worldPlayerDataPath))) {
-                Files.createDirectories(rootWorldSavePath.resolve(worldPlayerDataPath));
+            if (!Files.exists(worldPlayerDataPath)) {
+                Files.createDirectories(worldPlayerDataPath);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -143,41 +154,98 @@ public void loadWorldData(WorldProperties worldProperties) {
     }
 
     public void unloadWorldData(WorldProperties worldProperties) {
+        // pending claim writes must reach disk before the world goes away
+        ClaimStorageWriter.flush();
         if (GriefPrevention.getGlobalConfig().getConfig().playerdata.useGlobalPlayerDataStorage) {
             this.playerDataManagers.remove(worldProperties);
         }
     }
 
-    void loadClaimData(File[] files) throws Exception {
+    // the data folders of the default world live directly in the save folder, other worlds have their own folder in it
+    Path getWorldDataPath(WorldProperties worldProperties, Path dataPath) {
+        if (worldProperties.getUniqueId().equals(Sponge.getGame().getServer().getDefaultWorld().get().getUniqueId())) {
+            return this.rootWorldSavePath.resolve(dataPath);
+        }
+        return this.rootWorldSavePath.resolve(worldProperties.getWorldName()).resolve(dataPath);
+    }
+
+    public String getStorageFormat() {
+        return STORAGE_FORMAT;
+    }
+
+    // the embedded claim database is shared by every world and kept with the default world's data
+    Path getClaimDatabaseFile() {
+        return this.rootWorldSavePath.resolve(claimDatabasePath);
+    }
+
+    void loadWorldClaims(WorldProperties worldProperties) throws Exception {
+        Path worldClaimDataPath = this.getWorldDataPath(worldProperties, claimDataPath);
+        if (Files.exists(worldClaimDataPath)) {
+            this.loadClaimData(worldProperties, worldClaimDataPath.toFile().listFiles());
+        } else {
+            Files.createDirectories(worldClaimDataPath);
+        }
+    }
+
+    void loadClaimData(WorldProperties worldProperties, File[] files) throws Exception {
+        long loadStart = System.nanoTime();
+        List<File> claimFiles = new ArrayList<>(files.length);
+        List<UUID> claimIds = new ArrayList<>(files.length);
         for (int i = 0; i < files.length; i++) {
             if (files[i].isFile()) // avoids folders
             {
-                // the filename is the claim ID. try to parse it
-                UUID claimId;
+                // left behind by an interrupted write, the claim file itself is still intact
+                if (files[i].getName().endsWith(ClaimStorageWriter.TEMP_FILE_SUFFIX)) {
+                    files[i].delete();
+                    continue;
+                }
 
+                // the filename is the claim ID. try to parse it
                 try {
-                    claimId = UUID.fromString(files[i].getName());
+                    claimIds.add(UUID.fromString(files[i].getName()));
+                    claimFiles.add(files[i]);
                 } catch (Exception e) {
                     GriefPrevention.addLogEntry("ERROR!! could not read claim file " + files[i].getAbsolutePath());
-                    continue;
                 }
+            }
+        }
 
-                try {
-                   this.loadClaim(files[i], claimId);
-                }
+        // parsing and mapping the files is the slow part and touches no shared state, so it runs on the fork join pool
+        // files are only read here, nothing is written back until a claim actually changes
+        ClaimStorageData[] claimStorage = new ClaimStorageData[claimFiles.size()];
+        IntStream.range(0, claimStorage.length).parallel()
+                .forEach(i -> claimStorage[i] = this.readClaimStorage(worldProperties, claimFiles.get(i).toPath()));
 
-                // if there's any problem with the file's content, log an error message and skip it
-                catch (Exception e) {
-                    if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                        files[i].delete();
-                    } else {
-                        StringWriter errors = new StringWriter();
-                        e.printStackTrace(new PrintWriter(errors));
-                        GriefPrevention.addLogEntry(files[i].getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                    }
+        this.loadClaims(worldProperties, claimIds, claimStorage, loadStart);
+    }
+
+    // builds and indexes the parsed claims on the main thread in one go
+    void loadClaims(WorldProperties worldProperties, List<UUID> claimIds, ClaimStorageData[] claimStorage, long loadStart) {
+        List<Claim> loadedClaims = new ArrayList<>(claimStorage.length);
+        int claimCount = 0;
+        for (int i = 0; i < claimStorage.length; i++) {
+            try {
+                this.loadClaim(claimStorage[i], claimIds.get(i), loadedClaims);
+                claimCount++;
+            }
+
+            // if there's any problem with the file's content, log an error message and skip it
+            catch (Exception e) {
+                if (e.getMessage() != null && e.getMessage().contains("World not found")) {
+                    ClaimStorageWriter.delete(claimStorage[i]);
+                } else {
+                    StringWriter errors = new StringWriter();
+                    e.printStackTrace(new PrintWriter(errors));
+                    GriefPrevention.addLogEntry(claimIds.get(i) + " " + errors.toString(), CustomLogEntryTypes.Exception);
                 }
             }
         }
+
+        this.addLoadedClaims(loadedClaims);
+
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart);
+        GriefPrevention.addLogEntry("[" + worldProperties.getWorldName() + "]" + claimCount + " total claims loaded in " + loadMillis + "ms ("
+                + (claimCount == 0 ? 0 : loadMillis * 10000 / claimCount) + "ms per 10000 claims).");
     }
 
     void loadPlayerData(WorldProperties worldProperties, File[] files) throws Exception {
@@ -216,21 +284,21 @@ void loadPlayerData(WorldProperties worldProperties, File[] files) throws Except
         }
     }
 
-    Claim loadClaim(File claimFile, UUID claimId)
+    // builds the claim and its subdivisions, they are added to the data store by the caller
+    Claim loadClaim(@Nullable ClaimStorageData claimStorage, UUID claimId, List<Claim> loadedClaims)
             throws Exception {
         Claim claim;
 
-        ClaimStorageData claimStorage = new ClaimStorageData(claimFile.toPath());
+        if (claimStorage == null) {
+            throw new Exception("Claim data could not be read for " + claimId);
+        }
+        if (claimStorage.getConfig() == null) {
+            throw new Exception("Claim data could not be read from " + claimStorage.filePath);
+        }
 
         // identify world the claim is in
         UUID worldUniqueId = claimStorage.getConfig().worldUniqueId;
-        World world = null;
-        for (World w : Sponge.getGame().getServer().getWorlds()) {
-            if (w.getUniqueId().equals(worldUniqueId)) {
-                world = w;
-                break;
-            }
-        }
+        World world = worldUniqueId == null ? null : Sponge.getGame().getServer().getWorld(worldUniqueId).orElse(null);
 
         if (world == null) {
             throw new Exception("World UUID not found: \"" + worldUniqueId + "\"");
@@ -252,14 +320,13 @@ Claim loadClaim(File claimFile, UUID claimId)
         // instantiate
         claim = new Claim(lesserBoundaryCorner, greaterBoundaryCorner, claimId);
         claim.ownerID = ownerID;
-        claim.world = lesserBoundaryCorner.getExtent();
         claim.type = claimStorage.getConfig().claimType;
         claim.setClaimStorage(claimStorage);
         claim.setClaimData(claimStorage.getConfig());
         claim.context = new Context("claim", claim.id.toString());
 
         // add parent claim first
-        this.addClaim(claim, false);
+        loadedClaims.add(claim);
         // check for subdivisions
         for(Map.Entry<UUID, SubDivisionDataNode> mapEntry : claimStorage.getConfig().subdivisions.entrySet()) {
             SubDivisionDataNode subDivisionData = mapEntry.getValue();
@@ -270,41 +337,33 @@ Claim loadClaim(File claimFile, UUID claimId)
 
             Claim subDivision = new Claim(subLesserBoundaryCorner, subGreaterBoundaryCorner, mapEntry.getKey());
             subDivision.id = mapEntry.getKey();
-            subDivision.world = subLesserBoundaryCorner.getExtent();
             subDivision.setClaimStorage(claimStorage);
             subDivision.context = new Context("claim", subDivision.id.toString());
             subDivision.parent = claim;
             subDivision.type = Claim.Type.SUBDIVISION;
             subDivision.setClaimData(subDivisionData);
             // add subdivision
-            this.addClaim(subDivision, false);
+            loadedClaims.add(subDivision);
         }
         return claim;
     }
 
-    public void updateClaimData(Claim claim, File claimFile) {
-
-        ClaimStorageData claimStorage = claim.getClaimStorage();
-        if (claimStorage == null) {
-            claimStorage = new ClaimStorageData(claimFile.toPath());
-            claim.setClaimStorage(claimStorage);
-            claim.setClaimData(claimStorage.getConfig());
-        }
+    public void updateClaimData(Claim claim, ClaimStorageData claimStorage) {
 
         // owner
         if (!claim.isSubdivision()) {
             claimStorage.getConfig().ownerUniqueId = claim.ownerID;
             claimStorage.getConfig().worldUniqueId = claim.world.getUniqueId();
-            claimStorage.getConfig().lesserBoundaryCornerPos = positionToString(claim.lesserBoundaryCorner);
-            claimStorage.getConfig().greaterBoundaryCornerPos = positionToString(claim.greaterBoundaryCorner);
+            claimStorage.getConfig().lesserBoundaryCornerPos = positionToString(claim.getLesserBoundaryCorner());
+            claimStorage.getConfig().greaterBoundaryCornerPos = positionToString(claim.getGreaterBoundaryCorner());
             claimStorage.getConfig().claimType = claim.type;
         } else {
             if (claim.getClaimData() == null) {
                 claim.setClaimData(new SubDivisionDataNode());
             }
 
-            claim.getClaimData().setLesserBoundaryCorner(positionToString(claim.lesserBoundaryCorner));
-            claim.getClaimData().setGreaterBoundaryCorner(positionToString(claim.greaterBoundaryCorner));
+            claim.getClaimData().setLesserBoundaryCorner(positionToString(claim.getLesserBoundaryCorner()));
+            claim.getClaimData().setGreaterBoundaryCorner(positionToString(claim.getGreaterBoundaryCorner()));
             claimStorage.getConfig().subdivisions.put(claim.id, (SubDivisionDataNode) claim.getClaimData());
         }
 
@@ -313,25 +372,15 @@ public void updateClaimData(Claim claim, File claimFile) {
 
     @Override
     synchronized void writeClaimToStorage(Claim claim) {
-        Path rootPath = Sponge.getGame().getSavesDirectory().resolve(Sponge.getGame().getServer().getDefaultWorld().get().getWorldName());
-
         try {
-            // open the claim's file
-            Path claimDataFolderPath = null;
-            // check if main world
-            if (claim.world.getUniqueId() == Sponge.getGame().getServer().getDefaultWorld().get().getUniqueId()) {
-                claimDataFolderPath = rootPath.resolve(claimDataPath);
-            } else {
-                claimDataFolderPath = rootPath.resolve(claim.world.getName()).resolve(claimDataPath);
-            }
-
-            UUID claimId = claim.parent != null ? claim.parent.id : claim.id;
-            File claimFile = new File(claimDataFolderPath + File.separator + claimId);
-            if (!claimFile.exists()) {
-                claimFile.createNewFile();
+            ClaimStorageData claimStorage = claim.getClaimStorage();
+            if (claimStorage == null) {
+                claimStorage = this.createClaimStorage(claim.world.getProperties(), claim.parent != null ? claim.parent.id : claim.id);
+                claim.setClaimStorage(claimStorage);
+                claim.setClaimData(claimStorage.getConfig());
             }
 
-            updateClaimData(claim, claimFile);
+            updateClaimData(claim, claimStorage);
         }
 
         // if any problem, log it
@@ -342,15 +391,136 @@ synchronized void writeClaimToStorage(Claim claim) {
         }
     }
 
+    // writes every loaded top level claim in the given storage format, replacing whatever that format held
+    // the claims keep using the active format, the new one is picked up after a restart
+    public int migrateClaimStorage(String targetFormat) throws IOException {
+        // start from what is on disk for the active format
+        ClaimStorageWriter.flush();
+
+        // only loaded worlds have their claims in memory, copying without the others would lose their claims
+        List<String> unloadedWorlds = new ArrayList<>();
+        for (WorldProperties worldProperties : Sponge.getServer().getAllWorldProperties()) {
+            if (!Sponge.getServer().getWorld(worldProperties.getUniqueId()).isPresent() && this.hasStoredClaims(worldProperties)) {
+                unloadedWorlds.add(worldProperties.getWorldName());
+            }
+        }
+        if (!unloadedWorlds.isEmpty()) {
+            throw new IOException("Claims can only be copied from loaded worlds, load " + String.join(", ", unloadedWorlds) + " and try again");
+        }
+
+        if (targetFormat.equals(EmbeddedDatabaseDataStore.STORAGE_FORMAT)) {
+            return this.migrateClaimsToDatabase();
+        }
+
+        int migrated = 0;
+        for (World world : Sponge.getGame().getServer().getWorlds()) {
+            WorldProperties worldProperties = world.getProperties();
+            List<Claim> claims = this.getClaimWorldIndex(worldProperties.getUniqueId()).getTopLevelClaims();
+            if (targetFormat.equals(RegionFileDataStore.STORAGE_FORMAT)) {
+                Path regionFolder = this.getWorldDataPath(worldProperties, claimRegionPath);
+                deleteClaimFiles(regionFolder, "*" + ClaimRegionStorage.REGION_FILE_SUFFIX);
+                ClaimRegionStorage regionStorage = new ClaimRegionStorage(regionFolder);
+                try {
+                    for (Claim claim : claims) {
+                        String content = claim.getClaimStorage() == null ? null : claim.getClaimStorage().render();
+                        if (content != null) {
+                            regionStorage.write(claim.id, claim.getLesserBoundaryCorner().getBlockX(), claim.getLesserBoundaryCorner().getBlockZ(),
+                                    ClaimStorageData.compress(content));
+                            migrated++;
+                        }
+                    }
+                } finally {
+                    regionStorage.close();
+                }
+            } else {
+                Path claimFolder = this.getWorldDataPath(worldProperties, claimDataPath);
+                Files.createDirectories(claimFolder);
+                deleteClaimFiles(claimFolder, "*-*-*-*-*");
+                for (Claim claim : claims) {
+                    String content = claim.getClaimStorage() == null ? null : claim.getClaimStorage().render();
+                    if (content != null) {
+                        ClaimStorageWriter.writeFile(claimFolder.resolve(claim.id.toString()), content);
+                        migrated++;
+                    }
+                }
+            }
+        }
+        return migrated;
+    }
+
+    private int migrateClaimsToDatabase() throws IOException {
+        ClaimDatabase claimDatabase;
+        try {
+            claimDatabase = new ClaimDatabase(this.getClaimDatabaseFile());
+        } catch (SQLException e) {
+            throw new IOException("Unable to open the claim database " + this.getClaimDatabaseFile(), e);
+        }
+
+        int migrated = 0;
+        try {
+            for (World world : Sponge.getGame().getServer().getWorlds()) {
+                try {
+                    claimDatabase.deleteWorld(world.getUniqueId());
+                } catch (SQLException e) {
+                    throw new IOException("Unable to clear the claims of " + world.getName() + " from the claim database", e);
+                }
+                for (Claim claim : this.getClaimWorldIndex(world.getUniqueId()).getTopLevelClaims()) {
+                    Runnable write = claim.getClaimStorage() == null ? null : claimDatabase.prepareWrite(claim.id, claim.getClaimStorage());
+                    if (write != null) {
+                        write.run();
+                        migrated++;
+                    }
+                }
+            }
+        } finally {
+            claimDatabase.close();
+        }
+        return migrated;
+    }
+
+    // whether the world has claims saved in the active format, used for worlds that aren't loaded
+    boolean hasStoredClaims(WorldProperties worldProperties) throws IOException {
+        return hasClaimFiles(this.getWorldDataPath(worldProperties, claimDataPath), "*-*-*-*-*");
+    }
+
+    static boolean hasClaimFiles(Path folder, String glob) throws IOException {
+        if (Files.notExists(folder)) {
+            return false;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, glob)) {
+            return stream.iterator().hasNext();
+        }
+    }
+
+    private static void deleteClaimFiles(Path folder, String glob) throws IOException {
+        if (Files.notExists(folder)) {
+            return;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, glob)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    // opens an existing claim file without writing it back, may be called from any thread
+    ClaimStorageData readClaimStorage(WorldProperties worldProperties, Path claimFile) {
+        return new ClaimStorageData(claimFile, false);
+    }
+
+    // opens the claim's file, creating it if needed
+    ClaimStorageData createClaimStorage(WorldProperties worldProperties, UUID claimId) throws Exception {
+        return new ClaimStorageData(this.getWorldDataPath(worldProperties, claimDataPath).resolve(claimId.toString()));
+    }
+
     // deletes a claim from the file system
     @Override
     synchronized void deleteClaimFromSecondaryStorage(Claim claim) {
-        try {
-            Files.delete(claim.getClaimStorage().filePath);
-        } catch (IOException e) {
-            e.printStackTrace();
-            GriefPrevention.addLogEntry("Error: Unable to delete claim file \"" + claim.getClaimStorage().filePath + "\".");
-        }
+        ClaimStorageWriter.delete(claim.getClaimStorage());
     }
 
     // grants a group (players with a specific permission) bonus claim blocks as
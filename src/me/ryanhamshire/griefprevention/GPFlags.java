@@ -2,11 +2,13 @@
 
 import com.google.common.collect.ImmutableSet;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimPermissionCache;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.util.Tristate;
 
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class GPFlags {
 
@@ -78,6 +80,9 @@ public class GPFlags {
     public static final String COMMENT_WATER_FLOW = "Allow/deny water flow.";
     public static final String COMMENT_VILLAGER_TRADING = "Allow/deny villager trading.";
 
+    // bumped whenever flag defaults may have changed, claims recompute their flag tables when it moves
+    private static final AtomicInteger defaultsVersion = new AtomicInteger();
+
     public static Tristate getClaimFlagPermission(User user, Claim claim, String flag) {
         if (GriefPrevention.instance.permPluginInstalled) {
             Set<Context> contextSet = ImmutableSet.of(claim.getContext());
@@ -90,8 +95,25 @@ public static Tristate getClaimFlagPermission(User user, Claim claim, String fla
         return getClaimFlagPermission(claim, flag);
     }
 
+    public static Tristate getClaimFlagPermission(User user, Claim claim, ClaimFlag flag) {
+        if (GriefPrevention.instance.permPluginInstalled) {
+            Set<Context> contextSet = ImmutableSet.of(claim.getContext());
+            Tristate value = user.getPermissionValue(contextSet, flag.getPermission());
+            if (value != Tristate.UNDEFINED) {
+                return value;
+            }
+        }
+
+        return claim.getFlagValue(flag);
+    }
+
     // No user
     public static Tristate getClaimFlagPermission(Claim claim, String flag) {
+        ClaimFlag claimFlag = ClaimFlag.fromString(flag);
+        if (claimFlag != null) {
+            return claim.getFlagValue(claimFlag);
+        }
+
         flag = flag.replace("griefprevention.flag.", "");
         Tristate value = (Tristate) claim.getClaimData().getFlags().getFlagValue(flag);
 
@@ -108,4 +130,36 @@ public static Tristate getClaimFlagPermission(Claim claim, String flag) {
 
         return Tristate.TRUE;
     }
+
+    public static Tristate getClaimFlagPermission(Claim claim, ClaimFlag flag) {
+        return claim.getFlagValue(flag);
+    }
+
+    // resolves a flag from the claim's own value, falling back to the active world config
+    // only used to build the flag table of a claim, see Claim.getFlagValue
+    public static Tristate resolveClaimFlag(Claim claim, ClaimFlag flag) {
+        Tristate value = (Tristate) claim.getClaimData().getFlags().getFlagValue(flag.getName());
+        if (value == Tristate.UNDEFINED) {
+            Object obj = GriefPrevention.getActiveConfig(claim.world.getProperties()).getConfig().flags.getFlagValue(flag.getName());
+            if (obj != null) {
+                return Tristate.fromBoolean((boolean) obj);
+            }
+        }
+
+        if (value != null) {
+            return value;
+        }
+
+        return Tristate.TRUE;
+    }
+
+    public static int getDefaultsVersion() {
+        return defaultsVersion.get();
+    }
+
+    // call after any world, dimension or global config is (re)loaded
+    public static void invalidateDefaults() {
+        defaultsVersion.incrementAndGet();
+        ClaimPermissionCache.invalidateAll();
+    }
 }
@@ -60,6 +60,7 @@ public class GPPermissions {
     public static final String RESTORE_NATURE = "griefprevention.admin.restore-nature";
     public static final String RESTORE_NATURE_AGGRESSIVE = "griefprevention.admin.restore-nature-aggressive";
     public static final String RESTORE_NATURE_FILL = "griefprevention.admin.restore-nature-fill";
+    public static final String MIGRATE_STORAGE = "griefprevention.admin.migrate-storage";
 
     // Item bans
     public static final String BAN_ITEM = "griefprevention.items.ban";
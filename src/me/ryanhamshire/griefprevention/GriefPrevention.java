@@ -64,6 +64,7 @@
 import me.ryanhamshire.griefprevention.command.CommandHelp;
 import me.ryanhamshire.griefprevention.command.CommandIgnorePlayer;
 import me.ryanhamshire.griefprevention.command.CommandIgnoredPlayerList;
+import me.ryanhamshire.griefprevention.command.CommandMigrateStorage;
 import me.ryanhamshire.griefprevention.command.CommandRestoreNature;
 import me.ryanhamshire.griefprevention.command.CommandRestoreNatureAggressive;
 import me.ryanhamshire.griefprevention.command.CommandRestoreNatureFill;
@@ -79,6 +80,8 @@
 import me.ryanhamshire.griefprevention.command.CommandUnseparate;
 import me.ryanhamshire.griefprevention.command.CommandUntrust;
 import me.ryanhamshire.griefprevention.command.CommandUntrustAll;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageWriter;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.GlobalConfig;
@@ -114,6 +117,7 @@
 import org.spongepowered.api.event.cause.Cause;
 import org.spongepowered.api.event.game.state.GameAboutToStartServerEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
 import org.spongepowered.api.event.service.ChangeServiceProviderEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
@@ -143,10 +147,13 @@
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.Nullable;
+
 @Plugin(id = "me.ryanhamshire.griefprevention", name = "GriefPrevention", version = "12.7.1", description = "This plugin is designed to prevent all forms of grief.")
 public class GriefPrevention {
 
@@ -181,9 +188,19 @@ public class GriefPrevention {
     // how long to wait before deciding a player is staying online or staying offline, for notication messages
     public static final int NOTIFICATION_SECONDS = 20;
 
+    // abridged log entries lost because the log writer couldn't keep up
+    public long getDroppedLogEntries() {
+        return this.customLogger == null ? 0 : this.customLogger.getDroppedEntries();
+    }
+
+    // whether entries of a type are recorded at all, check before building expensive entries
+    public static boolean isLogEnabled(CustomLogEntryTypes customLogType) {
+        return customLogType != CustomLogEntryTypes.Debug || GriefPrevention.getGlobalConfig().getConfig().logging.loggingDebug;
+    }
+
     // adds a server log entry
     public static void addLogEntry(String entry, CustomLogEntryTypes customLogType, boolean excludeFromServerLogs) {
-        if (customLogType == CustomLogEntryTypes.Debug && !GriefPrevention.getGlobalConfig().getConfig().logging.loggingDebug) {
+        if (!isLogEnabled(customLogType)) {
             return;
         }
 
@@ -202,6 +219,35 @@ public static void addLogEntry(String entry) {
         addLogEntry(entry, CustomLogEntryTypes.Debug);
     }
 
+    // the entry is only built when the type is enabled
+    public static void addLogEntry(Supplier<String> entry, CustomLogEntryTypes customLogType) {
+        if (isLogEnabled(customLogType)) {
+            addLogEntry(entry.get(), customLogType, false);
+        }
+    }
+
+    // each {} in the template is replaced by the next argument, formatting only happens when the type is enabled
+    // so event handlers can pass causes and transactions without paying for their toString()
+    public static void addLogEntry(CustomLogEntryTypes customLogType, String template, Object... args) {
+        if (isLogEnabled(customLogType)) {
+            addLogEntry(formatLogEntry(template, args), customLogType, false);
+        }
+    }
+
+    private static String formatLogEntry(String template, Object[] args) {
+        StringBuilder builder = new StringBuilder(template.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int placeholder = template.indexOf("{}", start);
+            if (placeholder < 0) {
+                break;
+            }
+            builder.append(template, start, placeholder).append(arg);
+            start = placeholder + 2;
+        }
+        return builder.append(template, start, template.length()).toString();
+    }
+
     @Listener
     public void onChangeServiceProvider(ChangeServiceProviderEvent event) {
         if (event.getNewProvider() instanceof PermissionService) {
@@ -219,7 +265,16 @@ public void onAboutToStart(GameAboutToStartServerEvent event) {
 
         if (this.dataStore == null) {
             try {
-                this.dataStore = new FlatFileDataStore();
+                String claimFormat = getGlobalConfig().getConfig().storage.claimFormat;
+                if (RegionFileDataStore.STORAGE_FORMAT.equalsIgnoreCase(claimFormat)) {
+                    this.dataStore = new RegionFileDataStore();
+                } else if (JournalDataStore.STORAGE_FORMAT.equalsIgnoreCase(claimFormat)) {
+                    this.dataStore = new JournalDataStore();
+                } else if (EmbeddedDatabaseDataStore.STORAGE_FORMAT.equalsIgnoreCase(claimFormat)) {
+                    this.dataStore = new EmbeddedDatabaseDataStore();
+                } else {
+                    this.dataStore = new FlatFileDataStore();
+                }
                 this.dataStore.initialize();
             } catch (Exception e) {
                 GriefPrevention.addLogEntry("Unable to initialize the file system data store.  Details:");
@@ -228,7 +283,10 @@ public void onAboutToStart(GameAboutToStartServerEvent event) {
             }
         }
 
-        String dataMode = (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
+        String dataMode = (this.dataStore instanceof RegionFileDataStore) ? "(Region File Mode)"
+                : (this.dataStore instanceof JournalDataStore) ? "(Journal Mode)"
+                : (this.dataStore instanceof EmbeddedDatabaseDataStore) ? "(Embedded Database Mode)"
+                : (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
         Sponge.getGame().getEventManager().registerListeners(this, new BlockEventHandler(dataStore));
         Sponge.getGame().getEventManager().registerListeners(this, new PlayerEventHandler(dataStore, this));
         Sponge.getGame().getEventManager().registerListeners(this, new EntityEventHandler(dataStore));
@@ -236,6 +294,19 @@ public void onAboutToStart(GameAboutToStartServerEvent event) {
         addLogEntry("Finished loading data " + dataMode + ".");
     }
 
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event) {
+        ClaimStorageWriter.close();
+        if (this.dataStore instanceof JournalDataStore) {
+            ((JournalDataStore) this.dataStore).closeJournals();
+        } else if (this.dataStore instanceof EmbeddedDatabaseDataStore) {
+            ((EmbeddedDatabaseDataStore) this.dataStore).closeDatabase();
+        }
+        if (this.customLogger != null) {
+            this.customLogger.close();
+        }
+    }
+
     @Listener
     public void onServerStarted(GameStartedServerEvent event) {
         PUBLIC_USER = Sponge.getServiceManager().provide(UserStorageService.class).get().getOrCreate(GameProfile.of(GriefPrevention.PUBLIC_UUID, GriefPrevention.PUBLIC_NAME));
@@ -482,6 +553,13 @@ public void registerBaseCommands() {
                 .executor(new CommandGpReload())
                 .build(), Arrays.asList("gpreload"));
 
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Copies all claims to another storage format"))
+                .permission(GPPermissions.MIGRATE_STORAGE)
+                .arguments(string(Text.of("format")))
+                .executor(new CommandMigrateStorage())
+                .build(), Arrays.asList("gpmigrate"));
+
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Switches the shovel tool to restoration mode"))
                 .permission(GPPermissions.RESTORE_NATURE)
@@ -614,6 +692,10 @@ public void loadConfig() {
                 DataStore.worldConfigMap.put(world.getProperties().getUniqueId(), new GriefPreventionConfig<>(Type.WORLD,
                         rootConfigPath.resolve(dimType.getId()).resolve(world.getProperties().getWorldName()).resolve("world.conf")));
             }
+
+            // claims rebuild their flag tables from the new defaults
+            GPFlags.invalidateDefaults();
+            GriefPrevention.invalidateEffectiveConfigs();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -675,13 +757,13 @@ public Optional<User> resolvePlayerByName(String name) {
 
     // string overload for above helper
     static String lookupPlayerName(String uuid) {
-        Optional<User> user = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(UUID.fromString(uuid));
-        if (!user.isPresent()) {
+        String name = GriefPrevention.instance.dataStore.getPlayerNameCache().lookup(UUID.fromString(uuid));
+        if (name == null) {
             GriefPrevention.addLogEntry("Error: Tried to look up a local player name for invalid UUID: " + uuid);
             return "someone";
         }
 
-        return user.get().getName();
+        return name;
     }
 
     // called when a player spawns, applies protection for that player if necessary
@@ -747,8 +829,7 @@ public boolean ejectPlayer(Player player) {
 
             // if there's a claim here, keep looking
             if (claim != null) {
-                candidateLocation = new Location<World>(claim.lesserBoundaryCorner.getExtent(), claim.lesserBoundaryCorner.getBlockX() - 1,
-                        claim.lesserBoundaryCorner.getBlockY(), claim.lesserBoundaryCorner.getBlockZ() - 1);
+                candidateLocation = new Location<World>(claim.world, claim.minX - 1, claim.getMinY(), claim.minZ - 1);
                 continue;
             }
 
@@ -839,17 +920,31 @@ public static GriefPreventionConfig<?> getActiveConfig(WorldProperties worldProp
         }
     }
 
+    // resolved view of getActiveConfig, rebuilt after any config change
+    public static EffectiveWorldConfig getEffectiveConfig(WorldProperties worldProperties) {
+        EffectiveWorldConfig effectiveConfig = DataStore.effectiveConfigMap.get(worldProperties.getUniqueId());
+        if (effectiveConfig == null) {
+            effectiveConfig = new EffectiveWorldConfig(getActiveConfig(worldProperties));
+            DataStore.effectiveConfigMap.put(worldProperties.getUniqueId(), effectiveConfig);
+        }
+        return effectiveConfig;
+    }
+
+    public static void invalidateEffectiveConfigs() {
+        DataStore.effectiveConfigMap.clear();
+    }
+
     public static GriefPreventionConfig<GlobalConfig> getGlobalConfig() {
         return DataStore.globalConfig;
     }
 
     // checks whether players can create claims in a world
     public boolean claimsEnabledForWorld(WorldProperties worldProperties) {
-        return GriefPrevention.getActiveConfig(worldProperties).getConfig().claim.claimMode != 0;
+        return GriefPrevention.getEffectiveConfig(worldProperties).claimsEnabled();
     }
 
     public boolean claimModeIsActive(WorldProperties worldProperties, ClaimsMode mode) {
-        return GriefPrevention.getActiveConfig(worldProperties).getConfig().claim.claimMode == mode.ordinal();
+        return GriefPrevention.getEffectiveConfig(worldProperties).getClaimMode() == mode;
     }
 
     public String allowBuild(User user, BlockSnapshot blockSnapshot) {
@@ -859,24 +954,33 @@ public String allowBuild(User user, BlockSnapshot blockSnapshot) {
 
         Location<World> location = blockSnapshot.getLocation().get();
         PlayerData playerData = this.dataStore.getPlayerData(location.getExtent(), user.getUniqueId());
-        Claim claim = this.dataStore.getClaimAt(location, false, playerData.lastClaim);
+        return this.allowBuild(user, blockSnapshot, playerData, this.dataStore.getClaimAt(location, false, playerData.lastClaim));
+    }
+
+    // same as allowBuild(User, BlockSnapshot) for callers that already resolved the claim at the block
+    public String allowBuild(User user, BlockSnapshot blockSnapshot, PlayerData playerData, @Nullable Claim claim) {
+        if (!blockSnapshot.getLocation().isPresent()) {
+            return null;
+        }
+
+        Location<World> location = blockSnapshot.getLocation().get();
 
         // exception: administrators in ignore claims mode and special player accounts created by server mods
-        if (playerData.ignoreClaims || GriefPrevention.getActiveConfig(location.getExtent().getProperties()).getConfig().claim
-                .alwaysIgnoreClaimsList.contains(user.getUniqueId().toString())) {
+        EffectiveWorldConfig effectiveConfig = GriefPrevention.getEffectiveConfig(location.getExtent().getProperties());
+        if (playerData.ignoreClaims || effectiveConfig.alwaysIgnoresClaims(user.getUniqueId())) {
             return null;
         }
 
         // wilderness rules
         if (claim == null) {
             // no building in the wilderness in creative mode
-            if (user instanceof Player && claimModeIsActive(location.getExtent().getProperties(), ClaimsMode.Creative) || claimModeIsActive(location
-                    .getExtent().getProperties(), ClaimsMode.SurvivalRequiringClaims)) {
+            ClaimsMode claimMode = effectiveConfig.getClaimMode();
+            if (user instanceof Player && claimMode == ClaimsMode.Creative || claimMode == ClaimsMode.SurvivalRequiringClaims) {
                 // exception: when chest claims are enabled, players who have zero land claims and are placing a chest
                 Player player = (Player) user;
                 if (!player.getItemInHand().isPresent() || player.getItemInHand().get().getItem() != ItemTypes.CHEST
                         || playerData.getClaims().size() > 0
-                        || GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().claim.claimRadius == -1) {
+                        || GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().claim.claimRadius == -1) {
                     String reason = this.dataStore.getMessage(Messages.NoBuildOutsideClaims);
                     if (player.hasPermission(GPPermissions.IGNORE_CLAIMS)) {
                         reason += "  " + this.dataStore.getMessage(Messages.IgnoreClaimsAdvertisement);
@@ -909,23 +1013,32 @@ public String allowBreak(User user, BlockSnapshot blockSnapshot) {
 
         Location<World> location = blockSnapshot.getLocation().get();
         PlayerData playerData = this.dataStore.getPlayerData(location.getExtent(), user.getUniqueId());
-        Claim claim = this.dataStore.getClaimAt(location, false, playerData.lastClaim);
+        return this.allowBreak(user, blockSnapshot, playerData, this.dataStore.getClaimAt(location, false, playerData.lastClaim));
+    }
+
+    // same as allowBreak(User, BlockSnapshot) for callers that already resolved the claim at the block
+    public String allowBreak(User user, BlockSnapshot blockSnapshot, PlayerData playerData, @Nullable Claim claim) {
+        if (!blockSnapshot.getLocation().isPresent()) {
+            return null;
+        }
+
+        Location<World> location = blockSnapshot.getLocation().get();
 
         if (claim != null && claim.ownerID == user.getUniqueId()) {
             return null;
         }
 
         // exception: administrators in ignore claims mode, and special player accounts created by server mods
-        if (playerData.ignoreClaims || GriefPrevention.getActiveConfig(location.getExtent().getProperties()).getConfig().claim.alwaysIgnoreClaimsList
-                .contains(user.getUniqueId().toString())) {
+        EffectiveWorldConfig effectiveConfig = GriefPrevention.getEffectiveConfig(location.getExtent().getProperties());
+        if (playerData.ignoreClaims || effectiveConfig.alwaysIgnoresClaims(user.getUniqueId())) {
             return null;
         }
 
         // wilderness rules
         if (claim == null) {
             // no building in the wilderness in creative mode
-            if (claimModeIsActive(location.getExtent().getProperties(), ClaimsMode.Creative) || claimModeIsActive(
-                    location.getExtent().getProperties(), ClaimsMode.SurvivalRequiringClaims)) {
+            ClaimsMode claimMode = effectiveConfig.getClaimMode();
+            if (claimMode == ClaimsMode.Creative || claimMode == ClaimsMode.SurvivalRequiringClaims) {
                 String reason = this.dataStore.getMessage(Messages.NoBuildOutsideClaims);
                 if (user.hasPermission(GPPermissions.IGNORE_CLAIMS)) {
                     reason += "  " + this.dataStore.getMessage(Messages.IgnoreClaimsAdvertisement);
@@ -1062,12 +1175,7 @@ public boolean containsBlockedIP(String message) {
     }
 
     public boolean pvpRulesApply(World world) {
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(world.getProperties());
-        if (activeConfig != null) {
-            return activeConfig.getConfig().pvp.rulesEnabled;
-        }
-
-        return world.getProperties().isPVPEnabled();
+        return GriefPrevention.getEffectiveConfig(world.getProperties()).getConfig().pvp.rulesEnabled;
     }
 
     public static boolean isItemBanned(Player player, ItemType type, int meta) {
@@ -1075,19 +1183,11 @@ public static boolean isItemBanned(Player player, ItemType type, int meta) {
             return false;
         }
 
-        String nonMetaItemString = type.getId();
-        String metaItemString = type.getId() + ":" + meta;
-        if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().general.bannedItemList.contains(nonMetaItemString)) {
-            return true;
-        } else if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().general.bannedItemList.contains(metaItemString)) {
-            return true;
-        }
-
-        return false;
+        return GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).isItemBanned(type, meta);
     }
 
     public static boolean isEntityProtected(Entity entity) {
-        if (GriefPrevention.getActiveConfig(entity.getWorld().getProperties()).getConfig().claim.ignoredEntityIds.contains(entity.getType().getId())) {
+        if (GriefPrevention.getEffectiveConfig(entity.getWorld().getProperties()).isEntityIgnored(entity.getType().getId())) {
             return false;
         }
 
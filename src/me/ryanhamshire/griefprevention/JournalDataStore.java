@@ -0,0 +1,112 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimJournal;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageWriter;
+import me.ryanhamshire.griefprevention.configuration.JournalClaimStorageData;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// claim files as in file mode, but each change is appended to a per world journal that is folded into the files in the background
+public class JournalDataStore extends FlatFileDataStore {
+
+    public final static String STORAGE_FORMAT = "journal";
+    public final static Path claimJournalPath = Paths.get("GriefPreventionData", "ClaimJournal.log");
+
+    private final Map<UUID, ClaimJournal> journals = new ConcurrentHashMap<>();
+
+    public JournalDataStore() {
+    }
+
+    @Override
+    public String getStorageFormat() {
+        return STORAGE_FORMAT;
+    }
+
+    @Override
+    void loadWorldClaims(WorldProperties worldProperties) throws Exception {
+        // opening the journal folds whatever a crash left in it into the claim files before they are read
+        try {
+            this.journals.put(worldProperties.getUniqueId(), new ClaimJournal(this.getWorldDataPath(worldProperties, claimJournalPath),
+                    this.getWorldDataPath(worldProperties, claimDataPath)));
+        } catch (IOException e) {
+            GriefPrevention.addLogEntry("Unable to open the claim journal of " + worldProperties.getWorldName()
+                    + ", its claims are saved directly to their files.  Details: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        super.loadWorldClaims(worldProperties);
+    }
+
+    @Override
+    ClaimStorageData readClaimStorage(WorldProperties worldProperties, Path claimFile) {
+        ClaimJournal journal = this.journals.get(worldProperties.getUniqueId());
+        if (journal == null) {
+            return super.readClaimStorage(worldProperties, claimFile);
+        }
+        return new JournalClaimStorageData(journal, claimFile, false);
+    }
+
+    @Override
+    ClaimStorageData createClaimStorage(WorldProperties worldProperties, UUID claimId) throws Exception {
+        ClaimJournal journal = this.journals.get(worldProperties.getUniqueId());
+        if (journal == null) {
+            return super.createClaimStorage(worldProperties, claimId);
+        }
+        // the claim file lags the journal until it is compacted, start from the journal when it is ahead
+        Path claimFile = this.getWorldDataPath(worldProperties, claimDataPath).resolve(claimId.toString());
+        String content = journal.readUnfolded(claimId);
+        if (content != null) {
+            return new JournalClaimStorageData(journal, claimFile, content);
+        }
+        return new JournalClaimStorageData(journal, claimFile, true);
+    }
+
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        ClaimJournal journal = this.journals.remove(worldProperties.getUniqueId());
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    // commits and folds every journal, called once pending claim saves have been handed over on shutdown
+    public void closeJournals() {
+        ClaimStorageWriter.flush();
+        for (ClaimJournal journal : this.journals.values()) {
+            journal.close();
+        }
+        this.journals.clear();
+    }
+}
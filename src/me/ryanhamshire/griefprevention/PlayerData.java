@@ -48,9 +48,12 @@ public class PlayerData {
     public WorldProperties worldProperties;
     private GriefPreventionConfig<?> activeConfig;
 
-    // the player's claims
+    // the player's claims, only changed through addClaim and removeClaim
     private List<Claim> claimList;
 
+    // total area of the claims in claimList, kept up to date by addClaim and removeClaim
+    private int usedClaimBlocks = 0;
+
     private PlayerStorageData playerStorage;
 
     // where this player was the last time we checked on him for earning claim blocks
@@ -161,6 +164,9 @@ public PlayerData(WorldProperties worldProperties, UUID playerUniqueId, PlayerSt
         this.playerStorage = playerStorage;
         this.claimList = claims;
         this.activeConfig = activeConfig;
+        for (Claim claim : claims) {
+            this.usedClaimBlocks += claim.getArea();
+        }
     }
 
     // whether or not this player is "in" pvp combat
@@ -184,10 +190,7 @@ public boolean inPvpCombat(World world) {
 
     // the number of claim blocks a player has available for claiming land
     public int getRemainingClaimBlocks() {
-        int remainingBlocks = this.getAccruedClaimBlocks() + this.getBonusClaimBlocks();
-        for (Claim claim : this.claimList) {
-            remainingBlocks -= claim.getArea();
-        }
+        int remainingBlocks = this.getAccruedClaimBlocks() + this.getBonusClaimBlocks() - this.usedClaimBlocks;
 
         // add any blocks this player might have based on group membership (permissions)
         remainingBlocks += GriefPrevention.instance.dataStore.getGroupBonusBlocks(this.playerID);
@@ -231,4 +234,22 @@ public PlayerStorageData getStorageData() {
     public List<Claim> getClaims() {
         return this.claimList;
     }
+
+    // the number of claim blocks used by this player's claims
+    public int getUsedClaimBlocks() {
+        return this.usedClaimBlocks;
+    }
+
+    // a claim's area never changes, resizing replaces the claim, so the total
+    // only has to follow additions and removals
+    public void addClaim(Claim claim) {
+        this.claimList.add(claim);
+        this.usedClaimBlocks += claim.getArea();
+    }
+
+    public void removeClaim(Claim claim) {
+        if (this.claimList.remove(claim)) {
+            this.usedClaimBlocks -= claim.getArea();
+        }
+    }
 }
@@ -115,8 +115,7 @@ public void addPlayerClaim(Claim claim) {
         }
 
         if (claim.parent == null) {
-            List<Claim> claims = this.playerClaimList.get(claim.ownerID);
-            claims.add(claim);
+            this.playerDataList.get(claim.ownerID).addClaim(claim);
             this.worldClaims.add(claim);
             this.claimUniqueIdMap.put(claim.id, claim);
             return;
@@ -124,14 +123,15 @@ public void addPlayerClaim(Claim claim) {
 
         // subdivisions are added under their parent, not directly to the hash map for direct search
         if (!claim.parent.children.contains(claim)) {
-            claim.parent.children.add(claim);
+            claim.parent.addChild(claim);
         }
     }
 
     public void removePlayerClaim(Claim claim) {
-        this.playerClaimList.get(claim.ownerID).remove(claim);
+        this.playerDataList.get(claim.ownerID).removeClaim(claim);
         this.worldClaims.remove(claim);
-        this.claimUniqueIdMap.remove(claim.id);
+        // a resized claim is added under the same id before the claim it replaces is removed
+        this.claimUniqueIdMap.remove(claim.id, claim);
     }
 
     @Nullable
@@ -169,12 +169,13 @@ public void changeClaimOwner(Claim claim, UUID newOwnerID) throws NoTransferExce
         // transfer
         claim.ownerID = newOwnerID;
         claim.getClaimData().setClaimOwnerUniqueId(newOwnerID);
+        claim.getPermissionCache().invalidate();
 
         // adjust blocks and other records
         if (ownerData != null) {
-              ownerData.getClaims().remove(claim);
+            ownerData.removeClaim(claim);
         }
-        newOwnerData.getClaims().add(claim);
+        newOwnerData.addClaim(claim);
         claim.getClaimStorage().save();
     }
 
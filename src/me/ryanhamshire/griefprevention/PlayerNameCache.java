@@ -0,0 +1,112 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.user.UserStorageService;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+// remembers the names of recently seen players so claim messages and listings
+// don't go to the user storage service every time they mention an owner
+// names are learned when players join, on lookup misses and through prefetch()
+public class PlayerNameCache {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    // least recently used names are dropped first, guarded by itself
+    private final Map<UUID, String> names = new LinkedHashMap<UUID, String>(256, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest) {
+            return this.size() > MAX_ENTRIES;
+        }
+    };
+
+    public void put(UUID uniqueId, String name) {
+        synchronized (this.names) {
+            this.names.put(uniqueId, name);
+        }
+    }
+
+    @Nullable
+    public String getIfPresent(UUID uniqueId) {
+        synchronized (this.names) {
+            return this.names.get(uniqueId);
+        }
+    }
+
+    // returns the player's name, going to user storage on a cache miss
+    // null if the storage doesn't know the player
+    @Nullable
+    public String lookup(UUID uniqueId) {
+        String name = this.getIfPresent(uniqueId);
+        if (name != null) {
+            return name;
+        }
+
+        Optional<User> user = Sponge.getServiceManager().provide(UserStorageService.class).get().get(uniqueId);
+        if (!user.isPresent() || user.get().getName() == null) {
+            return null;
+        }
+
+        this.put(uniqueId, user.get().getName());
+        return user.get().getName();
+    }
+
+    // resolves the names of players that aren't cached yet off the main thread
+    public void prefetch(Collection<UUID> uniqueIds) {
+        Set<UUID> missing = new LinkedHashSet<>();
+        for (UUID uniqueId : uniqueIds) {
+            if (uniqueId != null && this.getIfPresent(uniqueId) == null) {
+                missing.add(uniqueId);
+                if (missing.size() >= MAX_ENTRIES) {
+                    break;
+                }
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Sponge.getScheduler().createTaskBuilder().async().execute(() -> {
+            for (UUID uniqueId : missing) {
+                this.lookup(uniqueId);
+            }
+        }).submit(GriefPrevention.instance);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimRegionStorage;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.RegionClaimStorageData;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// keeps claims packed in region files instead of one file per claim, player data and configs stay as in file mode
+public class RegionFileDataStore extends FlatFileDataStore {
+
+    public final static String STORAGE_FORMAT = "region";
+
+    private final Map<UUID, ClaimRegionStorage> regionStorage = new ConcurrentHashMap<>();
+
+    public RegionFileDataStore() {
+    }
+
+    @Override
+    public String getStorageFormat() {
+        return STORAGE_FORMAT;
+    }
+
+    ClaimRegionStorage getRegionStorage(WorldProperties worldProperties) {
+        return this.regionStorage.computeIfAbsent(worldProperties.getUniqueId(),
+                worldUniqueId -> new ClaimRegionStorage(this.getWorldDataPath(worldProperties, claimRegionPath)));
+    }
+
+    @Override
+    void loadWorldClaims(WorldProperties worldProperties) throws Exception {
+        long loadStart = System.nanoTime();
+        ClaimRegionStorage worldRegionStorage = this.getRegionStorage(worldProperties);
+        Map<UUID, byte[]> records = worldRegionStorage.readAll();
+        List<UUID> claimIds = new ArrayList<>(records.keySet());
+
+        // inflating and mapping the records runs on the fork join pool, the same as claim files
+        ClaimStorageData[] claimStorage = new ClaimStorageData[claimIds.size()];
+        IntStream.range(0, claimStorage.length).parallel()
+                .forEach(i -> claimStorage[i] = RegionClaimStorageData.fromRecord(worldRegionStorage, claimIds.get(i), records.get(claimIds.get(i))));
+
+        this.loadClaims(worldProperties, claimIds, claimStorage, loadStart);
+    }
+
+    @Override
+    boolean hasStoredClaims(WorldProperties worldProperties) throws IOException {
+        return hasClaimFiles(this.getWorldDataPath(worldProperties, claimRegionPath), "*" + ClaimRegionStorage.REGION_FILE_SUFFIX);
+    }
+
+    // starts from the claim's stored record if it has one, the same as a claim file
+    @Override
+    ClaimStorageData createClaimStorage(WorldProperties worldProperties, UUID claimId) throws Exception {
+        ClaimRegionStorage worldRegionStorage = this.getRegionStorage(worldProperties);
+        byte[] record = worldRegionStorage.read(claimId);
+        ClaimStorageData claimStorage = record == null ? null : RegionClaimStorageData.fromRecord(worldRegionStorage, claimId, record);
+        return claimStorage != null ? claimStorage : new RegionClaimStorageData(worldRegionStorage, claimId);
+    }
+
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        ClaimRegionStorage worldRegionStorage = this.regionStorage.get(worldProperties.getUniqueId());
+        if (worldRegionStorage != null) {
+            worldRegionStorage.close();
+        }
+    }
+}
@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention;
 
+import com.flowpowered.math.vector.Vector3i;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.task.VisualizationApplicationTask;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
@@ -39,6 +40,7 @@
 import org.spongepowered.api.world.World;
 
 import java.util.ArrayList;
+import java.util.List;
 
 //represents a visualization sent to a player
 //FEATURE: to show players visually where claim boundaries are, we send them fake block change packets
@@ -116,8 +118,11 @@ public static Visualization FromClaim(Claim claim, int height, VisualizationType
         Visualization visualization = new Visualization();
 
         // add subdivisions first
-        for (int i = 0; i < claim.children.size(); i++) {
-            Claim child = claim.children.get(i);
+        // only those near the locality can have elements within visualization range
+        List<Claim> children = claim.getSubdivisions(locality.getBlockX() - 75, locality.getBlockZ() - 75,
+                locality.getBlockX() + 75, locality.getBlockZ() + 75);
+        for (int i = 0; i < children.size(); i++) {
+            Claim child = children.get(i);
             if (!child.inDataStore) {
                 continue;
             }
@@ -270,8 +275,8 @@ private void addClaimElements(Claim claim, int height, VisualizationType visuali
 
         // remove any elements outside the claim
         for (int i = 0; i < newElements.size(); i++) {
-            BlockSnapshot element = newElements.get(i).getFinal();
-            if (!claim.contains(element.getLocation().get(), true, false)) {
+            Vector3i position = newElements.get(i).getFinal().getPosition();
+            if (!claim.contains(position.getX(), position.getY(), position.getZ(), true, false)) {
                 newElements.remove(i--);
             }
         }
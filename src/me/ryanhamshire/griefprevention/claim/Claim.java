@@ -25,6 +25,8 @@
 package me.ryanhamshire.griefprevention.claim;
 
 import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.ClaimFlag;
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPFlags;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
@@ -36,6 +38,8 @@
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.ClaimData;
 import me.ryanhamshire.griefprevention.task.RestoreNatureProcessingTask;
+import me.ryanhamshire.griefprevention.util.CatalogTypeMatcher;
+import me.ryanhamshire.griefprevention.util.RTree;
 import net.minecraft.inventory.IInventory;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
@@ -63,6 +67,8 @@
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 //represents a player claim
 //creating an instance doesn't make an effective claim
 //only claims which have been added to the datastore have any effect
@@ -74,12 +80,22 @@ public enum Type {
         ADMIN
     }
 
-    // two locations, which together define the boundaries of the claim
+    // block boundaries of the claim, all inclusive
     // note that the upper Y value is always ignored, because claims ALWAYS
     // extend up to the sky
-    public Location<World> lesserBoundaryCorner;
-    public Location<World> greaterBoundaryCorner;
-    public World world;
+    public final UUID worldUniqueId;
+    public final int minX;
+    public final int minZ;
+    public final int maxX;
+    public final int maxZ;
+    // the depth changes when a claim is extended downward
+    private int minY;
+    private int maxY;
+    public final World world;
+
+    // location views of the boundaries, only created when requested
+    private Location<World> lesserBoundaryCorner;
+    private Location<World> greaterBoundaryCorner;
     public Type type = Type.BASIC;
 
     // Permission Context
@@ -107,8 +123,25 @@ public enum Type {
 
     // children (subdivisions)
     // note subdivisions themselves never have children
+    // add and remove them with addChild/removeChild so the subdivision lookups stay in sync
     public ArrayList<Claim> children = new ArrayList<Claim>();
 
+    // immutable copy of the children used by subdivision lookups, replaced on every change
+    // so lookups from other threads never see a partially updated list
+    private volatile SubdivisionSnapshot subdivisions = SubdivisionSnapshot.EMPTY;
+
+    // effective value of every flag, claim values merged with the config defaults
+    // rebuilt on first use after the claim flags or the flag defaults change
+    private volatile FlagTable flagTable = null;
+
+    private final ClaimPermissionCache permissionCache = new ClaimPermissionCache();
+
+    // trust lists of the claim data indexed by uuid, rebuilt on first use after they change
+    private volatile TrustIndex trustIndex = null;
+
+    // protection blacklist of the claim storage resolved to item types, rebuilt when the list changes
+    private volatile ProtectionBlacklist protectionBlacklist = null;
+
     // information about a siege involving this claim. null means no siege is impacting this claim
     public SiegeData siegeData = null;
 
@@ -135,12 +168,17 @@ public Claim(Location<World> lesserBoundaryCorner, Location<World> greaterBounda
         this.id = claimId;
 
         // store corners
-        this.lesserBoundaryCorner = lesserBoundaryCorner;
-        this.greaterBoundaryCorner = greaterBoundaryCorner;
         this.world = lesserBoundaryCorner.getExtent();
+        this.worldUniqueId = this.world.getUniqueId();
+        this.minX = Math.min(lesserBoundaryCorner.getBlockX(), greaterBoundaryCorner.getBlockX());
+        this.minZ = Math.min(lesserBoundaryCorner.getBlockZ(), greaterBoundaryCorner.getBlockZ());
+        this.maxX = Math.max(lesserBoundaryCorner.getBlockX(), greaterBoundaryCorner.getBlockX());
+        this.maxZ = Math.max(lesserBoundaryCorner.getBlockZ(), greaterBoundaryCorner.getBlockZ());
+        this.minY = lesserBoundaryCorner.getBlockY();
+        this.maxY = greaterBoundaryCorner.getBlockY();
 
         // owner
-        if (player != null && player.getItemInHand().isPresent() && player.getItemInHand().get().getItem().getId().equalsIgnoreCase(GriefPrevention.getActiveConfig(this.world.getProperties()).getConfig().claim.modificationTool)) {
+        if (player != null && player.getItemInHand().isPresent() && GriefPrevention.getEffectiveConfig(this.world.getProperties()).isModificationTool(player.getItemInHand().get().getItem())) {
             this.ownerID = player.getUniqueId();
             PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(this.world, player.getUniqueId());
             if (playerData != null) {
@@ -205,33 +243,31 @@ public void removeSurfaceFluids(Claim exclusionClaim) {
         }
 
         // only in creative mode worlds
-        if (!GriefPrevention.instance.claimModeIsActive(this.lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative)) {
+        if (!GriefPrevention.instance.claimModeIsActive(this.world.getProperties(), ClaimsMode.Creative)) {
             return;
         }
 
-        Location<World> lesser = this.getLesserBoundaryCorner();
-        Location<World> greater = this.getGreaterBoundaryCorner();
-
-        if (lesser.getExtent().getDimension().getType().equals(DimensionTypes.NETHER)) {
+        if (this.world.getDimension().getType().equals(DimensionTypes.NETHER)) {
             return; // don't clean up lava in the nether
         }
 
         int seaLevel = 0; // clean up all fluids in the end
 
         // respect sea level in normal worlds
-        if (lesser.getExtent().getDimension().getType().equals(DimensionTypes.OVERWORLD)) {
-            seaLevel = GriefPrevention.instance.getSeaLevel(lesser.getExtent());
+        if (this.world.getDimension().getType().equals(DimensionTypes.OVERWORLD)) {
+            seaLevel = GriefPrevention.instance.getSeaLevel(this.world);
         }
 
-        for (int x = lesser.getBlockX(); x <= greater.getBlockX(); x++) {
-            for (int z = lesser.getBlockZ(); z <= greater.getBlockZ(); z++) {
-                for (int y = seaLevel - 1; y <= lesser.getExtent().getDimension().getBuildHeight(); y++) {
+        for (int x = this.minX; x <= this.maxX; x++) {
+            for (int z = this.minZ; z <= this.maxZ; z++) {
+                for (int y = seaLevel - 1; y <= this.world.getDimension().getBuildHeight(); y++) {
                     // dodge the exclusion claim
-                    BlockSnapshot block = lesser.getExtent().createSnapshot(x, y, z);
-                    if (exclusionClaim != null && exclusionClaim.contains(block.getLocation().get(), true, false)) {
+                    if (exclusionClaim != null && exclusionClaim.contains(x, y, z, true, false)) {
                         continue;
                     }
 
+                    BlockSnapshot block = this.world.createSnapshot(x, y, z);
+
                     if (block.getState().getType() == BlockTypes.LAVA || block.getState().getType() == BlockTypes.FLOWING_WATER
                             || block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.FLOWING_LAVA) {
                         block.withState(BlockTypes.AIR.getDefaultState()).restore(true, false);
@@ -245,9 +281,6 @@ public void removeSurfaceFluids(Claim exclusionClaim) {
     // used to warn players when they abandon their claims about automatic fluid
     // cleanup
     boolean hasSurfaceFluids() {
-        Location<World> lesser = this.getLesserBoundaryCorner();
-        Location<World> greater = this.getGreaterBoundaryCorner();
-
         // don't bother for very large claims, too expensive
         if (this.getArea() > 10000) {
             return false;
@@ -256,15 +289,15 @@ boolean hasSurfaceFluids() {
         int seaLevel = 0; // clean up all fluids in the end
 
         // respect sea level in normal worlds
-        if (lesser.getExtent().getDimension().getType().equals(DimensionTypes.OVERWORLD)) {
-            seaLevel = GriefPrevention.instance.getSeaLevel(lesser.getExtent());
+        if (this.world.getDimension().getType().equals(DimensionTypes.OVERWORLD)) {
+            seaLevel = GriefPrevention.instance.getSeaLevel(this.world);
         }
 
-        for (int x = lesser.getBlockX(); x <= greater.getBlockX(); x++) {
-            for (int z = lesser.getBlockZ(); z <= greater.getBlockZ(); z++) {
-                for (int y = seaLevel - 1; y <= lesser.getExtent().getDimension().getBuildHeight(); y++) {
+        for (int x = this.minX; x <= this.maxX; x++) {
+            for (int z = this.minZ; z <= this.maxZ; z++) {
+                for (int y = seaLevel - 1; y <= this.world.getDimension().getBuildHeight(); y++) {
                     // dodge the exclusion claim
-                    BlockState block = lesser.getExtent().getBlock(x, y, z);
+                    BlockState block = this.world.getBlock(x, y, z);
 
                     if (block.getType() == BlockTypes.WATER || block.getType() == BlockTypes.FLOWING_WATER
                             || block.getType() == BlockTypes.LAVA || block.getType() == BlockTypes.FLOWING_LAVA) {
@@ -279,32 +312,83 @@ boolean hasSurfaceFluids() {
 
     // measurements. all measurements are in blocks
     public int getArea() {
-        int claimWidth = this.greaterBoundaryCorner.getBlockX() - this.lesserBoundaryCorner.getBlockX() + 1;
-        int claimHeight = this.greaterBoundaryCorner.getBlockZ() - this.lesserBoundaryCorner.getBlockZ() + 1;
-
-        return claimWidth * claimHeight;
+        return (this.maxX - this.minX + 1) * (this.maxZ - this.minZ + 1);
     }
 
     public int getWidth() {
-        return this.greaterBoundaryCorner.getBlockX() - this.lesserBoundaryCorner.getBlockX() + 1;
+        return this.maxX - this.minX + 1;
     }
 
     public int getHeight() {
-        return this.greaterBoundaryCorner.getBlockZ() - this.lesserBoundaryCorner.getBlockZ() + 1;
+        return this.maxZ - this.minZ + 1;
+    }
+
+    public int getMinY() {
+        return this.minY;
+    }
+
+    // moves the bottom of the claim, see DataStore#extendClaim
+    public void setDepth(int newDepth) {
+        this.minY = newDepth;
+        this.maxY = newDepth;
+        this.lesserBoundaryCorner = null;
+        this.greaterBoundaryCorner = null;
     }
 
     // distance check for claims, distance in this case is a band around the
     // outside of the claim rather then euclidean distance
     public boolean isNear(Location<World> location, int howNear) {
-        Claim claim = new Claim(new Location<World>(this.lesserBoundaryCorner.getExtent(), this.lesserBoundaryCorner.getBlockX() - howNear,
-                this.lesserBoundaryCorner.getBlockY(), this.lesserBoundaryCorner.getBlockZ() - howNear),
-                new Location<World>(this.greaterBoundaryCorner.getExtent(), this.greaterBoundaryCorner.getBlockX() + howNear,
-                        this.greaterBoundaryCorner.getBlockY(), this.greaterBoundaryCorner.getBlockZ() + howNear));
+        if (!location.getExtent().getUniqueId().equals(this.worldUniqueId)) {
+            return false;
+        }
 
-        return claim.contains(location, false, true);
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        return location.getBlockY() >= this.minY && x >= this.minX - howNear && x <= this.maxX + howNear
+                && z >= this.minZ - howNear && z <= this.maxZ + howNear;
     }
 
     public boolean hasFullAccess(User user) {
+        return this.hasPermission(user, ClaimPermissionCache.Action.FULL_ACCESS);
+    }
+
+    // checks the location independent part of a permission decision, cached per user
+    private boolean hasPermission(User user, ClaimPermissionCache.Action action) {
+        Boolean cached = this.permissionCache.get(user.getUniqueId(), action);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = this.permissionCache.getStamp();
+        boolean allowed;
+        switch (action) {
+            case FULL_ACCESS:
+                allowed = this.checkFullAccess(user);
+                break;
+            case ADMIN:
+                allowed = user.hasPermission(GPPermissions.CLAIMS_ADMIN);
+                break;
+            case BUILD:
+                // anyone with explicit build permission or builder trust can make changes
+                allowed = GPFlags.getClaimFlagPermission(user, this, ClaimFlag.BLOCK_PLACE) == Tristate.TRUE
+                        || this.getTrustLevel(user.getUniqueId()) >= TrustIndex.BUILDER
+                        || (GriefPrevention.instance.permPluginInstalled && user.hasPermission(ImmutableSet.of(getContext()), GPPermissions.BLOCK_PLACE));
+                break;
+            case BREAK:
+                allowed = GPFlags.getClaimFlagPermission(user, this, ClaimFlag.BLOCK_BREAK) == Tristate.TRUE
+                        || this.getTrustLevel(user.getUniqueId()) >= TrustIndex.BUILDER;
+                break;
+            case INVENTORY:
+                allowed = GPFlags.getClaimFlagPermission(user, this, ClaimFlag.INTERACT_INVENTORY) == Tristate.TRUE;
+                break;
+            default:
+                allowed = false;
+        }
+
+        return this.permissionCache.put(user.getUniqueId(), action, allowed, stamp);
+    }
+
+    private boolean checkFullAccess(User user) {
         PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(this.world, user.getUniqueId());
         if (playerData != null && playerData.ignoreClaims) {
             return true;
@@ -315,7 +399,7 @@ public boolean hasFullAccess(User user) {
             return true;
         }
         // coowner
-        if (this.claimData.getCoowners().contains(user.getUniqueId())) {
+        if (this.getTrustLevel(user.getUniqueId()) >= TrustIndex.COOWNER) {
             return true;
         }
 
@@ -333,7 +417,7 @@ public String allowEdit(Player player) {
         // special cases...
         // admin claims need adminclaims permission only.
         if (this.isAdminClaim()) {
-            if (player.hasPermission(GPPermissions.CLAIMS_ADMIN)) {
+            if (this.hasPermission(player, ClaimPermissionCache.Action.ADMIN)) {
                 return null;
             }
         }
@@ -362,7 +446,7 @@ public String allowEdit(Player player) {
         }
 
         // error message if all else fails
-        return GriefPrevention.instance.dataStore.getMessage(Messages.OnlyOwnersModifyClaims, this.getOwnerName());
+        return this.getDenyMessage(Messages.OnlyOwnersModifyClaims);
     }
 
     // TODO: move this to config so it can be customized
@@ -393,7 +477,7 @@ public String allowBuild(User user, BlockSnapshot blockSnapshot) {
 
         // admin claims can always be modified by admins, no exceptions
         if (this.isAdminClaim()) {
-            if (user.hasPermission(GPPermissions.CLAIMS_ADMIN)) {
+            if (this.hasPermission(user, ClaimPermissionCache.Action.ADMIN)) {
                 return null;
             }
         }
@@ -414,8 +498,8 @@ public String allowBuild(User user, BlockSnapshot blockSnapshot) {
             return null;
         }
 
-        // anyone with explicit build permission can make changes
-        if (GPFlags.getClaimFlagPermission(user, this, GPPermissions.BLOCK_PLACE) == Tristate.TRUE) {
+        // anyone with explicit build permission can make changes, and builders can place blocks in claims
+        if (this.hasPermission(user, ClaimPermissionCache.Action.BUILD)) {
             return null;
         }
 
@@ -427,15 +511,6 @@ public String allowBuild(User user, BlockSnapshot blockSnapshot) {
             }
         }
 
-        // Builders can place blocks in claims
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
-            return null;
-        }
-
-        if (GriefPrevention.instance.permPluginInstalled && user.hasPermission(ImmutableSet.of(getContext()), GPPermissions.BLOCK_PLACE)) {
-            return null;
-        }
-
         // subdivision permission inheritance
         if (this.parent != null) {
             return this.parent.allowBuild(user, blockSnapshot);
@@ -444,7 +519,7 @@ public String allowBuild(User user, BlockSnapshot blockSnapshot) {
         // failure message for all other cases
         String reason = "";
         if (location.getBlock().getType() != BlockTypes.FLOWING_WATER && location.getBlock().getType() != BlockTypes.FLOWING_LAVA) {
-            reason = GriefPrevention.instance.dataStore.getMessage(Messages.NoBuildPermission, this.getOwnerName());
+            reason = this.getDenyMessage(Messages.NoBuildPermission);
         }
         if (user.hasPermission(GPPermissions.IGNORE_CLAIMS)) {
             reason += "  " + GriefPrevention.instance.dataStore.getMessage(Messages.IgnoreClaimsAdvertisement);
@@ -462,19 +537,8 @@ public String allowBreak(User user, BlockSnapshot blockSnapshot) {
         Location<World> location = blockSnapshot.getLocation().get();
         // if under siege, some blocks will be breakable
         if (this.siegeData != null || this.doorsOpen) {
-            boolean breakable = false;
-
             // search for block type in list of breakable blocks
-            for (int i = 0; i < GriefPrevention.getActiveConfig(location.getExtent().getProperties()).getConfig().siege.breakableSiegeBlocks.size();
-                 i++) {
-                String blockTypeId =
-                        GriefPrevention.getActiveConfig(location.getExtent().getProperties()).getConfig().siege.breakableSiegeBlocks.get(i);
-                Optional<BlockType> breakableBlockType = Sponge.getGame().getRegistry().getType(BlockType.class, blockTypeId);
-                if (breakableBlockType.isPresent() && breakableBlockType.get() == location.getBlockType()) {
-                    breakable = true;
-                    break;
-                }
-            }
+            boolean breakable = GriefPrevention.getEffectiveConfig(location.getExtent().getProperties()).isSiegeBreakable(location.getBlockType());
 
             // custom error messages for siege mode
             if (!breakable) {
@@ -490,15 +554,11 @@ public String allowBreak(User user, BlockSnapshot blockSnapshot) {
             return null;
         }
 
-        if (GPFlags.getClaimFlagPermission(user, this, GPPermissions.BLOCK_BREAK) == Tristate.TRUE) {
-            return null;
-        }
-
-        // Builders can break blocks
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
+        // explicit break permission, and builders can break blocks
+        if (this.hasPermission(user, ClaimPermissionCache.Action.BREAK)) {
             return null;
         }
-        return GriefPrevention.instance.dataStore.getMessage(Messages.NoBuildPermission, this.getOwnerName());
+        return this.getDenyMessage(Messages.NoBuildPermission);
     }
 
     public String allowAccess(User user) {
@@ -514,7 +574,7 @@ public String allowAccess(User user, Optional<Location<World>> location) {
 
         // admin claims need adminclaims permission only.
         if (this.isAdminClaim()) {
-            if (user.hasPermission(GPPermissions.CLAIMS_ADMIN)) {
+            if (this.hasPermission(user, ClaimPermissionCache.Action.ADMIN)) {
                 return null;
             }
         }
@@ -547,23 +607,19 @@ public String allowAccess(User user, Optional<Location<World>> location) {
                 }
     
                 // check for explicit inventory allow
-                if (GPFlags.getClaimFlagPermission(user, this, GPPermissions.INTERACT_INVENTORY) == Tristate.TRUE) {
+                if (this.hasPermission(user, ClaimPermissionCache.Action.INVENTORY)) {
                     return null;
                 }
             }
         }
 
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) 
-                || this.getClaimData().getContainers().contains(GriefPrevention.PUBLIC_UUID) 
-                || this.getClaimData().getBuilders().contains(user.getUniqueId()) 
-                || this.getClaimData().getContainers().contains(user.getUniqueId())) {
+        // builders and containers have access to everything, accessors to everything but inventories
+        int trustLevel = this.getTrustLevel(user.getUniqueId());
+        if (trustLevel >= TrustIndex.CONTAINER) {
             return null;
         }
-        if (!tileEntity.isPresent()) {
-            if (this.getClaimData().getAccessors().contains(GriefPrevention.PUBLIC_UUID) 
-                    || this.getClaimData().getAccessors().contains(user.getUniqueId())) {
-                return null;
-            }
+        if (!tileEntity.isPresent() && trustLevel >= TrustIndex.ACCESSOR) {
+            return null;
         }
 
         if (!location.isPresent()) {
@@ -587,20 +643,38 @@ public String allowAccess(User user, Optional<Location<World>> location) {
             return this.parent.allowAccess(user, location);
         }
 
-        return GriefPrevention.instance.dataStore.getMessage(Messages.NoAccessPermission, this.getOwnerName());
+        return this.getDenyMessage(Messages.NoAccessPermission);
     }
 
-    // returns a copy of the location representing lower x, y, z limits
-    @SuppressWarnings("unchecked")
+    // denial message naming the owner, the name is only looked up when messages are generated
+    private String getDenyMessage(Messages messageID) {
+        if (!DataStore.generateMessages) {
+            return "";
+        }
+
+        return GriefPrevention.instance.dataStore.getMessage(messageID, this.getOwnerName());
+    }
+
+    // returns the location representing lower x, y, z limits
+    // locations are immutable, so the same view is handed out until the depth changes
     public Location<World> getLesserBoundaryCorner() {
-        return (Location<World>) this.lesserBoundaryCorner.copy();
+        Location<World> corner = this.lesserBoundaryCorner;
+        if (corner == null) {
+            corner = new Location<World>(this.world, this.minX, this.minY, this.minZ);
+            this.lesserBoundaryCorner = corner;
+        }
+        return corner;
     }
 
-    // returns a copy of the location representing upper x, y, z limits
+    // returns the location representing upper x, y, z limits
     // NOTE: remember upper Y will always be ignored, all claims always extend to the sky
-    @SuppressWarnings("unchecked")
     public Location<World> getGreaterBoundaryCorner() {
-        return (Location<World>) this.greaterBoundaryCorner.copy();
+        Location<World> corner = this.greaterBoundaryCorner;
+        if (corner == null) {
+            corner = new Location<World>(this.world, this.maxX, this.maxY, this.maxZ);
+            this.greaterBoundaryCorner = corner;
+        }
+        return corner;
     }
 
     // returns a friendly owner name (for admin claims, returns "an
@@ -622,20 +696,21 @@ public String getOwnerName() {
     // excludeSubdivisions = true means that locations inside subdivisions of the claim will return FALSE
     public boolean contains(Location<World> location, boolean ignoreHeight, boolean excludeSubdivisions) {
         // not in the same world implies false
-        if (!location.getExtent().equals(this.lesserBoundaryCorner.getExtent())) {
+        if (!location.getExtent().getUniqueId().equals(this.worldUniqueId)) {
             return false;
         }
 
-        double x = location.getX();
-        double y = location.getY();
-        double z = location.getZ();
+        return this.contains(location.getBlockX(), location.getBlockY(), location.getBlockZ(), ignoreHeight, excludeSubdivisions);
+    }
 
+    // same as contains(Location, ...) for a block position already known to be in this claim's world
+    public boolean contains(int x, int y, int z, boolean ignoreHeight, boolean excludeSubdivisions) {
         // main check
-        boolean inClaim = (ignoreHeight || y >= this.lesserBoundaryCorner.getY()) &&
-                x >= this.lesserBoundaryCorner.getX() &&
-                x < this.greaterBoundaryCorner.getX() + 1 &&
-                z >= this.lesserBoundaryCorner.getZ() &&
-                z < this.greaterBoundaryCorner.getZ() + 1;
+        boolean inClaim = (ignoreHeight || y >= this.minY) &&
+                x >= this.minX &&
+                x <= this.maxX &&
+                z >= this.minZ &&
+                z <= this.maxZ;
 
         if (!inClaim) {
             return false;
@@ -648,15 +723,14 @@ public boolean contains(Location<World> location, boolean ignoreHeight, boolean
         // a subdivision can reach outside of its parent's boundaries. so this
         // check is important!
         if (this.parent != null) {
-            return this.parent.contains(location, ignoreHeight, false);
+            return this.parent.contains(x, y, z, ignoreHeight, false);
         }
 
         // code to exclude subdivisions in this check
         else if (excludeSubdivisions) {
-            // search all subdivisions to see if the location is in any of them
-            for (int i = 0; i < this.children.size(); i++) {
-                // if we find such a subdivision, return false
-                if (this.children.get(i).contains(location, ignoreHeight, true)) {
+            // if the location is in any subdivision, return false
+            for (Claim child : this.getSubdivisions(x, z, x, z)) {
+                if (child.contains(x, y, z, ignoreHeight, true)) {
                     return false;
                 }
             }
@@ -666,76 +740,70 @@ else if (excludeSubdivisions) {
         return true;
     }
 
-    // whether or not two claims overlap
-    // used internally to prevent overlaps when creating claims
-    public boolean overlaps(Claim otherClaim) {
-        // NOTE: if trying to understand this makes your head hurt, don't feel
-        // bad - it hurts mine too.
-        // try drawing pictures to visualize test cases.
+    public void addChild(Claim child) {
+        this.children.add(child);
+        this.subdivisions = new SubdivisionSnapshot(this.children.toArray(new Claim[this.children.size()]));
+    }
 
-        if (!this.lesserBoundaryCorner.getExtent().equals(otherClaim.getLesserBoundaryCorner().getExtent())) {
+    public boolean removeChild(Claim child) {
+        if (!this.children.remove(child)) {
             return false;
         }
 
-        // first, check the corners of this claim aren't inside any existing
-        // claims
-        if (otherClaim.contains(this.lesserBoundaryCorner, true, false)) {
-            return true;
-        }
-        if (otherClaim.contains(this.greaterBoundaryCorner, true, false)) {
-            return true;
-        }
-        if (otherClaim.contains(
-                new Location<World>(this.lesserBoundaryCorner.getExtent(), this.lesserBoundaryCorner.getBlockX(), 0,
-                        this.greaterBoundaryCorner.getBlockZ()),
-                true, false)) {
-            return true;
-        }
-        if (otherClaim.contains(
-                new Location<World>(this.lesserBoundaryCorner.getExtent(), this.greaterBoundaryCorner.getBlockX(), 0,
-                        this.lesserBoundaryCorner.getBlockZ()),
-                true, false)) {
-            return true;
-        }
+        this.subdivisions = new SubdivisionSnapshot(this.children.toArray(new Claim[this.children.size()]));
+        return true;
+    }
 
-        // verify that no claim's lesser boundary point is inside this new
-        // claim, to cover the "existing claim is entirely inside new claim"
-        // case
-        if (this.contains(otherClaim.getLesserBoundaryCorner(), true, false)) {
-            return true;
-        }
+    public void clearChildren() {
+        this.children.clear();
+        this.subdivisions = SubdivisionSnapshot.EMPTY;
+    }
 
-        // verify this claim doesn't band across an existing claim, either
-        // horizontally or vertically
-        if (this.getLesserBoundaryCorner().getBlockZ() <= otherClaim.getGreaterBoundaryCorner().getBlockZ() &&
-                this.getLesserBoundaryCorner().getBlockZ() >= otherClaim.getLesserBoundaryCorner().getBlockZ() &&
-                this.getLesserBoundaryCorner().getBlockX() < otherClaim.getLesserBoundaryCorner().getBlockX() &&
-                this.getGreaterBoundaryCorner().getBlockX() > otherClaim.getGreaterBoundaryCorner().getBlockX()) {
-            return true;
+    // gets the subdivision at a position, or null when the position isn't in any of them
+    // the caller is expected to have checked that the position is inside this claim
+    @Nullable
+    public Claim getSubdivisionAt(int x, int y, int z, boolean ignoreHeight) {
+        SubdivisionSnapshot snapshot = this.subdivisions;
+        RTree<Claim> index = snapshot.getIndex();
+        if (index == null) {
+            for (Claim subdivision : snapshot.claims) {
+                if (subdivision.inDataStore && subdivision.contains(x, y, z, ignoreHeight, false)) {
+                    return subdivision;
+                }
+            }
+            return null;
         }
 
-        if (this.getGreaterBoundaryCorner().getBlockZ() <= otherClaim.getGreaterBoundaryCorner().getBlockZ() &&
-                this.getGreaterBoundaryCorner().getBlockZ() >= otherClaim.getLesserBoundaryCorner().getBlockZ() &&
-                this.getLesserBoundaryCorner().getBlockX() < otherClaim.getLesserBoundaryCorner().getBlockX() &&
-                this.getGreaterBoundaryCorner().getBlockX() > otherClaim.getGreaterBoundaryCorner().getBlockX()) {
-            return true;
+        for (Claim subdivision : index.search(x, z, x, z, new ArrayList<Claim>(1))) {
+            if (subdivision.inDataStore && subdivision.contains(x, y, z, ignoreHeight, false)) {
+                return subdivision;
+            }
         }
+        return null;
+    }
 
-        if (this.getLesserBoundaryCorner().getBlockX() <= otherClaim.getGreaterBoundaryCorner().getBlockX() &&
-                this.getLesserBoundaryCorner().getBlockX() >= otherClaim.getLesserBoundaryCorner().getBlockX() &&
-                this.getLesserBoundaryCorner().getBlockZ() < otherClaim.getLesserBoundaryCorner().getBlockZ() &&
-                this.getGreaterBoundaryCorner().getBlockZ() > otherClaim.getGreaterBoundaryCorner().getBlockZ()) {
-            return true;
+    // gets the subdivisions whose x/z bounds may intersect the inclusive area
+    // with few children this is every child, so callers still need to check bounds
+    public List<Claim> getSubdivisions(int minX, int minZ, int maxX, int maxZ) {
+        SubdivisionSnapshot snapshot = this.subdivisions;
+        RTree<Claim> index = snapshot.getIndex();
+        if (index == null) {
+            return Arrays.asList(snapshot.claims);
         }
 
-        if (this.getGreaterBoundaryCorner().getBlockX() <= otherClaim.getGreaterBoundaryCorner().getBlockX() &&
-                this.getGreaterBoundaryCorner().getBlockX() >= otherClaim.getLesserBoundaryCorner().getBlockX() &&
-                this.getLesserBoundaryCorner().getBlockZ() < otherClaim.getLesserBoundaryCorner().getBlockZ() &&
-                this.getGreaterBoundaryCorner().getBlockZ() > otherClaim.getGreaterBoundaryCorner().getBlockZ()) {
-            return true;
+        return index.search(minX, minZ, maxX, maxZ, new ArrayList<Claim>());
+    }
+
+    // whether or not two claims overlap
+    // used internally to prevent overlaps when creating claims
+    public boolean overlaps(Claim otherClaim) {
+        if (!this.worldUniqueId.equals(otherClaim.worldUniqueId)) {
+            return false;
         }
 
-        return false;
+        // claims extend to the sky, so only the x/z rectangles matter
+        return this.minX <= otherClaim.maxX && this.maxX >= otherClaim.minX
+                && this.minZ <= otherClaim.maxZ && this.maxZ >= otherClaim.minZ;
     }
 
     // whether more entities may be added to a claim
@@ -745,7 +813,7 @@ public String allowMoreEntities() {
         }
 
         // this rule only applies to creative mode worlds
-        if (!GriefPrevention.instance.claimModeIsActive(this.getLesserBoundaryCorner().getExtent().getProperties(), ClaimsMode.Creative)) {
+        if (!GriefPrevention.instance.claimModeIsActive(this.world.getProperties(), ClaimsMode.Creative)) {
             return null;
         }
 
@@ -791,26 +859,15 @@ public String allowMoreEntities() {
     // implements a strict ordering of claims, used to keep the claims
     // collection sorted for faster searching
     boolean greaterThan(Claim otherClaim) {
-        Location<World> thisCorner = this.getLesserBoundaryCorner();
-        Location<World> otherCorner = otherClaim.getLesserBoundaryCorner();
-
-        if (thisCorner.getBlockX() > otherCorner.getBlockX()) {
-            return true;
+        if (this.minX != otherClaim.minX) {
+            return this.minX > otherClaim.minX;
         }
 
-        if (thisCorner.getBlockX() < otherCorner.getBlockX()) {
-            return false;
-        }
-
-        if (thisCorner.getBlockZ() > otherCorner.getBlockZ()) {
-            return true;
+        if (this.minZ != otherClaim.minZ) {
+            return this.minZ > otherClaim.minZ;
         }
 
-        if (thisCorner.getBlockZ() < otherCorner.getBlockZ()) {
-            return false;
-        }
-
-        return thisCorner.getExtent().getUniqueId().compareTo(otherCorner.getExtent().getUniqueId()) < 0;
+        return this.worldUniqueId.compareTo(otherClaim.worldUniqueId) < 0;
     }
 
     public long getPlayerInvestmentScore() {
@@ -824,11 +881,11 @@ public long getPlayerInvestmentScore() {
 
         boolean creativeMode = GriefPrevention.instance.claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative);
 
-        for (int x = this.lesserBoundaryCorner.getBlockX(); x <= this.greaterBoundaryCorner.getBlockX(); x++) {
-            for (int z = this.lesserBoundaryCorner.getBlockZ(); z <= this.greaterBoundaryCorner.getBlockZ(); z++) {
-                int y = this.lesserBoundaryCorner.getBlockY();
-                for (; y < GriefPrevention.instance.getSeaLevel(this.lesserBoundaryCorner.getExtent()) - 5; y++) {
-                    BlockState block = this.lesserBoundaryCorner.getExtent().getBlock(x, y, z);
+        for (int x = this.minX; x <= this.maxX; x++) {
+            for (int z = this.minZ; z <= this.maxZ; z++) {
+                int y = this.minY;
+                for (; y < GriefPrevention.instance.getSeaLevel(this.world) - 5; y++) {
+                    BlockState block = this.world.getBlock(x, y, z);
                     if (playerBlocks.contains(block.getType())) {
                         if (block.getType() == BlockTypes.CHEST && !creativeMode) {
                             score += 10;
@@ -838,8 +895,8 @@ public long getPlayerInvestmentScore() {
                     }
                 }
 
-                for (; y < this.lesserBoundaryCorner.getExtent().getDimension().getBuildHeight(); y++) {
-                    BlockState block = this.lesserBoundaryCorner.getExtent().getBlock(x, y, z);
+                for (; y < this.world.getDimension().getBuildHeight(); y++) {
+                    BlockState block = this.world.getBlock(x, y, z);
                     if (playerBlocks.contains(block.getType())) {
                         if (block.getType() == BlockTypes.CHEST && !creativeMode) {
                             score += 10;
@@ -859,16 +916,10 @@ public long getPlayerInvestmentScore() {
     public ArrayList<Chunk> getChunks() {
         ArrayList<Chunk> chunks = new ArrayList<Chunk>();
 
-        World world = this.getLesserBoundaryCorner().getExtent();
-        Optional<Chunk> lesserChunk = this.getLesserBoundaryCorner().getExtent()
-                .getChunk(this.getLesserBoundaryCorner().getBlockX() >> 4, 0, this.getLesserBoundaryCorner().getBlockZ() >> 4);
-        Optional<Chunk> greaterChunk = this.getGreaterBoundaryCorner().getExtent()
-                .getChunk(this.getGreaterBoundaryCorner().getBlockX() >> 4, 0, this.getGreaterBoundaryCorner().getBlockZ() >> 4);
-
-        if (lesserChunk.isPresent() && greaterChunk.isPresent()) {
-            for (int x = lesserChunk.get().getPosition().getX(); x <= greaterChunk.get().getPosition().getX(); x++) {
-                for (int z = lesserChunk.get().getPosition().getZ(); z <= greaterChunk.get().getPosition().getZ(); z++) {
-                    Optional<Chunk> chunk = world.loadChunk(x, 0, z, true);
+        if (this.world.getChunk(this.minX >> 4, 0, this.minZ >> 4).isPresent() && this.world.getChunk(this.maxX >> 4, 0, this.maxZ >> 4).isPresent()) {
+            for (int x = this.minX >> 4; x <= this.maxX >> 4; x++) {
+                for (int z = this.minZ >> 4; z <= this.maxZ >> 4; z++) {
+                    Optional<Chunk> chunk = this.world.loadChunk(x, 0, z, true);
                     if (chunk.isPresent()) {
                         chunks.add(chunk.get());
                     }
@@ -879,20 +930,22 @@ public ArrayList<Chunk> getChunks() {
         return chunks;
     }
 
-    public ArrayList<String> getChunkStrings() {
-        ArrayList<String> chunkStrings = new ArrayList<String>();
-        int smallX = this.getLesserBoundaryCorner().getBlockX() >> 4;
-        int smallZ = this.getLesserBoundaryCorner().getBlockZ() >> 4;
-        int largeX = this.getGreaterBoundaryCorner().getBlockX() >> 4;
-        int largeZ = this.getGreaterBoundaryCorner().getBlockZ() >> 4;
+    // packed keys of every chunk this claim touches, see ClaimWorldIndex#getChunkKey
+    public long[] getChunkKeys() {
+        int smallX = this.minX >> 4;
+        int smallZ = this.minZ >> 4;
+        int largeX = this.maxX >> 4;
+        int largeZ = this.maxZ >> 4;
 
+        long[] chunkKeys = new long[(largeX - smallX + 1) * (largeZ - smallZ + 1)];
+        int i = 0;
         for (int x = smallX; x <= largeX; x++) {
             for (int z = smallZ; z <= largeZ; z++) {
-                chunkStrings.add(String.valueOf(x) + z);
+                chunkKeys[i++] = ClaimWorldIndex.getChunkKey(x, z);
             }
         }
 
-        return chunkStrings;
+        return chunkKeys;
     }
 
     public ClaimData getClaimData() {
@@ -905,6 +958,46 @@ public ClaimStorageData getClaimStorage() {
 
     public void setClaimData(ClaimData data) {
         this.claimData = data;
+        this.trustIndex = null;
+        this.invalidateFlags();
+    }
+
+    // returns the highest trust level the user has in this claim itself, see TrustIndex
+    // this doesn't look at the parent claim or at ownership
+    public int getTrustLevel(UUID uniqueId) {
+        TrustIndex index = this.trustIndex;
+        if (index == null || !index.isCurrent(this.claimData)) {
+            index = new TrustIndex(this.claimData);
+            this.trustIndex = index;
+        }
+
+        return index.getTrustLevel(uniqueId);
+    }
+
+    // call after changing any of this claim's trust lists
+    public void invalidateTrust() {
+        this.trustIndex = null;
+        this.permissionCache.invalidate();
+    }
+
+    public Tristate getFlagValue(ClaimFlag flag) {
+        FlagTable table = this.flagTable;
+        if (table == null || table.defaultsVersion != GPFlags.getDefaultsVersion()) {
+            table = new FlagTable(this);
+            this.flagTable = table;
+        }
+
+        return FlagTable.decode(table.values[flag.ordinal()]);
+    }
+
+    // call after changing any of this claim's flags
+    public void invalidateFlags() {
+        this.flagTable = null;
+        this.permissionCache.invalidate();
+    }
+
+    public ClaimPermissionCache getPermissionCache() {
+        return this.permissionCache;
     }
 
     public void setClaimStorage(ClaimStorageData storage) {
@@ -912,20 +1005,101 @@ public void setClaimStorage(ClaimStorageData storage) {
     }
 
     public boolean isItemBlacklisted(ItemType type, int meta) {
-        String nonMetaItemString = type.getId();
-        String metaItemString = type.getId() + ":" + meta;
-        // TODO: fix possible NPE here
-        if (this.claimStorage.getConfig().protectionBlacklist.contains(nonMetaItemString)) {
-            return true;
-        } else if (this.claimStorage.getConfig().protectionBlacklist.contains(metaItemString)) {
-            return true;
-        } else {
+        if (this.claimStorage == null || this.claimStorage.getConfig() == null) {
             return false;
         }
+
+        List<String> source = this.claimStorage.getConfig().protectionBlacklist;
+        ProtectionBlacklist blacklist = this.protectionBlacklist;
+        if (blacklist == null || !blacklist.isCurrent(source)) {
+            blacklist = new ProtectionBlacklist(source);
+            this.protectionBlacklist = blacklist;
+        }
+
+        return blacklist.matcher.contains(type, meta);
     }
 
     @Override
     public Context getContext() {
         return this.context;
     }
+
+    private static final class ProtectionBlacklist {
+
+        final List<String> source;
+        final int size;
+        final CatalogTypeMatcher<ItemType> matcher;
+
+        ProtectionBlacklist(List<String> source) {
+            this.source = source;
+            this.size = source.size();
+            this.matcher = CatalogTypeMatcher.compile(ItemType.class, source);
+        }
+
+        // the config list is replaced on reload, the size check catches edits made in place
+        boolean isCurrent(List<String> source) {
+            return this.source == source && this.size == source.size();
+        }
+    }
+
+    private static final class FlagTable {
+
+        private static final byte UNDEFINED = 0;
+        private static final byte TRUE = 1;
+        private static final byte FALSE = 2;
+
+        final int defaultsVersion;
+        final byte[] values;
+
+        FlagTable(Claim claim) {
+            // read the version first so defaults changing mid build cause another rebuild
+            this.defaultsVersion = GPFlags.getDefaultsVersion();
+            ClaimFlag[] flags = ClaimFlag.values();
+            this.values = new byte[flags.length];
+            for (ClaimFlag flag : flags) {
+                this.values[flag.ordinal()] = encode(GPFlags.resolveClaimFlag(claim, flag));
+            }
+        }
+
+        static byte encode(Tristate value) {
+            return value == Tristate.TRUE ? TRUE : value == Tristate.FALSE ? FALSE : UNDEFINED;
+        }
+
+        static Tristate decode(byte value) {
+            return value == TRUE ? Tristate.TRUE : value == FALSE ? Tristate.FALSE : Tristate.UNDEFINED;
+        }
+    }
+
+    private static final class SubdivisionSnapshot {
+
+        static final SubdivisionSnapshot EMPTY = new SubdivisionSnapshot(new Claim[0]);
+
+        // spatial index of the children, only built once there are enough of them to beat a linear scan
+        private static final int INDEX_THRESHOLD = 16;
+
+        final Claim[] claims;
+        // built lazily and never modified afterwards, racing threads may each build one which is harmless
+        private volatile RTree<Claim> index;
+
+        SubdivisionSnapshot(Claim[] claims) {
+            this.claims = claims;
+        }
+
+        @Nullable
+        RTree<Claim> getIndex() {
+            if (this.claims.length < INDEX_THRESHOLD) {
+                return null;
+            }
+
+            RTree<Claim> index = this.index;
+            if (index == null) {
+                index = new RTree<Claim>();
+                for (Claim child : this.claims) {
+                    index.insert(child, child.minX, child.minZ, child.maxX, child.maxZ);
+                }
+                this.index = index;
+            }
+            return index;
+        }
+    }
 }
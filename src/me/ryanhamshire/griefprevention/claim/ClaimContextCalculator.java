@@ -31,7 +31,6 @@
 import org.spongepowered.api.service.permission.Subject;
 
 import java.util.Set;
-import java.util.UUID;
 
 public class ClaimContextCalculator implements ContextCalculator<Subject> {
 
@@ -39,9 +38,9 @@ public class ClaimContextCalculator implements ContextCalculator<Subject> {
     public void accumulateContexts(Subject calculable, Set<Context> accumulator) {
         if (calculable.getCommandSource().isPresent() && calculable.getCommandSource().get() instanceof Player) {
             Player player = (Player) calculable.getCommandSource().get();
-            Claim sourceClaim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
+            Claim sourceClaim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaimThisTick(player);
             if (sourceClaim != null) {
-                accumulator.add(new Context("claim", sourceClaim.getID().toString()));
+                accumulator.add(getContext(sourceClaim));
             }
         }
 
@@ -49,11 +48,11 @@ public void accumulateContexts(Subject calculable, Set<Context> accumulator) {
 
     @Override
     public boolean matches(Context context, Subject subject) {
-        if (context.equals("claim")) {
+        if (context.getType().equals("claim")) {
             if (subject.getCommandSource().isPresent() && subject.getCommandSource().get() instanceof Player) {
                 Player player = (Player) subject.getCommandSource().get();
-                Claim playerClaim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
-                if (playerClaim != null && playerClaim.getID().equals(UUID.fromString(context.getValue()))) {
+                Claim playerClaim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaimThisTick(player);
+                if (playerClaim != null && getContext(playerClaim).getValue().equalsIgnoreCase(context.getValue())) {
                     return true;
                 }
             }
@@ -61,4 +60,12 @@ public boolean matches(Context context, Subject subject) {
 
         return false;
     }
+
+    // claims loaded from the database have no context of their own yet
+    private static Context getContext(Claim claim) {
+        if (claim.context == null) {
+            claim.context = new Context("claim", claim.getID().toString());
+        }
+        return claim.context;
+    }
 }
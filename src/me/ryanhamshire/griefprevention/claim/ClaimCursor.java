@@ -0,0 +1,87 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.DataStore;
+import org.spongepowered.api.world.World;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+// reusable cursor for probing the claims at many block positions in one world
+// keeps the last claim found as the lookup hint, so scanning loops neither allocate nor rescan chunk lists
+public class ClaimCursor {
+
+    private final DataStore dataStore;
+    private final UUID worldUniqueId;
+    private final boolean ignoreHeight;
+    private int x;
+    private int y;
+    private int z;
+    private Claim claim;
+    private Claim lastClaim;
+
+    public ClaimCursor(DataStore dataStore, World world, boolean ignoreHeight) {
+        this.dataStore = dataStore;
+        this.worldUniqueId = world.getUniqueId();
+        this.ignoreHeight = ignoreHeight;
+    }
+
+    // moves the cursor and returns the claim at the new position, or null for the wilderness
+    @Nullable
+    public Claim moveTo(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.claim = this.dataStore.getClaimAt(this.worldUniqueId, x, y, z, this.ignoreHeight, this.lastClaim);
+        if (this.claim != null) {
+            this.lastClaim = this.claim;
+        }
+        return this.claim;
+    }
+
+    // returns the claim found by the last move
+    @Nullable
+    public Claim getClaim() {
+        return this.claim;
+    }
+
+    public int getX() {
+        return this.x;
+    }
+
+    public int getY() {
+        return this.y;
+    }
+
+    public int getZ() {
+        return this.z;
+    }
+
+    public UUID getWorldUniqueId() {
+        return this.worldUniqueId;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// caches the location independent parts of a claim's permission checks per user
+// siege, pvp combat, block and tile entity checks are never cached, only the trust, flag and
+// permission lookups that decide them, which only change through the invalidation calls below
+//
+// sponge has no event for permission changes made outside of griefprevention, so entries also
+// expire after a short time to bound how long such a change can go unnoticed
+//
+// a decision is computed between getStamp and put, put drops it if the cache was invalidated in between
+public class ClaimPermissionCache {
+
+    public enum Action {
+        // owner, coowner or ignoring claims, see Claim.hasFullAccess
+        FULL_ACCESS,
+        // the admin claims permission
+        ADMIN,
+        // build flag, builder trust or claim build permission
+        BUILD,
+        // break flag or builder trust
+        BREAK,
+        // explicit inventory flag
+        INVENTORY
+    }
+
+    private static final long EXPIRE_MILLIS = 10000;
+    // claims visited by many players drop everything instead of growing without bound
+    private static final int MAX_USERS = 256;
+
+    private static final AtomicInteger globalVersion = new AtomicInteger();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final ConcurrentHashMap<UUID, Decisions> decisions = new ConcurrentHashMap<>();
+    // bumped by every invalidation of this cache
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // returns the cached decision, or null if it has to be computed
+    public Boolean get(UUID userUniqueId, Action action) {
+        Decisions entry = this.decisions.get(userUniqueId);
+        if (entry != null && entry.isValid()) {
+            int bits = entry.bits;
+            if ((bits & knownBit(action)) != 0) {
+                hits.incrementAndGet();
+                return (bits & allowedBit(action)) != 0;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // take before computing a decision and hand to put
+    public long getStamp() {
+        return ((long) globalVersion.get() << 32) | (this.generation.get() & 0xFFFFFFFFL);
+    }
+
+    public boolean put(UUID userUniqueId, Action action, boolean allowed, long stamp) {
+        if (stamp != this.getStamp()) {
+            // invalidated while the decision was computed, it may be stale
+            return allowed;
+        }
+
+        Decisions entry = this.decisions.get(userUniqueId);
+        if (entry == null || !entry.isValid()) {
+            if (entry == null && this.decisions.size() >= MAX_USERS) {
+                this.decisions.clear();
+            }
+            entry = new Decisions();
+            this.decisions.put(userUniqueId, entry);
+        }
+
+        synchronized (entry) {
+            int bits = entry.bits | knownBit(action);
+            entry.bits = allowed ? bits | allowedBit(action) : bits & ~allowedBit(action);
+        }
+
+        // an invalidation that ran while the entry was written may have missed it
+        if (stamp != this.getStamp()) {
+            this.decisions.remove(userUniqueId, entry);
+        }
+        return allowed;
+    }
+
+    // call after anything in this claim that feeds a cached decision changes
+    public void invalidate() {
+        this.generation.incrementAndGet();
+        this.decisions.clear();
+    }
+
+    public void invalidate(UUID userUniqueId) {
+        this.generation.incrementAndGet();
+        this.decisions.remove(userUniqueId);
+    }
+
+    // call after a change that may affect every claim, such as a permission or ignore claims change
+    public static void invalidateAll() {
+        globalVersion.incrementAndGet();
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    private static int knownBit(Action action) {
+        return 1 << (action.ordinal() * 2);
+    }
+
+    private static int allowedBit(Action action) {
+        return 2 << (action.ordinal() * 2);
+    }
+
+    private static final class Decisions {
+
+        final int version = globalVersion.get();
+        final long created = System.currentTimeMillis();
+        volatile int bits;
+
+        boolean isValid() {
+            return this.version == globalVersion.get() && System.currentTimeMillis() - this.created < EXPIRE_MILLIS;
+        }
+    }
+}
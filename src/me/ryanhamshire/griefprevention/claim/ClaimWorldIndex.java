@@ -0,0 +1,283 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.util.LongObjectHashMap;
+import me.ryanhamshire.griefprevention.util.RTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+// in-memory index of the claims in a single world, keyed by packed chunk coordinates
+// top level claims and subdivisions are both registered in every chunk they touch
+// top level claims are also kept in an r-tree for area and nearest claim queries
+//
+// chunk lookups are safe from any thread without locking: the chunk map is split into shards
+// that are never changed once published, a mutation copies only the shards it touches and
+// then swaps in a new snapshot of the shard table and chunk filter, so readers always see a whole snapshot
+// mutations and r-tree queries synchronize on the index
+public class ClaimWorldIndex {
+
+    // the claimed chunk filter has 2^bits slots, 256KB per world
+    private static final int CLAIMED_CHUNK_FILTER_BITS = 16;
+    private static final int SHARD_BITS = 6;
+
+    private final UUID worldUniqueId;
+    private volatile Snapshot snapshot = new Snapshot(newShardTable(), new int[1 << CLAIMED_CHUNK_FILTER_BITS]);
+    private int chunkCount = 0;
+    private final RTree<Claim> topLevelClaims = new RTree<>();
+    // bumped whenever a claim in this world is added, removed or reshaped
+    private final AtomicInteger modificationCount = new AtomicInteger();
+
+    public ClaimWorldIndex(UUID worldUniqueId) {
+        this.worldUniqueId = worldUniqueId;
+    }
+
+    // packs a chunk position into a single key, x in the upper 32 bits and z in the lower 32 bits
+    public static long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public UUID getWorldUniqueId() {
+        return this.worldUniqueId;
+    }
+
+    public synchronized void addClaim(Claim claim) {
+        Mutation mutation = new Mutation(this.snapshot);
+        this.indexClaim(claim, mutation);
+        this.snapshot = mutation.publish();
+        this.modificationCount.incrementAndGet();
+    }
+
+    // adds many claims at once, each shard is copied at most once and the new table is published once
+    public synchronized void addClaims(Collection<Claim> claims) {
+        Mutation mutation = new Mutation(this.snapshot);
+        for (Claim claim : claims) {
+            this.indexClaim(claim, mutation);
+        }
+
+        this.snapshot = mutation.publish();
+        this.modificationCount.incrementAndGet();
+    }
+
+    private void indexClaim(Claim claim, Mutation mutation) {
+        for (long chunkKey : claim.getChunkKeys()) {
+            LongObjectHashMap<Claim[]> shard = mutation.getShard(chunkKey);
+            Claim[] claimsInChunk = shard.get(chunkKey);
+            if (claimsInChunk == null) {
+                shard.put(chunkKey, new Claim[] {claim});
+                mutation.getFilter()[getFilterSlot(chunkKey)]++;
+                this.chunkCount++;
+            } else {
+                Claim[] newClaims = Arrays.copyOf(claimsInChunk, claimsInChunk.length + 1);
+                newClaims[claimsInChunk.length] = claim;
+                shard.put(chunkKey, newClaims);
+            }
+        }
+
+        if (claim.parent == null) {
+            this.topLevelClaims.insert(claim, claim.minX, claim.minZ, claim.maxX, claim.maxZ);
+        }
+    }
+
+    public synchronized void removeClaim(Claim claim) {
+        Mutation mutation = new Mutation(this.snapshot);
+        for (long chunkKey : claim.getChunkKeys()) {
+            Claim[] claimsInChunk = mutation.snapshot.chunkShards[getShard(chunkKey)].get(chunkKey);
+            if (claimsInChunk == null) {
+                continue;
+            }
+
+            // remove by identity, a resized claim shares its id with the claim it replaces
+            int index = -1;
+            for (int i = 0; i < claimsInChunk.length; i++) {
+                if (claimsInChunk[i] == claim) {
+                    index = i;
+                    break;
+                }
+            }
+
+            if (index < 0) {
+                continue;
+            }
+
+            LongObjectHashMap<Claim[]> shard = mutation.getShard(chunkKey);
+            if (claimsInChunk.length == 1) {
+                shard.remove(chunkKey);
+                mutation.getFilter()[getFilterSlot(chunkKey)]--;
+                this.chunkCount--;
+            } else {
+                Claim[] newClaims = new Claim[claimsInChunk.length - 1];
+                System.arraycopy(claimsInChunk, 0, newClaims, 0, index);
+                System.arraycopy(claimsInChunk, index + 1, newClaims, index, newClaims.length - index);
+                shard.put(chunkKey, newClaims);
+            }
+        }
+
+        if (claim.parent == null) {
+            this.topLevelClaims.remove(claim, claim.minX, claim.minZ, claim.maxX, claim.maxZ);
+        }
+
+        this.snapshot = mutation.publish();
+        this.modificationCount.incrementAndGet();
+    }
+
+    // returns true if no claim touches the chunk, without consulting the chunk map
+    public boolean isWildernessChunk(int chunkX, int chunkZ) {
+        return this.snapshot.claimedChunkFilter[getFilterSlot(getChunkKey(chunkX, chunkZ))] == 0;
+    }
+
+    // returns true if no claim touches any chunk overlapping the inclusive block area
+    public boolean isWildernessArea(int minX, int minZ, int maxX, int maxZ) {
+        int[] claimedChunkFilter = this.snapshot.claimedChunkFilter;
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (claimedChunkFilter[getFilterSlot(getChunkKey(chunkX, chunkZ))] != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int getFilterSlot(long chunkKey) {
+        return (int) ((chunkKey * 0x9E3779B97F4A7C15L) >>> (64 - CLAIMED_CHUNK_FILTER_BITS));
+    }
+
+    // the shard uses the low bits of the same hash, the filter uses the high ones
+    private static int getShard(long chunkKey) {
+        return (int) (chunkKey * 0x9E3779B97F4A7C15L) & ((1 << SHARD_BITS) - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LongObjectHashMap<Claim[]>[] newShardTable() {
+        LongObjectHashMap<Claim[]>[] shards = new LongObjectHashMap[1 << SHARD_BITS];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LongObjectHashMap<>();
+        }
+        return shards;
+    }
+
+    // returns the claims touching a chunk, or null if there are none
+    // the array is shared and must not be modified
+    @Nullable
+    public Claim[] getClaimsInChunk(int chunkX, int chunkZ) {
+        long chunkKey = getChunkKey(chunkX, chunkZ);
+        return this.snapshot.chunkShards[getShard(chunkKey)].get(chunkKey);
+    }
+
+    // returns the top level claims whose x/z bounds intersect the given inclusive block area
+    public synchronized List<Claim> getTopLevelClaims(int minX, int minZ, int maxX, int maxZ) {
+        return this.topLevelClaims.search(minX, minZ, maxX, maxZ, new ArrayList<Claim>());
+    }
+
+    public synchronized List<Claim> getTopLevelClaims() {
+        return this.topLevelClaims.values();
+    }
+
+    // returns the top level claim closest to the block position, or null if the world has no claims
+    @Nullable
+    public synchronized Claim getNearestTopLevelClaim(int x, int z) {
+        return this.topLevelClaims.nearest(x, z);
+    }
+
+    public synchronized int getTopLevelClaimCount() {
+        return this.topLevelClaims.size();
+    }
+
+    public int getModificationCount() {
+        return this.modificationCount.get();
+    }
+
+    public void markModified() {
+        this.modificationCount.incrementAndGet();
+    }
+
+    public synchronized int getChunkCount() {
+        return this.chunkCount;
+    }
+
+    public synchronized void clear() {
+        this.snapshot = new Snapshot(newShardTable(), new int[1 << CLAIMED_CHUNK_FILTER_BITS]);
+        this.chunkCount = 0;
+        this.topLevelClaims.clear();
+        this.modificationCount.incrementAndGet();
+    }
+
+    // the chunk map and the claimed chunk filter as published together, neither is changed once published
+    private static final class Snapshot {
+
+        final LongObjectHashMap<Claim[]>[] chunkShards;
+        // counting filter over claimed chunks, lets wilderness checks skip the chunk map
+        // a zero slot guarantees no claim touches the chunk, a non zero slot may be a hash collision
+        final int[] claimedChunkFilter;
+
+        Snapshot(LongObjectHashMap<Claim[]>[] chunkShards, int[] claimedChunkFilter) {
+            this.chunkShards = chunkShards;
+            this.claimedChunkFilter = claimedChunkFilter;
+        }
+    }
+
+    // copies the shards and the filter of a snapshot as a mutation first touches them
+    private static final class Mutation {
+
+        final Snapshot snapshot;
+        private final LongObjectHashMap<Claim[]>[] shards;
+        private final boolean[] copied;
+        private int[] claimedChunkFilter;
+
+        Mutation(Snapshot snapshot) {
+            this.snapshot = snapshot;
+            this.shards = snapshot.chunkShards.clone();
+            this.copied = new boolean[this.shards.length];
+        }
+
+        LongObjectHashMap<Claim[]> getShard(long chunkKey) {
+            int shard = ClaimWorldIndex.getShard(chunkKey);
+            if (!this.copied[shard]) {
+                this.shards[shard] = new LongObjectHashMap<>(this.shards[shard]);
+                this.copied[shard] = true;
+            }
+            return this.shards[shard];
+        }
+
+        int[] getFilter() {
+            if (this.claimedChunkFilter == null) {
+                this.claimedChunkFilter = this.snapshot.claimedChunkFilter.clone();
+            }
+            return this.claimedChunkFilter;
+        }
+
+        Snapshot publish() {
+            return new Snapshot(this.shards, this.claimedChunkFilter != null ? this.claimedChunkFilter : this.snapshot.claimedChunkFilter);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.DataStore;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+// remembers which claim each online player is standing in
+// the claim is only looked up again once the player moves to another block or the claims in their world change
+// lookups only refresh that cache, the claim a player was last greeted in is kept apart and only changed by move
+public class PlayerClaimTracker {
+
+    private final DataStore dataStore;
+    private final Map<UUID, TrackedPlayer> trackedPlayers = new ConcurrentHashMap<>();
+
+    public PlayerClaimTracker(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    // returns the claim at the player's current location
+    @Nullable
+    public Claim getClaim(Player player) {
+        return this.getClaim(player, player.getLocation());
+    }
+
+    // returns the claim at a location the player is at or about to move to
+    @Nullable
+    public Claim getClaim(Player player, Location<World> location) {
+        return this.lookup(player, location).claim;
+    }
+
+    // returns the claim at the player's current location, looked up at most once per server tick
+    // unlike getClaim this never touches the cached lookup, so it is safe to call from any thread
+    @Nullable
+    public Claim getClaimThisTick(Player player) {
+        int tick = Sponge.getServer().getRunningTimeTicks();
+        TrackedPlayer tracked = this.trackedPlayers.get(player.getUniqueId());
+        StampedClaim stamped = tracked != null ? tracked.stampedClaim : null;
+        if (stamped != null && stamped.tick == tick) {
+            return stamped.claim;
+        }
+
+        Claim claim = this.dataStore.getClaimAt(player.getLocation(), false, stamped != null ? stamped.claim : null);
+        if (tracked != null) {
+            tracked.stampedClaim = new StampedClaim(tick, claim);
+        }
+        return claim;
+    }
+
+    // returns the top level claim at the player's current location
+    @Nullable
+    public Claim getTopLevelClaim(Player player) {
+        Claim claim = this.getClaim(player);
+        if (claim != null && claim.parent != null) {
+            return claim.parent;
+        }
+        return claim;
+    }
+
+    // moves the player to a new location, returning the claims left and entered
+    // or null if the player is still in the same claim
+    // only call this once the move is certain to happen, it changes the claim the player was last announced in
+    @Nullable
+    public ClaimTransition move(Player player, Location<World> location) {
+        TrackedPlayer tracked = this.lookup(player, location);
+        Claim fromClaim = tracked.announcedClaim;
+        Claim toClaim = tracked.claim;
+        if (fromClaim == toClaim) {
+            return null;
+        }
+
+        tracked.announcedClaim = toClaim;
+        if (toClaim != null) {
+            this.dataStore.getPlayerData(location.getExtent(), player.getUniqueId()).lastClaim = toClaim;
+        }
+        return new ClaimTransition(fromClaim, toClaim);
+    }
+
+    public void removePlayer(UUID playerUniqueId) {
+        this.trackedPlayers.remove(playerUniqueId);
+    }
+
+    public void clear() {
+        this.trackedPlayers.clear();
+    }
+
+    // refreshes the cached lookup for the location, the announced claim is left alone
+    private TrackedPlayer lookup(Player player, Location<World> location) {
+        UUID worldUniqueId = location.getExtent().getUniqueId();
+        int blockX = location.getBlockX();
+        int blockY = location.getBlockY();
+        int blockZ = location.getBlockZ();
+        ClaimWorldIndex claimIndex = this.dataStore.getClaimWorldIndex(worldUniqueId);
+        int modificationCount = claimIndex.getModificationCount();
+
+        TrackedPlayer tracked = this.trackedPlayers.get(player.getUniqueId());
+        if (tracked == null) {
+            tracked = new TrackedPlayer();
+            this.trackedPlayers.put(player.getUniqueId(), tracked);
+        } else if (tracked.blockX == blockX && tracked.blockY == blockY && tracked.blockZ == blockZ
+                && tracked.modificationCount == modificationCount && worldUniqueId.equals(tracked.worldUniqueId)) {
+            return tracked;
+        }
+
+        Claim claim = this.dataStore.getClaimAt(location, false, tracked.claim);
+        tracked.worldUniqueId = worldUniqueId;
+        tracked.blockX = blockX;
+        tracked.blockY = blockY;
+        tracked.blockZ = blockZ;
+        tracked.modificationCount = modificationCount;
+        tracked.claim = claim;
+        return tracked;
+    }
+
+    public static final class ClaimTransition {
+
+        @Nullable public final Claim fromClaim;
+        @Nullable public final Claim toClaim;
+
+        ClaimTransition(@Nullable Claim fromClaim, @Nullable Claim toClaim) {
+            this.fromClaim = fromClaim;
+            this.toClaim = toClaim;
+        }
+    }
+
+    private static final class TrackedPlayer {
+
+        UUID worldUniqueId;
+        int blockX;
+        int blockY;
+        int blockZ;
+        int modificationCount;
+        // the claim at the last looked up location
+        Claim claim;
+        // the claim the player was last greeted in, only changed by move
+        Claim announcedClaim;
+        // written by getClaimThisTick only, replaced as a whole so other threads never see half of it
+        volatile StampedClaim stampedClaim;
+    }
+
+    private static final class StampedClaim {
+
+        final int tick;
+        @Nullable final Claim claim;
+
+        StampedClaim(int tick, @Nullable Claim claim) {
+            this.tick = tick;
+            this.claim = claim;
+        }
+    }
+}
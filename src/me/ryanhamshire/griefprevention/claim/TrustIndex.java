@@ -0,0 +1,140 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.ClaimData;
+
+import java.util.List;
+import java.util.UUID;
+
+// hash index over the trust lists of a claim, mapping each trusted uuid to its highest trust level
+// the lists in the claim data stay the stored form, this is rebuilt from them whenever they change
+// an index is never modified once built so it can be read from any thread
+public final class TrustIndex {
+
+    public static final int NONE = 0;
+    public static final int ACCESSOR = 1;
+    public static final int CONTAINER = 2;
+    public static final int BUILDER = 3;
+    public static final int COOWNER = 4;
+
+    // the lists this index was built from and their sizes, to tell when it is out of date
+    private final List<UUID> accessors;
+    private final List<UUID> containers;
+    private final List<UUID> builders;
+    private final List<UUID> coowners;
+    private final int accessorCount;
+    private final int containerCount;
+    private final int builderCount;
+    private final int coownerCount;
+
+    // open addressing table keyed by both halves of the uuid, a zero level marks an empty slot
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final byte[] levels;
+    private final int mask;
+    // level granted to everyone through the public uuid, never more than builder
+    private final int publicLevel;
+
+    public TrustIndex(ClaimData data) {
+        this.accessors = data.getAccessors();
+        this.containers = data.getContainers();
+        this.builders = data.getBuilders();
+        this.coowners = data.getCoowners();
+        this.accessorCount = this.accessors.size();
+        this.containerCount = this.containers.size();
+        this.builderCount = this.builders.size();
+        this.coownerCount = this.coowners.size();
+
+        int capacity = Integer.highestOneBit(Math.max(this.accessorCount + this.containerCount + this.builderCount + this.coownerCount, 1) * 2) << 1;
+        this.mostSignificantBits = new long[capacity];
+        this.leastSignificantBits = new long[capacity];
+        this.levels = new byte[capacity];
+        this.mask = capacity - 1;
+
+        this.addAll(this.accessors, ACCESSOR);
+        this.addAll(this.containers, CONTAINER);
+        this.addAll(this.builders, BUILDER);
+        this.addAll(this.coowners, COOWNER);
+
+        // public coowner trust never granted full access, so don't start now
+        this.publicLevel = Math.min(this.lookup(GriefPrevention.PUBLIC_UUID), BUILDER);
+    }
+
+    // returns false once the claim data lists were replaced or resized
+    public boolean isCurrent(ClaimData data) {
+        return data.getAccessors() == this.accessors && this.accessors.size() == this.accessorCount
+                && data.getContainers() == this.containers && this.containers.size() == this.containerCount
+                && data.getBuilders() == this.builders && this.builders.size() == this.builderCount
+                && data.getCoowners() == this.coowners && this.coowners.size() == this.coownerCount;
+    }
+
+    // returns the highest trust level of the user, including anything granted to the public
+    public int getTrustLevel(UUID uniqueId) {
+        return Math.max(this.lookup(uniqueId), this.publicLevel);
+    }
+
+    private void addAll(List<UUID> uniqueIds, int level) {
+        for (UUID uniqueId : uniqueIds) {
+            if (uniqueId == null) {
+                continue;
+            }
+
+            long most = uniqueId.getMostSignificantBits();
+            long least = uniqueId.getLeastSignificantBits();
+            int index = slot(most, least) & this.mask;
+            while (this.levels[index] != NONE) {
+                if (this.mostSignificantBits[index] == most && this.leastSignificantBits[index] == least) {
+                    break;
+                }
+                index = (index + 1) & this.mask;
+            }
+
+            this.mostSignificantBits[index] = most;
+            this.leastSignificantBits[index] = least;
+            this.levels[index] = (byte) Math.max(this.levels[index], level);
+        }
+    }
+
+    private int lookup(UUID uniqueId) {
+        long most = uniqueId.getMostSignificantBits();
+        long least = uniqueId.getLeastSignificantBits();
+        int index = slot(most, least) & this.mask;
+        int level;
+        while ((level = this.levels[index]) != NONE) {
+            if (this.mostSignificantBits[index] == most && this.leastSignificantBits[index] == least) {
+                return level;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return NONE;
+    }
+
+    private static int slot(long most, long least) {
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -32,7 +32,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         String flag = ctx.<String>getOne("flag").get();
         String value = ctx.<String>getOne("value").get();
 
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
+        Claim claim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(player);
         Optional<User> targetPlayer = GriefPrevention.instance.resolvePlayerByName(name);
         if (!targetPlayer.isPresent() && target.equalsIgnoreCase("player")) {
             GriefPrevention.sendMessage(player, Text.of(TextMode.Err, "Not a valid player."));
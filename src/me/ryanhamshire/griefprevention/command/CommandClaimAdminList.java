@@ -2,9 +2,9 @@
 
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.Messages;
-import me.ryanhamshire.griefprevention.PlayerDataWorldManager;
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimWorldIndex;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -13,6 +13,11 @@
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.text.Text;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
 public class CommandClaimAdminList implements CommandExecutor {
 
     @Override
@@ -25,15 +30,30 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             return CommandResult.success();
         }
 
-        // find admin claims
-        PlayerDataWorldManager playerWorldManager = GriefPrevention.instance.dataStore.getPlayerDataWorldManager(player.getWorld().getProperties());
-        for (Claim claim : playerWorldManager.getWorldClaims()) {
-            if (claim.isAdminClaim()) {
-                GriefPrevention.sendMessage(src, TextMode.Instr, Messages.ClaimsListHeader);;
-                GriefPrevention.sendMessage(src, Text.of(TextMode.Instr, GriefPrevention.getfriendlyLocationString(claim.getLesserBoundaryCorner())));
+        // find admin claims in the player's world, through the storage's type index when it has one
+        List<Claim> adminClaims = new ArrayList<>();
+        Set<UUID> adminClaimIds = GriefPrevention.instance.dataStore.getClaimIdsOfType(player.getWorld().getProperties(), Claim.Type.ADMIN);
+        if (adminClaimIds != null) {
+            for (UUID claimId : adminClaimIds) {
+                Claim claim = GriefPrevention.instance.dataStore.getClaim(player.getWorld(), claimId);
+                if (claim != null && claim.inDataStore && claim.isAdminClaim()) {
+                    adminClaims.add(claim);
+                }
+            }
+        } else {
+            ClaimWorldIndex claimIndex = GriefPrevention.instance.dataStore.getClaimWorldIndex(player.getWorld().getUniqueId());
+            for (Claim claim : claimIndex.getTopLevelClaims()) {
+                if (claim.isAdminClaim()) {
+                    adminClaims.add(claim);
+                }
             }
         }
 
+        for (Claim claim : adminClaims) {
+            GriefPrevention.sendMessage(src, TextMode.Instr, Messages.ClaimsListHeader);;
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Instr, GriefPrevention.getfriendlyLocationString(claim.getLesserBoundaryCorner())));
+        }
+
         return CommandResult.success();
     }
 }
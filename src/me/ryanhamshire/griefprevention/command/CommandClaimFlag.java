@@ -2,7 +2,6 @@
 
 import com.google.common.collect.Lists;
 import me.ryanhamshire.griefprevention.GriefPrevention;
-import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData.ClaimDataFlagsCategory;
@@ -43,8 +42,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             return CommandResult.success();
         }
 
-        PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, playerData.lastClaim);
+        Claim claim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(player);
 
         if (claim != null) {
             if (flag.isPresent()) {
@@ -102,6 +100,7 @@ public static void setFlagValue(CommandSource src, Claim claim, String flag, Obj
         if (claim.getClaimData().getFlags().getFlagValue(flag) != null) {
             try {
                 claim.getClaimData().getFlags().setFlagValue(flag, value);
+                claim.invalidateFlags();
                 src.sendMessage(Text.of(TextColors.GREEN, "Set value of ", flag, " to ", value.toString()));
             } catch (Throwable t) {
                 src.sendMessage(Text.of(TextColors.RED, "Value types not compatible!"));
@@ -121,6 +120,7 @@ public static void removeFromFlagValue(CommandSource src, Claim claim, String fl
                 newValue = (ArrayList<String>) flagsCat.getFlagValue(flag);
                 newValue.removeAll(value);
                 flagsCat.setFlagValue(flag, newValue);
+                claim.invalidateFlags();
                 src.sendMessage(Text.of(TextColors.GREEN, "Set value of ", flag, " to ",
                         flagsCat.getFlagValue(flag).toString()));
             } else {
@@ -26,7 +26,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             return CommandResult.success();
         }
 
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
+        Claim claim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(player);
         if (claim != null) {
             if (claim.allowEdit(player) != null) {
                 GriefPrevention.sendMessage(src, Text.of(TextMode.Err, Messages.NoEditPermission));
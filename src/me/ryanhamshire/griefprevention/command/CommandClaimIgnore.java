@@ -4,6 +4,7 @@
 import me.ryanhamshire.griefprevention.Messages;
 import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.TextMode;
+import me.ryanhamshire.griefprevention.claim.ClaimPermissionCache;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -25,6 +26,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
 
         PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
         playerData.ignoreClaims = !playerData.ignoreClaims;
+        ClaimPermissionCache.invalidateAll();
 
         // toggle ignore claims mode on or off
         if (!playerData.ignoreClaims) {
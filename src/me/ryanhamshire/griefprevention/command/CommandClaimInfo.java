@@ -33,7 +33,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             return CommandResult.success();
         }
 
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
+        Claim claim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(player);
 
         if (claim != null) {
             UUID ownerUniqueId = claim.getClaimData().getOwnerUniqueId();
@@ -118,7 +118,14 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
                             claimId, "\n",
                             footer));
         } else {
-            GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "No claim in your current location."));
+            // point the player at the closest claim, looked up in the world's claim index
+            Claim nearestClaim = GriefPrevention.instance.dataStore.getNearestClaim(player.getLocation());
+            if (nearestClaim == null) {
+                GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "No claim in your current location."));
+            } else {
+                GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "No claim in your current location.  The nearest claim is ",
+                        nearestClaim.getOwnerName(), "'s at ", GriefPrevention.getfriendlyLocationString(nearestClaim.getLesserBoundaryCorner()), "."));
+            }
         }
 
         return CommandResult.success();
@@ -15,8 +15,11 @@
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.text.Text;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 public class CommandClaimList implements CommandExecutor {
 
@@ -42,6 +45,17 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         // load the target player's data
         PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), targetUser.getUniqueId());
         List<Claim> claimList = playerData.getClaims();
+        // an indexed storage answers from its owner index, the ids are resolved against the claims loaded in this world
+        Set<UUID> ownedClaimIds = GriefPrevention.instance.dataStore.getClaimIdsOwnedBy(targetUser.getUniqueId());
+        if (ownedClaimIds != null) {
+            claimList = new ArrayList<>();
+            for (UUID claimId : ownedClaimIds) {
+                Claim claim = GriefPrevention.instance.dataStore.getClaim(player.getWorld(), claimId);
+                if (claim != null && claim.inDataStore) {
+                    claimList.add(claim);
+                }
+            }
+        }
         GriefPrevention.sendMessage(src, TextMode.Instr, Messages.StartBlockMath,
                 String.valueOf(playerData.getAccruedClaimBlocks()),
                 String.valueOf((playerData.getBonusClaimBlocks() + GriefPrevention.instance.dataStore
@@ -2,6 +2,7 @@
 
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.TextMode;
+import me.ryanhamshire.griefprevention.claim.ClaimPermissionCache;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -29,6 +30,10 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             GriefPrevention.getGlobalConfig().getConfig().logging.loggingDebug = true;
         }
 
+        GriefPrevention.sendMessage(player, TextMode.Info, "Permission cache: " + ClaimPermissionCache.getHits() + " hits, "
+                + ClaimPermissionCache.getMisses() + " misses.");
+        GriefPrevention.sendMessage(player, TextMode.Info, "Dropped log entries: " + GriefPrevention.instance.getDroppedLogEntries() + ".");
+
         return CommandResult.success();
     }
 }
@@ -385,6 +385,13 @@ private static CommandContainer createMainCommand() {
                         .executor(new CommandGpReload())
                         .build(), "reload")
 
+                .child(CommandSpec.builder()
+                        .description(Text.of("Copies all claims to another storage format"))
+                        .permission(GPPermissions.MIGRATE_STORAGE)
+                        .arguments(string(Text.of("format")))
+                        .executor(new CommandMigrateStorage())
+                        .build(), "migrate")
+
                 .build();
 
         /* All of these commands are related to the trust system or the flags system
@@ -32,6 +32,7 @@
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.claim.ClaimPermission;
+import me.ryanhamshire.griefprevention.claim.ClaimPermissionCache;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandException;
@@ -42,7 +43,6 @@
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.permission.PermissionService;
 import org.spongepowered.api.service.permission.Subject;
-import org.spongepowered.api.service.user.UserStorageService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.Tristate;
@@ -122,9 +122,9 @@ public static String lookupPlayerName(UUID playerID) {
         }
 
         // check the cache
-        Optional<User> player = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(playerID);
-        if (player.isPresent() || player.get().isOnline()) {
-            return player.get().getName();
+        String name = GriefPrevention.instance.dataStore.getPlayerNameCache().lookup(playerID);
+        if (name != null) {
+            return name;
         } else {
             return "someone";
         }
@@ -136,7 +136,7 @@ public static CommandResult handleFlagPermission(Player player, CommandContext c
         String flag = ctx.<String>getOne("flag").get();
         String value = ctx.<String>getOne("value").get();
 
-        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(player.getLocation(), false, null);
+        Claim claim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(player);
         Optional<User> targetPlayer = GriefPrevention.instance.resolvePlayerByName(name);
         if (!targetPlayer.isPresent() && target.equalsIgnoreCase("player")) {
             GriefPrevention.sendMessage(player, Text.of(TextMode.Err, "Not a valid player."));
@@ -157,6 +157,7 @@ public static CommandResult addPermission(Claim claim, Player sourcePlayer, Opti
                 Subject subj = targetPlayer.get().getContainingCollection().get(targetPlayer.get().getIdentifier());
                 subj.getSubjectData().setPermission(ImmutableSet.of(claim.getContext()), permission + flag,
                         Tristate.fromBoolean(Boolean.valueOf(value)));
+                ClaimPermissionCache.invalidateAll();
                 sourcePlayer.sendMessage(Text.of(TextColors.GREEN, "Set permission of ", flag, " to ", value, " for ", targetPlayer.get().getName(), "."));
             } else if (group == null) {
                 GriefPrevention.sendMessage(sourcePlayer, Text.of(TextMode.Err, "Not a valid player."));
@@ -166,6 +167,7 @@ public static CommandResult addPermission(Claim claim, Player sourcePlayer, Opti
                 if (subj != null) {
                     subj.getSubjectData().setPermission(ImmutableSet.of(claim.getContext()), permission + flag,
                             Tristate.fromBoolean(Boolean.valueOf(value)));
+                    ClaimPermissionCache.invalidateAll();
                     sourcePlayer.sendMessage(Text.of(TextColors.GREEN, "Set permission of ", flag, " to ", value, " for group ", group, "."));
                 } else {
                     GriefPrevention.sendMessage(sourcePlayer, Text.of(TextMode.Err, "Not a valid group."));
@@ -240,6 +242,7 @@ public static void handleTrustCommand(Player player, ClaimPermission claimPermis
                 return;
             } else {
                 memberList.add(targetPlayer.get().getUniqueId());
+                currentClaim.invalidateTrust();
             }
 
             currentClaim.getClaimStorage().save();
@@ -0,0 +1,87 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.EmbeddedDatabaseDataStore;
+import me.ryanhamshire.griefprevention.FlatFileDataStore;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.JournalDataStore;
+import me.ryanhamshire.griefprevention.RegionFileDataStore;
+import me.ryanhamshire.griefprevention.TextMode;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+
+import java.io.IOException;
+
+public class CommandMigrateStorage implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        String format = ctx.<String>getOne("format").get().toLowerCase();
+        if (!(GriefPrevention.instance.dataStore instanceof FlatFileDataStore)) {
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "Claim storage can only be migrated in file mode."));
+            return CommandResult.empty();
+        }
+
+        if (!format.equals(FlatFileDataStore.STORAGE_FORMAT) && !format.equals(RegionFileDataStore.STORAGE_FORMAT)
+                && !format.equals(JournalDataStore.STORAGE_FORMAT) && !format.equals(EmbeddedDatabaseDataStore.STORAGE_FORMAT)) {
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "Unknown claim storage format '" + format + "', use '"
+                    + FlatFileDataStore.STORAGE_FORMAT + "', '" + RegionFileDataStore.STORAGE_FORMAT + "', '" + JournalDataStore.STORAGE_FORMAT
+                    + "' or '" + EmbeddedDatabaseDataStore.STORAGE_FORMAT + "'."));
+            return CommandResult.empty();
+        }
+
+        FlatFileDataStore dataStore = (FlatFileDataStore) GriefPrevention.instance.dataStore;
+        if (format.equals(dataStore.getStorageFormat())) {
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "Claims are already stored as '" + format + "'."));
+            return CommandResult.empty();
+        }
+
+        // journal mode keeps its claims in claim files as well, switching between the two needs no copy
+        String targetFiles = format.equals(JournalDataStore.STORAGE_FORMAT) ? FlatFileDataStore.STORAGE_FORMAT : format;
+        String activeFiles = dataStore instanceof JournalDataStore ? FlatFileDataStore.STORAGE_FORMAT : dataStore.getStorageFormat();
+        if (targetFiles.equals(activeFiles)) {
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Info, "'" + format + "' uses the same claim files as '" + dataStore.getStorageFormat()
+                    + "'. Set storage.claim-format to '" + format + "' in the global config and restart the server to use it."));
+            return CommandResult.success();
+        }
+
+        try {
+            int migrated = dataStore.migrateClaimStorage(targetFiles);
+            GriefPrevention.addLogEntry("Migrated " + migrated + " claims to '" + format + "' storage.");
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Success, "Copied " + migrated + " claims to '" + format + "' storage. Set "
+                    + "storage.claim-format to '" + format + "' in the global config and restart the server to use it."));
+        } catch (IOException e) {
+            e.printStackTrace();
+            GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "Claim storage migration failed: " + e.getMessage()));
+            return CommandResult.empty();
+        }
+
+        return CommandResult.success();
+    }
+}
@@ -106,7 +106,7 @@ public CommandResult execute(CommandSource src, CommandContext args) {
             }
         }
 
-        Claim defenderClaim = GriefPrevention.instance.dataStore.getClaimAt(defender.getLocation(), false, null);
+        Claim defenderClaim = GriefPrevention.instance.dataStore.getPlayerClaimTracker().getClaim(defender);
 
         // defender must have some level of permission there to be protected
         if (defenderClaim == null || defenderClaim.allowAccess(defender) != null) {
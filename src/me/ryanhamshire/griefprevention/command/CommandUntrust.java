@@ -69,6 +69,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         claim.getClaimData().getBuilders().remove(targetPlayer.get().getUniqueId());
         claim.getClaimData().getContainers().remove(targetPlayer.get().getUniqueId());
         claim.getClaimData().getCoowners().remove(targetPlayer.get().getUniqueId());
+        claim.invalidateTrust();
         claim.getClaimStorage().save();
 
         GriefPrevention.sendMessage(player, TextMode.Success, Messages.UntrustIndividualSingleClaim, subject);
@@ -62,6 +62,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             claim.getClaimData().getBuilders().remove(targetPlayer.get().getUniqueId());
             claim.getClaimData().getContainers().remove(targetPlayer.get().getUniqueId());
             claim.getClaimData().getCoowners().remove(targetPlayer.get().getUniqueId());
+            claim.invalidateTrust();
             claim.getClaimStorage().save();
         }
 
@@ -0,0 +1,393 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * Append-only log of claim changes for one world, in front of its claim files.
+ *
+ * <p>Every save appends the claim's compressed document and every delete a
+ * tombstone. A committer thread writes whatever has been appended since its
+ * last pass in one go and syncs the log once for all of it. Once the log grows
+ * large, or has been sitting for a while, the latest record of each claim is
+ * folded into the claim files and the log is truncated. A log left behind by
+ * a crash is folded when the journal is opened.</p>
+ *
+ * <p>Records hold the whole claim document rather than the single change
+ * that caused the save. A trust or flag change on a large claim therefore
+ * appends a few hundred compressed bytes instead of a few dozen, but replay
+ * and folding never have to rebuild a claim from its history.</p>
+ */
+public class ClaimJournal {
+
+    // length and crc32 of the rest, claim id, record type
+    private static final int RECORD_PREFIX_SIZE = 8;
+    private static final int RECORD_BODY_HEADER_SIZE = 17;
+    private static final byte RECORD_SAVE = 1;
+    private static final byte RECORD_DELETE = 2;
+    private static final long COMPACT_THRESHOLD_BYTES = 8L * 1024 * 1024;
+    private static final long COMPACT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long SYNC_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // stands in for a delete in unfoldedClaims, which can't hold null
+    private static final byte[] DELETED = new byte[0];
+
+    private final Path journalPath;
+    private final Path claimFolder;
+    private final FileChannel channel;
+    private final Thread committer;
+
+    // guarded by this
+    private List<Record> pendingRecords = new ArrayList<>();
+    private boolean closed;
+
+    // latest logged record of each claim not yet folded, a null document is a delete
+    // only used by the committer thread
+    private final Map<UUID, byte[]> loggedClaims = new HashMap<>();
+    private long lastCompaction = System.currentTimeMillis();
+    // set once a failed append could not be cut off again, records past it would never be replayed
+    private boolean unwritable;
+
+    // latest document of each claim whose file is behind the journal, read by any thread
+    private final Map<UUID, byte[]> unfoldedClaims = new ConcurrentHashMap<>();
+
+    public ClaimJournal(Path journalPath, Path claimFolder) throws IOException {
+        this.journalPath = journalPath;
+        this.claimFolder = claimFolder;
+        Files.createDirectories(journalPath.getParent());
+        Files.createDirectories(claimFolder);
+        long validLength = this.replay();
+        this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drop a torn record at the end, or everything if it was all folded
+        this.channel.truncate(this.loggedClaims.isEmpty() ? 0 : validLength);
+        this.channel.position(this.channel.size());
+
+        this.committer = new Thread(this::runCommitter, "GriefPrevention Claim Journal " + journalPath.getParent().getParent().getFileName());
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    // a null document records the claim as deleted
+    public void append(UUID claimId, @Nullable byte[] document) {
+        Record record = new Record(claimId, document);
+        synchronized (this) {
+            if (!this.closed) {
+                this.unfoldedClaims.put(claimId, document == null ? DELETED : document);
+                this.pendingRecords.add(record);
+                this.notifyAll();
+                return;
+            }
+        }
+
+        // the journal is closed, go straight to the claim file once the last compaction is done with it
+        try {
+            this.committer.join(SYNC_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.fold(claimId, document)) {
+            this.unfoldedClaims.remove(claimId);
+        }
+    }
+
+    // the content of the claim as last appended if its file doesn't have it yet, empty if it was deleted since,
+    // null if the claim file is current
+    @Nullable
+    public String readUnfolded(UUID claimId) {
+        byte[] document = this.unfoldedClaims.get(claimId);
+        if (document == null) {
+            return null;
+        }
+        if (document == DELETED) {
+            return "";
+        }
+        String content = ClaimStorageData.decompress(document);
+        return content == null ? "" : content;
+    }
+
+    // commits and folds everything, later appends are written to the claim files directly
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.notifyAll();
+        }
+
+        try {
+            this.committer.join(SYNC_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runCommitter() {
+        try {
+            while (true) {
+                List<Record> records;
+                boolean closing;
+                synchronized (this) {
+                    if (this.pendingRecords.isEmpty() && !this.closed) {
+                        this.wait(COMPACT_INTERVAL_MILLIS);
+                    }
+                    records = this.pendingRecords;
+                    this.pendingRecords = new ArrayList<>();
+                    closing = this.closed;
+                }
+
+                if (!records.isEmpty()) {
+                    this.commit(records);
+                }
+
+                if (closing || this.isCompactionDue()) {
+                    this.compact();
+                }
+
+                if (closing) {
+                    this.channel.close();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // exiting
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to close claim journal " + this.journalPath, e);
+        }
+    }
+
+    // group commit, one write and one sync for every record appended since the last pass
+    private void commit(List<Record> records) {
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = records.get(i).encode();
+        }
+
+        if (!this.unwritable) {
+            long start = -1;
+            try {
+                start = this.channel.position();
+                int last = buffers.length - 1;
+                while (buffers[last].hasRemaining()) {
+                    this.channel.write(buffers);
+                }
+                this.channel.force(false);
+                for (Record record : records) {
+                    this.loggedClaims.put(record.claimId, record.document);
+                }
+                return;
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to append to claim journal " + this.journalPath, e);
+                this.cutOff(start);
+            }
+        }
+
+        // the records can't be logged, write the claims out instead of losing them
+        for (Record record : records) {
+            // the claim file is newer than anything logged for the claim now, a later compaction must not fold over it
+            if (this.fold(record.claimId, record.document)) {
+                this.loggedClaims.remove(record.claimId);
+                this.folded(record.claimId, record.document);
+            } else {
+                this.loggedClaims.put(record.claimId, record.document);
+            }
+        }
+    }
+
+    // drops whatever part of a failed append reached the log, replay stops at the first torn record
+    // and would discard every record committed after it
+    private void cutOff(long start) {
+        if (start >= 0) {
+            try {
+                this.channel.truncate(start);
+                this.channel.position(start);
+                this.channel.force(false);
+                return;
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to cut a torn record off claim journal " + this.journalPath, e);
+            }
+        }
+
+        this.unwritable = true;
+        SpongeImpl.getLogger().error("Claim journal " + this.journalPath + " is no longer appended to, claims are written to their files directly");
+    }
+
+    private boolean isCompactionDue() throws IOException {
+        if (this.loggedClaims.isEmpty() && !this.unwritable) {
+            return false;
+        }
+        return this.channel.size() >= COMPACT_THRESHOLD_BYTES || System.currentTimeMillis() - this.lastCompaction >= COMPACT_INTERVAL_MILLIS;
+    }
+
+    private void compact() {
+        this.lastCompaction = System.currentTimeMillis();
+        if (this.loggedClaims.isEmpty() && !this.unwritable) {
+            return;
+        }
+
+        boolean folded = true;
+        for (Map.Entry<UUID, byte[]> entry : this.loggedClaims.entrySet()) {
+            folded &= this.fold(entry.getKey(), entry.getValue());
+        }
+
+        // keep the log if any claim could not be written, the next compaction tries again
+        if (!folded) {
+            return;
+        }
+
+        try {
+            this.channel.truncate(0);
+            this.channel.force(true);
+            for (Map.Entry<UUID, byte[]> entry : this.loggedClaims.entrySet()) {
+                this.folded(entry.getKey(), entry.getValue());
+            }
+            this.loggedClaims.clear();
+            // the torn record went with the rest, the log can be appended to again
+            this.unwritable = false;
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to truncate claim journal " + this.journalPath, e);
+        }
+    }
+
+    // the claim file has caught up with the document, unless a newer one was appended in the meantime
+    private void folded(UUID claimId, @Nullable byte[] document) {
+        this.unfoldedClaims.remove(claimId, document == null ? DELETED : document);
+    }
+
+    private boolean fold(UUID claimId, @Nullable byte[] document) {
+        Path claimFile = this.claimFolder.resolve(claimId.toString());
+        if (document == null) {
+            try {
+                Files.deleteIfExists(claimFile);
+                return true;
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Unable to delete claim file " + claimFile, e);
+                return false;
+            }
+        }
+
+        String content = ClaimStorageData.decompress(document);
+        // an unreadable record can never be folded, it was logged by decompress
+        return content == null || ClaimStorageWriter.writeFile(claimFile, content);
+    }
+
+    // folds a log left behind by a crash into the claim files and returns the length of its intact records
+    private long replay() throws IOException {
+        if (Files.notExists(this.journalPath)) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.journalPath));
+        Map<UUID, byte[]> latest = new LinkedHashMap<>();
+        int records = 0;
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_PREFIX_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < RECORD_BODY_HEADER_SIZE || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+
+            UUID claimId = new UUID(buffer.getLong(), buffer.getLong());
+            byte type = buffer.get();
+            byte[] document = new byte[length - RECORD_BODY_HEADER_SIZE];
+            buffer.get(document);
+            latest.put(claimId, type == RECORD_DELETE ? null : document);
+            records++;
+        }
+
+        for (Map.Entry<UUID, byte[]> entry : latest.entrySet()) {
+            if (!this.fold(entry.getKey(), entry.getValue())) {
+                this.loggedClaims.put(entry.getKey(), entry.getValue());
+                this.unfoldedClaims.put(entry.getKey(), entry.getValue() == null ? DELETED : entry.getValue());
+            }
+        }
+
+        if (records > 0) {
+            SpongeImpl.getLogger().info("Replayed " + records + " claim journal records for " + latest.size() + " claims from " + this.journalPath);
+        }
+        if (buffer.hasRemaining()) {
+            SpongeImpl.getLogger().warn("Discarded " + buffer.remaining() + " bytes of incomplete records at the end of " + this.journalPath);
+        }
+        return buffer.position();
+    }
+
+    private static final class Record {
+
+        final UUID claimId;
+        @Nullable final byte[] document;
+
+        Record(UUID claimId, @Nullable byte[] document) {
+            this.claimId = claimId;
+            this.document = document;
+        }
+
+        ByteBuffer encode() {
+            int documentLength = this.document == null ? 0 : this.document.length;
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_PREFIX_SIZE + RECORD_BODY_HEADER_SIZE + documentLength);
+            buffer.putInt(RECORD_BODY_HEADER_SIZE + documentLength);
+            buffer.putInt(0);
+            buffer.putLong(this.claimId.getMostSignificantBits());
+            buffer.putLong(this.claimId.getLeastSignificantBits());
+            buffer.put(this.document == null ? RECORD_DELETE : RECORD_SAVE);
+            if (this.document != null) {
+                buffer.put(this.document);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), RECORD_PREFIX_SIZE, RECORD_BODY_HEADER_SIZE + documentLength);
+            buffer.putInt(4, (int) crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single region file holding the records of every top level claim whose
+ * lesser corner lies in one 32x32 chunk region.
+ *
+ * <p>The file starts with an index of fixed size slots, one per claim,
+ * followed by the records. The index is read into memory when the file is
+ * opened and every slot change is written through to the file. A live record
+ * is never overwritten: a new version is appended and forced to disk before
+ * its slot is pointed at it, and every slot carries a checksum over its claim
+ * id, location and record, so a crash can't make a claim load from a
+ * half-written record or slot. Slots never cross a disk page, so a torn
+ * write only hits the slot being written.
+ * Space left behind by replaced or deleted records is reclaimed by rewriting
+ * the file once it outweighs the live records.</p>
+ *
+ * <p>The index is not memory-mapped: a mapping can't be released before the
+ * file is replaced by a rewrite, which fails on Windows.</p>
+ */
+class ClaimRegionFile {
+
+    private static final int MAGIC = 0x47505246; // GPRF
+    private static final int VERSION = 1;
+    // magic, version, slot count, padded to a slot so slots stay page aligned
+    private static final int HEADER_SIZE = 32;
+    // uuid most and least significant bits, record offset, record length, checksum
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_SLOTS = 64;
+    private static final int MIN_WASTED_BYTES_TO_COMPACT = 64 * 1024;
+
+    private final Path path;
+    private FileChannel channel;
+    private ByteBuffer index;
+    private int slotCount;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private long liveBytes;
+    // new records are placed here, past everything written so far
+    private long allocationEnd;
+
+    ClaimRegionFile(Path path) throws IOException {
+        this.path = path;
+        if (Files.notExists(path) || Files.size(path) == 0) {
+            createEmpty(path, INITIAL_SLOTS);
+        }
+
+        this.open();
+    }
+
+    private static void createEmpty(Path path, int slotCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(indexSize(slotCount));
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(slotCount);
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private void open() throws IOException {
+        this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        this.readFully(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            this.channel.close();
+            throw new IOException("Not a claim region file: " + this.path);
+        }
+
+        this.slotCount = header.getInt();
+        this.index = ByteBuffer.allocate(indexSize(this.slotCount));
+        this.readFully(this.index, 0);
+        this.allocationEnd = Math.max(this.channel.size(), indexSize(this.slotCount));
+        this.slots.clear();
+        this.liveBytes = 0;
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            int position = slotPosition(slot);
+            long most = this.index.getLong(position);
+            long least = this.index.getLong(position + 8);
+            if (most != 0 || least != 0) {
+                this.slots.put(new UUID(most, least), slot);
+                this.liveBytes += this.index.getInt(position + 24);
+            }
+        }
+    }
+
+    private static int indexSize(int slotCount) {
+        return HEADER_SIZE + slotCount * SLOT_SIZE;
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // records that fail their checksum are left out and logged
+    synchronized Map<UUID, byte[]> readAll() throws IOException {
+        Map<UUID, byte[]> records = new HashMap<>();
+        for (Map.Entry<UUID, Integer> entry : this.slots.entrySet()) {
+            byte[] data = this.read(entry.getKey(), entry.getValue());
+            if (data != null) {
+                records.put(entry.getKey(), data);
+            }
+        }
+        return records;
+    }
+
+    @Nullable
+    synchronized byte[] read(UUID claimId) throws IOException {
+        Integer slot = this.slots.get(claimId);
+        return slot == null ? null : this.read(claimId, slot);
+    }
+
+    @Nullable
+    private byte[] read(UUID claimId, int slot) throws IOException {
+        int position = slotPosition(slot);
+        long offset = this.index.getLong(position + 16);
+        int length = this.index.getInt(position + 24);
+        if (offset < indexSize(this.slotCount) || length < 0 || offset + length > this.channel.size()) {
+            SpongeImpl.getLogger().error("Skipping claim " + claimId + " in " + this.path + ", its record lies outside the file");
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        this.readFully(buffer, offset);
+        if (buffer.hasRemaining()) {
+            throw new IOException("Truncated claim record in " + this.path);
+        }
+
+        byte[] data = buffer.array();
+        if (this.index.getInt(position + 28) != checksum(claimId, offset, data)) {
+            SpongeImpl.getLogger().error("Skipping claim " + claimId + " in " + this.path + ", its record is damaged");
+            return null;
+        }
+        return data;
+    }
+
+    synchronized void write(UUID claimId, byte[] data) throws IOException {
+        Integer slot = this.slots.get(claimId);
+        if (slot == null) {
+            slot = this.findFreeSlot();
+        }
+
+        // the new record goes past everything else and reaches the disk before the slot points at it,
+        // the previous record stays intact until then
+        long offset = this.allocationEnd;
+        this.writeFully(ByteBuffer.wrap(data), offset);
+        this.channel.force(false);
+        this.allocationEnd = offset + data.length;
+
+        int position = slotPosition(slot);
+        if (this.slots.containsKey(claimId)) {
+            this.liveBytes -= this.index.getInt(position + 24);
+        }
+        ByteBuffer slotData = ByteBuffer.allocate(SLOT_SIZE);
+        slotData.putLong(claimId.getMostSignificantBits()).putLong(claimId.getLeastSignificantBits()).putLong(offset).putInt(data.length)
+                .putInt(checksum(claimId, offset, data));
+        this.writeSlot(position, slotData);
+        this.slots.put(claimId, slot);
+        this.liveBytes += data.length;
+        this.compactIfWasteful();
+    }
+
+    synchronized boolean delete(UUID claimId) throws IOException {
+        Integer slot = this.slots.remove(claimId);
+        if (slot == null) {
+            return false;
+        }
+
+        int position = slotPosition(slot);
+        this.liveBytes -= this.index.getInt(position + 24);
+        this.writeSlot(position, ByteBuffer.allocate(SLOT_SIZE));
+        this.compactIfWasteful();
+        return true;
+    }
+
+    synchronized boolean isEmpty() {
+        return this.slots.isEmpty();
+    }
+
+    // writes a whole slot through to the file and forces it, then updates the index in memory
+    private void writeSlot(int position, ByteBuffer slotData) throws IOException {
+        slotData.rewind();
+        this.writeFully(slotData, position);
+        this.channel.force(false);
+        slotData.rewind();
+        this.index.position(position);
+        this.index.put(slotData);
+        this.index.rewind();
+    }
+
+    // the slot is only claimed once its record has been written
+    private int findFreeSlot() throws IOException {
+        if (this.slots.size() == this.slotCount) {
+            this.rewrite(this.slotCount * 2);
+        }
+
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            int position = slotPosition(slot);
+            if (this.index.getLong(position) == 0 && this.index.getLong(position + 8) == 0) {
+                return slot;
+            }
+        }
+
+        throw new IOException("No free slot in claim region file " + this.path);
+    }
+
+    // covers the claim id and record location as well, so a slot torn by a crash fails too
+    private static int checksum(UUID claimId, long offset, byte[] data) {
+        ByteBuffer slot = ByteBuffer.allocate(28);
+        slot.putLong(claimId.getMostSignificantBits()).putLong(claimId.getLeastSignificantBits()).putLong(offset).putInt(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(slot.array());
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private void compactIfWasteful() throws IOException {
+        long wasted = this.allocationEnd - indexSize(this.slotCount) - this.liveBytes;
+        if (wasted > MIN_WASTED_BYTES_TO_COMPACT && wasted > this.liveBytes) {
+            this.rewrite(this.slotCount);
+        }
+    }
+
+    // copies the live records into a fresh file with the given number of slots and swaps it in
+    private void rewrite(int newSlotCount) throws IOException {
+        Map<UUID, byte[]> records = this.readAll();
+        Path tempPath = this.path.resolveSibling(this.path.getFileName() + ClaimStorageWriter.TEMP_FILE_SUFFIX);
+        createEmpty(tempPath, newSlotCount);
+        try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer targetIndex = ByteBuffer.allocate(newSlotCount * SLOT_SIZE);
+            long offset = indexSize(newSlotCount);
+            for (Map.Entry<UUID, byte[]> entry : records.entrySet()) {
+                byte[] data = entry.getValue();
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer, offset + buffer.position());
+                }
+
+                targetIndex.putLong(entry.getKey().getMostSignificantBits()).putLong(entry.getKey().getLeastSignificantBits()).putLong(offset)
+                        .putInt(data.length).putInt(checksum(entry.getKey(), offset, data));
+                offset += data.length;
+            }
+            targetIndex.rewind();
+            while (targetIndex.hasRemaining()) {
+                target.write(targetIndex, HEADER_SIZE + targetIndex.position());
+            }
+            target.force(true);
+        }
+
+        // the file is reopened either way, a failed move leaves the old file in place and usable
+        this.close();
+        try {
+            try {
+                Files.move(tempPath, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            this.open();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (this.channel != null && this.channel.isOpen()) {
+            this.channel.force(true);
+            this.channel.close();
+        }
+    }
+}
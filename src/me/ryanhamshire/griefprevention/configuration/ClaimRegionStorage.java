@@ -0,0 +1,157 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * The claim region files of one world.
+ *
+ * <p>A top level claim is stored in the region of its lesser corner, each
+ * region covering 32x32 chunks. Region files are opened on demand and stay
+ * open until {@link #close()}.</p>
+ */
+public class ClaimRegionStorage {
+
+    public static final String REGION_FILE_SUFFIX = ".gpr";
+    // 32 chunks of 16 blocks
+    private static final int REGION_SHIFT = 9;
+
+    private final Path folder;
+    private final Map<Long, ClaimRegionFile> regionFiles = new HashMap<>();
+    private final Map<UUID, Long> claimRegions = new HashMap<>();
+
+    public ClaimRegionStorage(Path folder) {
+        this.folder = folder;
+    }
+
+    public Path getFolder() {
+        return this.folder;
+    }
+
+    public static Path getRegionPath(Path folder, int regionX, int regionZ) {
+        return folder.resolve("r." + regionX + "." + regionZ + REGION_FILE_SUFFIX);
+    }
+
+    private static long getRegionKey(int blockX, int blockZ) {
+        return ((long) (blockX >> REGION_SHIFT) << 32) | ((blockZ >> REGION_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    // reads every record in the folder, keyed by claim id
+    public synchronized Map<UUID, byte[]> readAll() throws IOException {
+        Map<UUID, byte[]> records = new HashMap<>();
+        if (Files.notExists(this.folder)) {
+            return records;
+        }
+
+        List<Path> regionPaths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder, "*" + REGION_FILE_SUFFIX)) {
+            for (Path path : stream) {
+                regionPaths.add(path);
+            }
+        }
+
+        for (Path path : regionPaths) {
+            String[] parts = path.getFileName().toString().split("\\.");
+            long regionKey;
+            try {
+                regionKey = ((long) Integer.parseInt(parts[1]) << 32) | (Integer.parseInt(parts[2]) & 0xFFFFFFFFL);
+            } catch (RuntimeException e) {
+                SpongeImpl.getLogger().error("Skipping claim region file with an unexpected name: " + path);
+                continue;
+            }
+
+            try {
+                Map<UUID, byte[]> regionRecords = this.getRegionFile(regionKey).readAll();
+                for (UUID claimId : regionRecords.keySet()) {
+                    this.claimRegions.put(claimId, regionKey);
+                }
+                records.putAll(regionRecords);
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to read claim region file " + path, e);
+            }
+        }
+        return records;
+    }
+
+    // the stored record of the claim, null if it has none or it is damaged
+    @Nullable
+    public synchronized byte[] read(UUID claimId) throws IOException {
+        Long regionKey = this.claimRegions.get(claimId);
+        return regionKey == null ? null : this.getRegionFile(regionKey).read(claimId);
+    }
+
+    public synchronized void write(UUID claimId, int blockX, int blockZ, byte[] data) throws IOException {
+        long regionKey = getRegionKey(blockX, blockZ);
+        this.getRegionFile(regionKey).write(claimId, data);
+
+        // a claim resized across a region border leaves its old region only once the new record is on disk
+        Long previousRegionKey = this.claimRegions.put(claimId, regionKey);
+        if (previousRegionKey != null && previousRegionKey != regionKey) {
+            this.getRegionFile(previousRegionKey).delete(claimId);
+        }
+    }
+
+    public synchronized void delete(UUID claimId) throws IOException {
+        Long regionKey = this.claimRegions.remove(claimId);
+        if (regionKey != null) {
+            this.getRegionFile(regionKey).delete(claimId);
+        }
+    }
+
+    private ClaimRegionFile getRegionFile(long regionKey) throws IOException {
+        ClaimRegionFile regionFile = this.regionFiles.get(regionKey);
+        if (regionFile == null) {
+            Files.createDirectories(this.folder);
+            regionFile = new ClaimRegionFile(getRegionPath(this.folder, (int) (regionKey >> 32), (int) regionKey));
+            this.regionFiles.put(regionKey, regionFile);
+        }
+        return regionFile;
+    }
+
+    // closes the open region files, they are reopened if the storage is used again
+    public synchronized void close() {
+        for (ClaimRegionFile regionFile : this.regionFiles.values()) {
+            try {
+                regionFile.close();
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to close claim region file", e);
+            }
+        }
+        this.regionFiles.clear();
+    }
+}
@@ -21,7 +21,13 @@
 import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.util.IpSet;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
@@ -31,6 +37,11 @@
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
 
 public class ClaimStorageData {
 
@@ -67,8 +78,12 @@ public class ClaimStorageData {
     public static final String MAIN_PROTECTION_BLACKLIST = "bypass-protection-items";
     public static final String MAIN_SUBDIVISIONS = "sub-divisions";
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public ClaimStorageData(Path path) {
+        this(path, true);
+    }
+
+    // existing claim files are loaded with writeDefaults false so they are only read
+    public ClaimStorageData(Path path, boolean writeDefaults) {
         this.filePath = path;
         try {
             Files.createDirectories(path.getParent());
@@ -76,26 +91,79 @@ public ClaimStorageData(Path path) {
                 Files.createFile(path);
             }
 
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
-            this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataNode.class).bindToNew();
+            this.initialize(HoconConfigurationLoader.builder().setPath(path).build());
+            if (writeDefaults) {
+                save();
+            }
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to initialize configuration", e);
+        }
+    }
 
-            reload();
-            save();
+    // for storage that doesn't keep a file per claim, the claim is read from its HOCON form
+    // path only identifies where the claim is kept
+    protected ClaimStorageData(Path path, String content) {
+        this.filePath = path;
+        try {
+            this.initialize(HoconConfigurationLoader.builder().setSource(() -> new BufferedReader(new StringReader(content))).build());
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to initialize configuration", e);
         }
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void initialize(HoconConfigurationLoader loader) throws ObjectMappingException {
+        this.loader = loader;
+        this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataNode.class).bindToNew();
+        reload();
+    }
+
     public ClaimDataNode getConfig() {
         return this.configBase;
     }
 
+    // marks this claim file dirty, it is written shortly after by ClaimStorageWriter
     public void save() {
+        ClaimStorageWriter.markDirty(this);
+    }
+
+    public void saveNow() {
+        Runnable write = prepareWrite();
+        if (write != null) {
+            write.run();
+        }
+    }
+
+    // captures the claim as it is now, the returned task writes it and may run on any thread
+    @Nullable
+    protected Runnable prepareWrite() {
+        final String content = render();
+        if (content == null) {
+            return null;
+        }
+
+        final Path path = this.filePath;
+        return () -> ClaimStorageWriter.writeFile(path, content);
+    }
+
+    protected void delete() {
+        try {
+            Files.deleteIfExists(this.filePath);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Unable to delete claim file " + this.filePath, e);
+        }
+    }
+
+    // serializes the claim into its HOCON form, must be called on the thread that mutates the claim
+    public String render() {
         try {
             this.configMapper.serialize(this.root.getNode(GriefPrevention.MOD_ID));
-            this.loader.save(this.root);
+            StringWriter writer = new StringWriter();
+            HoconConfigurationLoader.builder().setSink(() -> new BufferedWriter(writer)).build().save(this.root);
+            return writer.toString();
         } catch (IOException | ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
+            return null;
         }
     }
 
@@ -111,12 +179,49 @@ public void reload() {
         }
     }
 
+    // claim documents kept outside of their own file are deflated, they shrink to a fraction of their size
+    public static byte[] compress(String content) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(content.getBytes(StandardCharsets.UTF_8));
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(content.length() / 2 + 16);
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    @Nullable
+    public static String decompress(byte[] record) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(record);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(record.length * 4);
+        byte[] buffer = new byte[1024];
+        try {
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated record");
+                }
+                output.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            SpongeImpl.getLogger().error("Unreadable claim record", e);
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     public CompletableFuture<CommentedConfigurationNode> updateSetting(String key, Object value) {
         return Functional.asyncFailableFuture(() -> {
             CommentedConfigurationNode upd = getSetting(key);
             upd.setValue(value);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPrevention.MOD_ID));
-            this.loader.save(this.root);
+            save();
             return upd;
         }, ForkJoinPool.commonPool());
     }
@@ -0,0 +1,168 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind persistence for claim files.
+ *
+ * <p>Saving a claim only marks its storage dirty. Repeated saves of the same
+ * claim within {@link #WRITE_DELAY_TICKS} are coalesced into one write, which
+ * is rendered on the main thread and written by a single background thread
+ * through a temporary file and a rename.</p>
+ */
+public final class ClaimStorageWriter {
+
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    // dirty claim files are collected for this long before being written
+    private static final long WRITE_DELAY_TICKS = 40;
+    private static final long FLUSH_TIMEOUT_SECONDS = 30;
+
+    private static final Set<ClaimStorageData> dirtyStorage = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private static final ExecutorService fileWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "GriefPrevention Claim Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // once the server is stopping the scheduler can no longer be relied upon, so saves are written immediately
+    private static volatile boolean closed;
+
+    private ClaimStorageWriter() {
+    }
+
+    public static void markDirty(ClaimStorageData storage) {
+        if (closed) {
+            dirtyStorage.remove(storage);
+            Runnable write = storage.prepareWrite();
+            if (write != null) {
+                writeAndWait(write);
+            }
+            return;
+        }
+
+        dirtyStorage.add(storage);
+        if (drainScheduled.compareAndSet(false, true)) {
+            Sponge.getScheduler().createTaskBuilder().delayTicks(WRITE_DELAY_TICKS).execute(ClaimStorageWriter::drain)
+                    .submit(GriefPrevention.instance);
+        }
+    }
+
+    public static void delete(ClaimStorageData storage) {
+        dirtyStorage.remove(storage);
+        if (closed) {
+            writeAndWait(storage::delete);
+            return;
+        }
+
+        // queued behind any pending write of the same claim so it can't be recreated
+        fileWriter.execute(storage::delete);
+    }
+
+    /**
+     * Writes every dirty claim file and waits for the writes to finish.
+     * Must be called from the main thread.
+     */
+    public static void flush() {
+        drain();
+        try {
+            fileWriter.submit(() -> {}).get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to flush claim data", e);
+        }
+    }
+
+    public static void close() {
+        closed = true;
+        flush();
+    }
+
+    // after close writes still go through the writer thread, so they can't race a queued write of the same claim
+    private static void writeAndWait(Runnable write) {
+        try {
+            fileWriter.submit(write).get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to write claim data", e);
+        }
+    }
+
+    private static void drain() {
+        drainScheduled.set(false);
+        for (Iterator<ClaimStorageData> iterator = dirtyStorage.iterator(); iterator.hasNext(); ) {
+            ClaimStorageData storage = iterator.next();
+            iterator.remove();
+            Runnable write = storage.prepareWrite();
+            if (write != null) {
+                fileWriter.execute(write);
+            }
+        }
+    }
+
+    // returns false if the file could not be written, the failure is logged
+    public static boolean writeFile(Path path, String content) {
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_FILE_SUFFIX);
+        try {
+            // the data has to be on disk before the rename, or a power loss can leave an empty claim file behind
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to save claim data to " + path, e);
+            return false;
+        }
+    }
+}
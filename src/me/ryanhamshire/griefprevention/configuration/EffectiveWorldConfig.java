@@ -0,0 +1,167 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.ClaimsMode;
+import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.ConfigBase;
+import me.ryanhamshire.griefprevention.util.CatalogTypeMatcher;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.item.ItemType;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * The settings of a world's active config, resolved once when the config is
+ * loaded so event handlers don't have to walk the config maps and parse
+ * strings on every call.
+ *
+ * <p>Instances are immutable. Any config change replaces them, see
+ * {@link GriefPrevention#invalidateEffectiveConfigs()}.</p>
+ */
+public final class EffectiveWorldConfig {
+
+    private final GriefPreventionConfig<?> activeConfig;
+    private final ClaimsMode claimMode;
+    private final ImmutableSet<UUID> alwaysIgnoreClaims;
+    private final ImmutableList<String> accessTrustCommands;
+    private final ImmutableSet<String> whisperCommands;
+    private final ImmutableSet<String> pvpBlockedCommands;
+    private final ImmutableSet<String> ignoredEntityIds;
+    @Nullable private final ItemType modificationTool;
+    @Nullable private final ItemType investigationTool;
+    private final CatalogTypeMatcher<ItemType> bannedItems;
+    private final CatalogTypeMatcher<BlockType> breakableSiegeBlocks;
+    private final CatalogTypeMatcher<BlockType> winnerAccessibleBlocks;
+
+    public EffectiveWorldConfig(GriefPreventionConfig<?> activeConfig) {
+        this.activeConfig = activeConfig;
+        ConfigBase config = activeConfig.getConfig();
+
+        ClaimsMode[] modes = ClaimsMode.values();
+        int mode = config.claim.claimMode;
+        if (mode >= 0 && mode < modes.length) {
+            this.claimMode = modes[mode];
+        } else {
+            GriefPrevention.addLogEntry("Invalid claims mode " + mode + ", claims are disabled for this config.");
+            this.claimMode = ClaimsMode.Disabled;
+        }
+
+        ImmutableSet.Builder<UUID> ignoreClaims = ImmutableSet.builder();
+        for (String uuid : config.claim.alwaysIgnoreClaimsList) {
+            try {
+                ignoreClaims.add(UUID.fromString(uuid));
+            } catch (IllegalArgumentException e) {
+                GriefPrevention.addLogEntry("Ignoring invalid UUID '" + uuid + "' in " + GriefPreventionConfig.CLAIM_ALWAYS_IGNORE_CLAIMS + ".");
+            }
+        }
+        this.alwaysIgnoreClaims = ignoreClaims.build();
+
+        this.accessTrustCommands = ImmutableList.copyOf(config.claim.accessTrustCommands);
+        this.whisperCommands = ImmutableSet.copyOf(config.general.whisperCommandList);
+        this.pvpBlockedCommands = ImmutableSet.copyOf(config.pvp.blockedCommandList);
+        this.ignoredEntityIds = ImmutableSet.copyOf(config.claim.ignoredEntityIds);
+        this.modificationTool = resolveItem(config.claim.modificationTool, GriefPreventionConfig.CLAIM_MODIFICATION_TOOL);
+        this.investigationTool = resolveItem(config.claim.investigationTool, GriefPreventionConfig.CLAIM_INVESTIGATION_TOOL);
+        this.bannedItems = CatalogTypeMatcher.compile(ItemType.class, config.general.bannedItemList);
+        this.breakableSiegeBlocks = CatalogTypeMatcher.compile(BlockType.class, config.siege.breakableSiegeBlocks);
+        this.winnerAccessibleBlocks = CatalogTypeMatcher.compile(BlockType.class, config.siege.winnerAccessibleBlocks);
+    }
+
+    @Nullable
+    private static ItemType resolveItem(String id, String setting) {
+        ItemType type = Sponge.getRegistry().getType(ItemType.class, id).orElse(null);
+        if (type == null) {
+            GriefPrevention.addLogEntry("Unknown item '" + id + "' in " + setting + ".");
+        }
+        return type;
+    }
+
+    public GriefPreventionConfig<?> getActiveConfig() {
+        return this.activeConfig;
+    }
+
+    public ConfigBase getConfig() {
+        return this.activeConfig.getConfig();
+    }
+
+    public ClaimsMode getClaimMode() {
+        return this.claimMode;
+    }
+
+    public boolean claimsEnabled() {
+        return this.claimMode != ClaimsMode.Disabled;
+    }
+
+    public boolean alwaysIgnoresClaims(UUID uuid) {
+        return this.alwaysIgnoreClaims.contains(uuid);
+    }
+
+    public boolean isAccessTrustCommand(String lowerCaseMessage) {
+        for (String command : this.accessTrustCommands) {
+            if (lowerCaseMessage.startsWith(command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isWhisperCommand(String command) {
+        return this.whisperCommands.contains(command);
+    }
+
+    public boolean isPvpBlockedCommand(String command) {
+        return this.pvpBlockedCommands.contains(command);
+    }
+
+    public boolean isEntityIgnored(String entityId) {
+        return this.ignoredEntityIds.contains(entityId);
+    }
+
+    public boolean isModificationTool(ItemType type) {
+        return type == this.modificationTool && type != null;
+    }
+
+    public boolean isInvestigationTool(ItemType type) {
+        return type == this.investigationTool && type != null;
+    }
+
+    public boolean isItemBanned(ItemType type, int meta) {
+        return this.bannedItems.contains(type, meta);
+    }
+
+    public boolean isSiegeBreakable(BlockType type) {
+        return this.breakableSiegeBlocks.contains(type);
+    }
+
+    public boolean isWinnerAccessible(BlockType type) {
+        return this.winnerAccessibleBlocks.contains(type);
+    }
+}
@@ -117,6 +117,9 @@ public enum Type {
     // Player Data
     public static final String PLAYER_DATA_GLOBAL_STORAGE = "use-global-storage";
 
+    // STORAGE
+    public static final String STORAGE_CLAIM_FORMAT = "claim-format";
+
     // PVP
     public static final String PVP_PROTECT_ITEM_DROPS_DEATH = "protect-item-drops-death";
     public static final String PVP_PROTECT_ITEM_DROPS_DEATH_NONPVP = "protect-item-drops-death-non-pvp";
@@ -177,6 +180,8 @@ public void save() {
         } catch (IOException | ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
         }
+        // settings may have been changed in place by commands
+        GriefPrevention.invalidateEffectiveConfigs();
     }
 
     public void reload() {
@@ -196,6 +201,7 @@ public CompletableFuture<CommentedConfigurationNode> updateSetting(String key, O
             CommentedConfigurationNode upd = getSetting(key);
             upd.setValue(value);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPrevention.MOD_ID));
+            GriefPrevention.invalidateEffectiveConfigs();
             this.loader.save(this.root);
             return upd;
         }, ForkJoinPool.commonPool());
@@ -245,6 +251,8 @@ public static class GlobalConfig extends ConfigBase {
         public PlayerDataCategory playerdata = new PlayerDataCategory();
         @Setting
         public SpamCategory spam = new SpamCategory();
+        @Setting
+        public StorageCategory storage = new StorageCategory();
     }
 
     public static class DimensionConfig extends ConfigBase {
@@ -522,6 +530,15 @@ public static class PlayerDataCategory extends Category {
         public boolean useGlobalPlayerDataStorage = false;
     }
 
+    @ConfigSerializable
+    public static class StorageCategory extends Category {
+        @Setting(value = STORAGE_CLAIM_FORMAT, comment = "How claims are stored, 'file' keeps a file per claim and 'region' packs claims into region files. "
+                + "'journal' keeps a file per claim but appends changes to a journal that is folded into the files in the background. "
+                + "'h2' keeps claims in an embedded database with their world, owner, area and last activity indexed. "
+                + "Run /gpmigrate with the new format before changing it.")
+        public String claimFormat = "file";
+    }
+
     @ConfigSerializable
     public static class PvpCategory extends Category {
 
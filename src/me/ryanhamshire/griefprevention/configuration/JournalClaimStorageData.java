@@ -0,0 +1,72 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * A claim file whose changes are appended to a {@link ClaimJournal} and
+ * reach the file itself when the journal is compacted.
+ */
+public class JournalClaimStorageData extends ClaimStorageData {
+
+    private final ClaimJournal journal;
+    private final UUID claimId;
+
+    public JournalClaimStorageData(ClaimJournal journal, Path path, boolean newClaim) {
+        super(path, false);
+        this.journal = journal;
+        this.claimId = UUID.fromString(path.getFileName().toString());
+        if (newClaim) {
+            save();
+        }
+    }
+
+    // a claim whose file is behind the journal, starting from the content last appended for it
+    public JournalClaimStorageData(ClaimJournal journal, Path path, String content) {
+        super(path, content);
+        this.journal = journal;
+        this.claimId = UUID.fromString(path.getFileName().toString());
+    }
+
+    @Nullable
+    @Override
+    protected Runnable prepareWrite() {
+        final String content = render();
+        if (content == null) {
+            return null;
+        }
+
+        return () -> this.journal.append(this.claimId, compress(content));
+    }
+
+    @Override
+    protected void delete() {
+        this.journal.append(this.claimId, null);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Claim storage kept as a record in a {@link ClaimRegionStorage}.
+ *
+ * <p>Records hold the same HOCON document as a claim file, compressed.</p>
+ */
+public class RegionClaimStorageData extends ClaimStorageData {
+
+    private final ClaimRegionStorage regionStorage;
+    private final UUID claimId;
+
+    // a new claim, written with its defaults
+    public RegionClaimStorageData(ClaimRegionStorage regionStorage, UUID claimId) {
+        this(regionStorage, claimId, "");
+        this.save();
+    }
+
+    public RegionClaimStorageData(ClaimRegionStorage regionStorage, UUID claimId, String content) {
+        super(regionStorage.getFolder().resolve(claimId.toString()), content);
+        this.regionStorage = regionStorage;
+        this.claimId = claimId;
+    }
+
+    @Nullable
+    public static RegionClaimStorageData fromRecord(ClaimRegionStorage regionStorage, UUID claimId, byte[] record) {
+        String content = decompress(record);
+        return content == null ? null : new RegionClaimStorageData(regionStorage, claimId, content);
+    }
+
+    @Nullable
+    @Override
+    protected Runnable prepareWrite() {
+        final String content = render();
+        if (content == null) {
+            return null;
+        }
+
+        // the region is picked from the corner as it is now, not when the write runs
+        final int[] corner = parseCorner(getConfig().lesserBoundaryCornerPos);
+        return () -> {
+            try {
+                this.regionStorage.write(this.claimId, corner[0], corner[1], compress(content));
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to save claim " + this.claimId + " to " + this.regionStorage.getFolder(), e);
+            }
+        };
+    }
+
+    @Override
+    protected void delete() {
+        try {
+            this.regionStorage.delete(this.claimId);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Unable to delete claim " + this.claimId + " from " + this.regionStorage.getFolder(), e);
+        }
+    }
+
+    // returns the x and z of a "x;y;z" position, claims with an unreadable corner go to region 0,0
+    private static int[] parseCorner(@Nullable String position) {
+        if (position != null) {
+            String[] elements = position.split(";");
+            if (elements.length >= 3) {
+                try {
+                    return new int[] {Integer.parseInt(elements[0]), Integer.parseInt(elements[2])};
+                } catch (NumberFormatException e) {
+                    // fall through
+                }
+            }
+        }
+        return new int[] {0, 0};
+    }
+}
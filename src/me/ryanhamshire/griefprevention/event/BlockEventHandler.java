@@ -24,7 +24,9 @@
  */
 package me.ryanhamshire.griefprevention.event;
 
+import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import me.ryanhamshire.griefprevention.ClaimFlag;
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPFlags;
@@ -36,10 +38,12 @@
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
-import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.claim.ClaimWorldIndex;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import net.minecraft.block.BlockLiquid;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.living.player.Player;
@@ -61,9 +65,12 @@
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -102,7 +109,7 @@ public void onDropItem(DropItemEvent.Dispense event) {
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Warn, Messages.NoDropsAllowed));
                 }
 
-                GriefPrevention.addLogEntry("1[Event: DropItemEvent.Dispense][RootCause: " + event.getCause().root() + "][CancelReason: " + reason + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "1[Event: DropItemEvent.Dispense][RootCause: {}][CancelReason: {}]", event.getCause().root(), reason);
                 event.setCancelled(true);
             }
         }
@@ -111,47 +118,60 @@ public void onDropItem(DropItemEvent.Dispense event) {
     // Handle fluids flowing into claims
     @Listener
     public void onBlockNotify(NotifyNeighborBlockEvent event) {
-        Optional<User> user = event.getCause().first(User.class);
         Optional<BlockSnapshot> blockSource = event.getCause().first(BlockSnapshot.class);
-
-        if (!user.isPresent() || !blockSource.isPresent() || !blockSource.get().getLocation().isPresent()) {
+        if (!blockSource.isPresent() || !blockSource.get().getLocation().isPresent()) {
             return;
         }
 
+        // wilderness fast path, only fire spreading outside claims needs a closer look
         Location<World> sourceLocation = blockSource.get().getLocation().get();
+        if (blockSource.get().getState().getType() != BlockTypes.FIRE && this.dataStore.isWilderness(sourceLocation.getExtent(),
+                sourceLocation.getBlockX() - 1, sourceLocation.getBlockZ() - 1, sourceLocation.getBlockX() + 1, sourceLocation.getBlockZ() + 1)) {
+            return;
+        }
+
+        Optional<User> user = event.getCause().first(User.class);
+        if (!user.isPresent()) {
+            return;
+        }
+
         if (!GriefPrevention.instance.claimsEnabledForWorld(sourceLocation.getExtent().getProperties())) {
             return;
         }
 
         Claim sourceClaim = this.dataStore.getClaimAt(sourceLocation, false, null);
+        UUID worldUniqueId = sourceLocation.getExtent().getUniqueId();
         Iterator<Direction> iterator = event.getNeighbors().keySet().iterator();
         while (iterator.hasNext()) {
             Direction direction = iterator.next();
-            Location<World> location = sourceLocation.getRelative(direction);
-            Claim targetClaim = this.dataStore.getClaimAt(location, false, null);
+            // neighbors are looked up by coordinates, the location is only built for messages
+            Vector3d offset = direction.toVector3d();
+            Claim targetClaim = this.dataStore.getClaimAt(worldUniqueId, sourceLocation.getBlockX() + offset.getFloorX(),
+                    sourceLocation.getBlockY() + offset.getFloorY(), sourceLocation.getBlockZ() + offset.getFloorZ(), false, sourceClaim);
             if (targetClaim == null) {
                 if (blockSource.get().getState().getType() == BlockTypes.FIRE) {
-                    if (!GriefPrevention.getActiveConfig(sourceLocation.getExtent().getProperties()).getConfig().claim.fireSpreadOutsideClaim) {
-                        GriefPrevention.addLogEntry("[Event: NotifyNeighborBlockEvent][RootCause: " + event.getCause().root() + "][BlockSnapshot: " + blockSource.get() + "][CancelReason: " + Messages.FireSpreadOutsideClaim + "]", CustomLogEntryTypes.Debug);
+                    if (!GriefPrevention.getEffectiveConfig(sourceLocation.getExtent().getProperties()).getConfig().claim.fireSpreadOutsideClaim) {
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: NotifyNeighborBlockEvent][RootCause: {}][BlockSnapshot: {}][CancelReason: {}]", event.getCause().root(), blockSource.get(), Messages.FireSpreadOutsideClaim);
                         iterator.remove();
                     }
                 }
             } else if (sourceClaim == null) {
-                GriefPrevention.addLogEntry("[Event: NotifyNeighborBlockEvent][RootCause: " + event.getCause().root() + "][Removed: " + direction + "][Location: " + location + "][CancelReason: " + Messages.BlockChangeFromWilderness + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(() -> "[Event: NotifyNeighborBlockEvent][RootCause: " + event.getCause().root() + "][Removed: " + direction + "][Location: "
+                        + sourceLocation.getRelative(direction) + "][CancelReason: " + Messages.BlockChangeFromWilderness + "]", CustomLogEntryTypes.Debug);
                 iterator.remove();
             } else if (sourceClaim != null) {
                 if (user.isPresent() && user.get() instanceof Player) {
                     Player player = (Player) user.get();
-                    if (targetClaim.doorsOpen && GriefPrevention.getActiveConfig(player.getWorld().getProperties())
-                            .getConfig().siege.winnerAccessibleBlocks
-                            .contains(location.getBlock().getType().getId())) {
+                    if (targetClaim.doorsOpen && GriefPrevention.getEffectiveConfig(player.getWorld().getProperties())
+                            .isWinnerAccessible(sourceLocation.getRelative(direction).getBlockType())) {
                         continue; // allow siege mode
                     }
                 }
                 Claim sourceTopLevelClaim = sourceClaim.parent != null ? sourceClaim.parent : sourceClaim;
                 Claim targetTopLevelClaim = targetClaim.parent != null ? targetClaim.parent : targetClaim;
                 if (sourceTopLevelClaim != targetTopLevelClaim) {
-                    GriefPrevention.addLogEntry("[Event: NotifyNeighborBlockEvent][RootCause: " + event.getCause().root() + "][Removed: " + direction + "][Location: " + location + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(() -> "[Event: NotifyNeighborBlockEvent][RootCause: " + event.getCause().root() + "][Removed: " + direction + "][Location: "
+                            + sourceLocation.getRelative(direction) + "]", CustomLogEntryTypes.Debug);
                     iterator.remove();
                 }
             }
@@ -161,6 +181,10 @@ public void onBlockNotify(NotifyNeighborBlockEvent event) {
     @IsCancelled(Tristate.UNDEFINED)
     @Listener
     public void onBlockCollide(CollideBlockEvent event) {
+        if (this.dataStore.isWilderness(event.getTargetLocation())) {
+            return;
+        }
+
         Optional<User> user = event.getCause().first(User.class);
 
         if (!user.isPresent()) {
@@ -175,18 +199,21 @@ public void onBlockCollide(CollideBlockEvent event) {
         if (claim != null) {
             if (user.isPresent() && user.get() instanceof Player) {
                 Player player = (Player) user.get();
-                if (claim.doorsOpen && GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().siege.winnerAccessibleBlocks
-                        .contains(event
-                                .getTargetBlock().getType().getId())) {
+                if (claim.doorsOpen && GriefPrevention.getEffectiveConfig(player.getWorld().getProperties())
+                        .isWinnerAccessible(event.getTargetBlock().getType())) {
                     return; // allow siege mode
                 }
             }
+            String denyReason;
             DataStore.generateMessages = false;
-            String denyReason = claim.allowAccess(user.get());
-            DataStore.generateMessages = true;
+            try {
+                denyReason = claim.allowAccess(user.get());
+            } finally {
+                DataStore.generateMessages = true;
+            }
             if (denyReason != null) {
                 if (event.getTargetLocation().getExtent().getProperties().getTotalTime() % 20 == 0L) { // log once a second to avoid spam
-                    GriefPrevention.addLogEntry("[Event: CollideBlockEvent][RootCause: " + event.getCause().root() + "][TargetBlock: " + event.getTargetBlock() + "][CancelReason: No permission.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: CollideBlockEvent][RootCause: {}][TargetBlock: {}][CancelReason: No permission.]", event.getCause().root(), event.getTargetBlock());
                  }
                 event.setCancelled(true);
             }
@@ -195,6 +222,10 @@ public void onBlockCollide(CollideBlockEvent event) {
 
     @Listener(order = Order.EARLY)
     public void onImpactEvent(CollideEvent.Impact event) {
+        if (this.dataStore.isWilderness(event.getImpactPoint())) {
+            return;
+        }
+
         Optional<User> user = event.getCause().first(User.class);
         if (!user.isPresent()) {
             return;
@@ -211,7 +242,7 @@ public void onImpactEvent(CollideEvent.Impact event) {
 
         String denyReason = targetClaim.allowAccess(user.get());
         if (denyReason != null) {
-            GriefPrevention.addLogEntry("[Event: CollideBlockEvent.Impact][RootCause: " + event.getCause().root() + "][ImpactPoint: " + event.getImpactPoint() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: CollideBlockEvent.Impact][RootCause: {}][ImpactPoint: {}][CancelReason: {}]", event.getCause().root(), event.getImpactPoint(), denyReason);
             event.setCancelled(true);
         }
     }
@@ -226,15 +257,26 @@ public void onBlockBreak(ChangeBlockEvent.Break event) {
         Optional<User> user = event.getCause().first(User.class);
         if (user.isPresent()) {
             List<Transaction<BlockSnapshot>> transactions = event.getTransactions();
-            for (Transaction<BlockSnapshot> transaction : transactions) {
-                // make sure the player is allowed to break at the location
-                String denyReason = GriefPrevention.instance.allowBreak(user.get(), transaction.getOriginal());
+            PlayerData playerData = this.dataStore.getPlayerData(event.getTargetWorld(), user.get().getUniqueId());
+            Claim[] claims = this.dataStore.getClaimsAt(event.getTargetWorld(), getPositions(transactions, true), false);
+            ClaimDecisionCache decisions = new ClaimDecisionCache();
+            for (int i = 0; i < transactions.size(); i++) {
+                BlockSnapshot original = transactions.get(i).getOriginal();
+                // make sure the player is allowed to break at the location, once per claim and block type
+                String denyReason;
+                if (decisions.contains(claims[i], original.getState().getType())) {
+                    denyReason = decisions.get(claims[i], original.getState().getType());
+                } else {
+                    denyReason = GriefPrevention.instance.allowBreak(user.get(), original, playerData, claims[i]);
+                    decisions.put(claims[i], original.getState().getType(), denyReason);
+                }
+
                 if (denyReason != null) {
                     if (event.getCause().root() instanceof Player) {
                         GriefPrevention.sendMessage((Player) event.getCause().root(), Text.of(TextMode.Err, denyReason));
                     }
 
-                    GriefPrevention.addLogEntry("[Event: BlockBreakEvent][RootCause: " + event.getCause().root() + "][FirstTransaction: " + event.getTransactions().get(0) + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: BlockBreakEvent][RootCause: {}][FirstTransaction: {}][CancelReason: {}]", event.getCause().root(), event.getTransactions().get(0), denyReason);
                     event.setCancelled(true);
                     return;
                 }
@@ -261,27 +303,46 @@ public void onBlockChangePost(ChangeBlockEvent.Post event) {
             sourceClaim = this.dataStore.getClaimAt(blockSource.get().getLocation().get(), false, null);
         }
 
-        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+        // resolve the claims of every transaction at once, then evaluate each distinct claim only once
+        List<Transaction<BlockSnapshot>> transactions = event.getTransactions();
+        Claim[] targetClaims = this.dataStore.getClaimsAt(event.getTargetWorld(), getPositions(transactions, false), false);
+        PlayerData playerData = null;
+        ClaimDecisionCache decisions = null;
+        if (!blockSource.isPresent()) {
+            playerData = this.dataStore.getPlayerData(event.getTargetWorld(), user.get().getUniqueId());
+            decisions = new ClaimDecisionCache();
+        }
+
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction<BlockSnapshot> transaction = transactions.get(i);
             Vector3i pos = transaction.getFinal().getPosition();
             if (blockSource.isPresent()) {
-                Claim targetClaim = this.dataStore.getClaimAt(transaction.getFinal().getLocation().get(), false, null);
+                Claim targetClaim = targetClaims[i];
                 if (sourceClaim == null && targetClaim != null) {
-                    GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Post][RootCause: " + event.getCause().root() + "][FirstTransaction: " + event.getTransactions().get(0) + "][Pos: " + pos + "][CancelReason: " + Messages.BlockChangeFromWilderness + ".]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Post][RootCause: {}][FirstTransaction: {}][Pos: {}][CancelReason: {}.]", event.getCause().root(), event.getTransactions().get(0), pos, Messages.BlockChangeFromWilderness);
                     event.setCancelled(true);
                     return;
                 } else if (sourceClaim != null && targetClaim != null) {
                     Claim sourceTopLevelClaim = sourceClaim.parent != null ? sourceClaim.parent : sourceClaim;
                     Claim targetTopLevelClaim = targetClaim.parent != null ? targetClaim.parent : targetClaim;
                     if (sourceTopLevelClaim != targetTopLevelClaim) {
-                        GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Post][RootCause: " + event.getCause().root() + "][Pos: " + pos + "][FirstTransaction: " + event.getTransactions().get(0) + "][CancelReason: Two different parent claims.]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Post][RootCause: {}][Pos: {}][FirstTransaction: {}][CancelReason: Two different parent claims.]", event.getCause().root(), pos, event.getTransactions().get(0));
                         event.setCancelled(true);
                         return;
                     }
                 }
             } else if (user.isPresent()) {
-                String denyReason = GriefPrevention.instance.allowBuild(user.get(), transaction.getFinal());
+                BlockSnapshot block = transaction.getFinal();
+                String denyReason;
+                if (decisions.contains(targetClaims[i], block.getState().getType())) {
+                    denyReason = decisions.get(targetClaims[i], block.getState().getType());
+                } else {
+                    denyReason = GriefPrevention.instance.allowBuild(user.get(), block, playerData, targetClaims[i]);
+                    decisions.put(targetClaims[i], block.getState().getType(), denyReason);
+                }
+
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Post][RootCause: " + event.getCause().root() + "][Pos: " + pos + "][FirstTransaction: " + event.getTransactions().get(0) + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Post][RootCause: {}][Pos: {}][FirstTransaction: {}][CancelReason: {}]", event.getCause().root(), pos, event.getTransactions().get(0), denyReason);
                     event.setCancelled(true);
                     return;
                 }
@@ -304,7 +365,7 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
 
         Player player = playerOpt.get();
         PlayerData playerData = this.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(player.getWorld().getProperties());
+        EffectiveWorldConfig activeConfig = GriefPrevention.getEffectiveConfig(player.getWorld().getProperties());
 
         Claim sourceClaim = null;
         Optional<BlockSnapshot> sourceBlock = event.getCause().first(BlockSnapshot.class);
@@ -312,15 +373,33 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
             sourceClaim = this.dataStore.getClaimAt(sourceBlock.get().getLocation().get(), true, null);
         }
 
-        for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
+        // resolve the claims of every transaction at once, then evaluate each distinct claim only once
+        // claims are resolved again if this event ends up creating or extending a claim
+        World world = event.getTargetWorld();
+        List<Transaction<BlockSnapshot>> transactions = event.getTransactions();
+        List<Vector3i> positions = getPositions(transactions, false);
+        ClaimWorldIndex claimIndex = this.dataStore.getClaimWorldIndex(world.getUniqueId());
+        int modificationCount = claimIndex.getModificationCount();
+        Claim[] targetClaims = this.dataStore.getClaimsAt(world, positions, true);
+        Claim[] buildClaims = this.dataStore.getClaimsAt(world, positions, false);
+        ClaimDecisionCache decisions = new ClaimDecisionCache();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction<BlockSnapshot> transaction = transactions.get(i);
             BlockSnapshot block = transaction.getFinal();
             if (!block.getLocation().isPresent()) {
                 continue;
             }
 
-            Claim targetClaim = this.dataStore.getClaimAt(block.getLocation().get(), true, null);
+            if (claimIndex.getModificationCount() != modificationCount) {
+                modificationCount = claimIndex.getModificationCount();
+                targetClaims = this.dataStore.getClaimsAt(world, positions, true);
+                buildClaims = this.dataStore.getClaimsAt(world, positions, false);
+                decisions = new ClaimDecisionCache();
+            }
+
+            Claim targetClaim = targetClaims[i];
             if (sourceBlock.isPresent() && sourceClaim == null && targetClaim != null) {
-                GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Place][RootCause: " + event.getCause().root() + "][BlockSnapshot: " + block + "][CancelReason: " + Messages.BlockChangeFromWilderness + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Place][RootCause: {}][BlockSnapshot: {}][CancelReason: {}]", event.getCause().root(), block, Messages.BlockChangeFromWilderness);
                 if (sourceBlock.isPresent() && sourceBlock.get().getState().getType() instanceof BlockLiquid) {
                     transaction.setValid(false);
                     continue;
@@ -330,9 +409,17 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
                 }
             }
 
-            String denyReason = GriefPrevention.instance.allowBuild(player, block);
+            // the world still holds the original block while placement is being checked
+            String denyReason;
+            if (decisions.contains(buildClaims[i], transaction.getOriginal().getState().getType())) {
+                denyReason = decisions.get(buildClaims[i], transaction.getOriginal().getState().getType());
+            } else {
+                denyReason = GriefPrevention.instance.allowBuild(player, block, playerData, buildClaims[i]);
+                decisions.put(buildClaims[i], transaction.getOriginal().getState().getType(), denyReason);
+            }
+
             if (denyReason != null) {
-                GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Place][RootCause: " + event.getCause().root() + "][BlockSnapshot: " + block + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Place][RootCause: {}][BlockSnapshot: {}][CancelReason: {}]", event.getCause().root(), block, denyReason);
                 if (sourceBlock.isPresent() && sourceBlock.get().getState().getType() instanceof BlockLiquid) {
                     transaction.setValid(false);
                     continue;
@@ -343,8 +430,8 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
             }
 
             if (targetClaim == null && !(event.getCause().root() instanceof Player) && block.getState().getType() == BlockTypes.FIRE) {
-                if (GPFlags.getClaimFlagPermission(targetClaim, GPFlags.FIRE_SPREAD) != Tristate.TRUE) {
-                    GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Place][RootCause: " + event.getCause().root() + "][BlockSnapshot: " + block + "][CancelReason: " + Messages.FireSpreadOutsideClaim + "]", CustomLogEntryTypes.Debug);
+                if (GPFlags.getClaimFlagPermission(targetClaim, ClaimFlag.FIRE_SPREAD) != Tristate.TRUE) {
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Place][RootCause: {}][BlockSnapshot: {}][CancelReason: {}]", event.getCause().root(), block, Messages.FireSpreadOutsideClaim);
                     event.setCancelled(true);
                     return;
                 }
@@ -377,9 +464,18 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
                 playerData.lastClaim = targetClaim;
 
                 // if the player has permission for the claim and he's placing UNDER the claim
-                if (block.getPosition().getY() <= targetClaim.lesserBoundaryCorner.getBlockY() && targetClaim.allowBuild(player, block) == null) {
-                    // extend the claim downward
-                    this.dataStore.extendClaim(targetClaim, block.getPosition().getY() - activeConfig.getConfig().claim.extendIntoGroundDistance);
+                if (block.getPosition().getY() <= targetClaim.getMinY()) {
+                    String denyReason;
+                    DataStore.generateMessages = false;
+                    try {
+                        denyReason = targetClaim.allowBuild(player, block);
+                    } finally {
+                        DataStore.generateMessages = true;
+                    }
+                    if (denyReason == null) {
+                        // extend the claim downward
+                        this.dataStore.extendClaim(targetClaim, block.getPosition().getY() - activeConfig.getConfig().claim.extendIntoGroundDistance);
+                    }
                 }
 
                 // allow for a build warning in the future
@@ -450,7 +546,7 @@ public void onSignChanged(ChangeSignEvent event) {
         }
 
         // send sign content to online administrators
-        if (!GriefPrevention.getActiveConfig(event.getTargetTile().getLocation().getExtent().getProperties())
+        if (!GriefPrevention.getEffectiveConfig(event.getTargetTile().getLocation().getExtent().getProperties())
                 .getConfig().general.generalAdminSignNotifications) {
             return;
         }
@@ -475,7 +571,7 @@ public void onSignChanged(ChangeSignEvent event) {
 
         // prevent signs with blocked IP addresses
         if (!player.hasPermission(GPPermissions.SPAM) && GriefPrevention.instance.containsBlockedIP(signMessage)) {
-            GriefPrevention.addLogEntry("[Event: ChangeBlockEvent.Post][RootCause: " + event.getCause().root() + "][Sign: " + event.getTargetTile() + "][CancelReason: contains blocked IP address " + signMessage + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ChangeBlockEvent.Post][RootCause: {}][Sign: {}][CancelReason: contains blocked IP address {}]", event.getCause().root(), event.getTargetTile(), signMessage);
             event.setCancelled(true);
             return;
         }
@@ -498,4 +594,37 @@ public void onSignChanged(ChangeSignEvent event) {
             }
         }
     }
+
+    private static List<Vector3i> getPositions(List<Transaction<BlockSnapshot>> transactions, boolean original) {
+        List<Vector3i> positions = new ArrayList<Vector3i>(transactions.size());
+        for (Transaction<BlockSnapshot> transaction : transactions) {
+            positions.add(original ? transaction.getOriginal().getPosition() : transaction.getFinal().getPosition());
+        }
+        return positions;
+    }
+
+    // permission results already computed while processing one event, by claim and block type
+    // the block type is part of the key as a few claim rules (farming, siege blocks) depend on it
+    private static class ClaimDecisionCache {
+
+        private final Map<Claim, Map<BlockType, String>> decisions = new HashMap<>();
+
+        boolean contains(Claim claim, BlockType blockType) {
+            Map<BlockType, String> claimDecisions = this.decisions.get(claim);
+            return claimDecisions != null && claimDecisions.containsKey(blockType);
+        }
+
+        String get(Claim claim, BlockType blockType) {
+            return this.decisions.get(claim).get(blockType);
+        }
+
+        void put(Claim claim, BlockType blockType, String denyReason) {
+            Map<BlockType, String> claimDecisions = this.decisions.get(claim);
+            if (claimDecisions == null) {
+                claimDecisions = new HashMap<>();
+                this.decisions.put(claim, claimDecisions);
+            }
+            claimDecisions.put(blockType, denyReason);
+        }
+    }
 }
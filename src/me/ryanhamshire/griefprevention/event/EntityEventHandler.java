@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.event;
 
 import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.ClaimFlag;
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPFlags;
@@ -35,7 +36,7 @@
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
-import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import net.minecraft.entity.EnumCreatureType;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.effect.potion.PotionEffectType;
@@ -116,7 +117,7 @@ public void onExplosion(ExplosionEvent.Pre event) {
             }
         }
 
-        if (GPFlags.getClaimFlagPermission(claim, GPPermissions.EXPLOSIONS) != Tristate.TRUE) {
+        if (GPFlags.getClaimFlagPermission(claim, ClaimFlag.EXPLOSIONS) != Tristate.TRUE) {
             event.setCancelled(true);
         }
     }
@@ -128,45 +129,64 @@ public void onSpawnEntity(SpawnEntityEvent event) {
             return;
         }
 
+        // claim rules only apply to entities spawning in claimed chunks
+        boolean inClaimedChunk = false;
+        for (Entity entity : event.getEntities()) {
+            if (!this.dataStore.isWilderness(entity.getLocation())) {
+                inClaimedChunk = true;
+                break;
+            }
+        }
+
         Optional<User> user = event.getCause().first(User.class);
-        event.filterEntities(new Predicate<Entity>() {
-            @Override
-            public boolean test(Entity entity) {
-                Claim claim = GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null);
-                if (claim != null) {
-                    if (user.isPresent()) {
-                        User spongeUser = user.get();
-                        if (claim.allowAccess(spongeUser) == null) {
-                            return true;
-                        }
+        if (inClaimedChunk && user.isPresent()) {
+            event.filterEntities(new Predicate<Entity>() {
+                @Override
+                public boolean test(Entity entity) {
+                    Claim claim = GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null);
+                    if (claim != null) {
+                        if (user.isPresent()) {
+                            User spongeUser = user.get();
+                            // only the outcome matters here, skip building the denial message
+                            String denyReason;
+                            DataStore.generateMessages = false;
+                            try {
+                                denyReason = claim.allowAccess(spongeUser);
+                            } finally {
+                                DataStore.generateMessages = true;
+                            }
+                            if (denyReason == null) {
+                                return true;
+                            }
 
-                        net.minecraft.entity.Entity nmsEntity = (net.minecraft.entity.Entity) entity;
-                        if (GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_ANY) == Tristate.TRUE) {
-                            return true;
-                        } else if (GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_ANY) == Tristate.FALSE) {
-                            GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Not allowed to spawn entities within claim.]", CustomLogEntryTypes.Debug);
-                            return false;
-                        } else if (nmsEntity.isCreatureType(EnumCreatureType.AMBIENT, false)
-                                && GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_AMBIENTS) == Tristate.FALSE) {
-                            GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Not allowed to spawn ambients within claim.]", CustomLogEntryTypes.Debug);
-                            return false;
-                        } else if (nmsEntity.isCreatureType(EnumCreatureType.WATER_CREATURE, false) && GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_AQUATICS) != Tristate.TRUE) {
-                            GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Not allowed to spawn aquatics within claim.]", CustomLogEntryTypes.Debug);
-                            return false;
-                        } else if (nmsEntity.isCreatureType(EnumCreatureType.MONSTER, false)
-                                && GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_MONSTERS) == Tristate.FALSE) {
-                            GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Not allowed to spawn monsters within claim.]", CustomLogEntryTypes.Debug);
-                            return false;
-                        } else if (nmsEntity.isCreatureType(EnumCreatureType.CREATURE, false)
-                                && GPFlags.getClaimFlagPermission(spongeUser, claim, GPPermissions.SPAWN_PASSIVES) == Tristate.FALSE) {
-                            GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Not allowed to spawn passives within claim.]", CustomLogEntryTypes.Debug);
-                            return false;
+                            net.minecraft.entity.Entity nmsEntity = (net.minecraft.entity.Entity) entity;
+                            if (GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_ANY) == Tristate.TRUE) {
+                                return true;
+                            } else if (GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_ANY) == Tristate.FALSE) {
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Not allowed to spawn entities within claim.]", event.getCause().root(), entity);
+                                return false;
+                            } else if (nmsEntity.isCreatureType(EnumCreatureType.AMBIENT, false)
+                                    && GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_AMBIENTS) == Tristate.FALSE) {
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Not allowed to spawn ambients within claim.]", event.getCause().root(), entity);
+                                return false;
+                            } else if (nmsEntity.isCreatureType(EnumCreatureType.WATER_CREATURE, false) && GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_AQUATICS) != Tristate.TRUE) {
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Not allowed to spawn aquatics within claim.]", event.getCause().root(), entity);
+                                return false;
+                            } else if (nmsEntity.isCreatureType(EnumCreatureType.MONSTER, false)
+                                    && GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_MONSTERS) == Tristate.FALSE) {
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Not allowed to spawn monsters within claim.]", event.getCause().root(), entity);
+                                return false;
+                            } else if (nmsEntity.isCreatureType(EnumCreatureType.CREATURE, false)
+                                    && GPFlags.getClaimFlagPermission(spongeUser, claim, ClaimFlag.SPAWN_PASSIVES) == Tristate.FALSE) {
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Not allowed to spawn passives within claim.]", event.getCause().root(), entity);
+                                return false;
+                            }
                         }
                     }
+                    return true;
                 }
-                return true;
-            }
-        });
+            });
+        }
 
         for (Entity entity : event.getEntities()) {
             final Location<World> location = entity.getLocation();
@@ -181,7 +201,7 @@ public boolean test(Entity entity) {
 
             if (player != null) {
                 if (stack != null && !stack.getItem().equals(ItemTypes.SPAWN_EGG)) {
-                    GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][FilterReason: Cannot spawn entities in creative worlds.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][FilterReason: Cannot spawn entities in creative worlds.]", event.getCause().root(), entity);
                     event.setCancelled(true);
                     return;
                 }
@@ -195,7 +215,7 @@ public boolean test(Entity entity) {
 
             String denyReason = claim.allowMoreEntities();
             if (denyReason != null) {
-                GriefPrevention.addLogEntry("[Event: SpawnEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: SpawnEntityEvent][RootCause: {}][Entity: {}][CancelReason: {}]", event.getCause().root(), entity, denyReason);
                 event.setCancelled(true);
             }
         }
@@ -237,7 +257,12 @@ public boolean protectEntity(Entity entity, Cause cause) {
         }
 
         DamageSource damageSource = damageSourceOpt.get();
-        Claim claim = this.dataStore.getClaimAt(entity.getLocation(), false, null);
+        Claim claim;
+        if (entity instanceof Player) {
+            claim = this.dataStore.getPlayerClaimTracker().getClaim((Player) entity);
+        } else {
+            claim = this.dataStore.getClaimAt(entity.getLocation(), false, null);
+        }
 
         // Protect owned entities anywhere in world
         if (damageSource instanceof EntityDamageSource && !((net.minecraft.entity.Entity) entity).isCreatureType(EnumCreatureType.MONSTER, false)) {
@@ -262,8 +287,8 @@ public boolean protectEntity(Entity entity, Cause cause) {
             } else if (claim != null) {
                 if (entity instanceof Player) {
                     if (entityDamageSource.getSource() instanceof Monster) {
-                        if (GPFlags.getClaimFlagPermission(claim, GPPermissions.MOB_PLAYER_DAMAGE) != Tristate.TRUE) {
-                            GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + cause.root() + "][Entity: " + entity + "][CancelReason: Monsters not allowed to attack players within claim.]", CustomLogEntryTypes.Debug);
+                        if (GPFlags.getClaimFlagPermission(claim, ClaimFlag.MOB_PLAYER_DAMAGE) != Tristate.TRUE) {
+                            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][Entity: {}][CancelReason: Monsters not allowed to attack players within claim.]", cause.root(), entity);
                             return true;
                         }
                     }
@@ -293,7 +318,7 @@ public boolean protectEntity(Entity entity, Cause cause) {
             }
         }
 
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(entity.getWorld().getProperties());
+        EffectiveWorldConfig activeConfig = GriefPrevention.getEffectiveConfig(entity.getWorld().getProperties());
         // if the attacker is a player and defender is a player (pvp combat)
         if (attacker != null && entity instanceof Player && GriefPrevention.instance.pvpRulesApply(attacker.getWorld())) {
             // FEATURE: prevent pvp in the first minute after spawn, and prevent pvp when one or both players have no inventory
@@ -306,13 +331,13 @@ public boolean protectEntity(Entity entity, Cause cause) {
                 // otherwise if protecting spawning players
                 if (activeConfig.getConfig().pvp.protectFreshSpawns) {
                     if (defenderData.pvpImmune) {
-                        GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + cause.root() + "][Entity: " + entity + "][CancelReason: Defender PVP Immune.]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][Entity: {}][CancelReason: Defender PVP Immune.]", cause.root(), entity);
                         GriefPrevention.sendMessage(attacker, TextMode.Err, Messages.ThatPlayerPvPImmune);
                         return true;
                     }
 
                     if (attackerData.pvpImmune) {
-                        GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + cause.root() + "][Entity: " + entity + "][CancelReason: Attacker PVP Immune.]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][Entity: {}][CancelReason: Attacker PVP Immune.]", cause.root(), entity);
                         GriefPrevention.sendMessage(attacker, TextMode.Err, Messages.CantFightWhileImmune);
                         return true;
                     }
@@ -320,7 +345,7 @@ public boolean protectEntity(Entity entity, Cause cause) {
 
                 // FEATURE: prevent players from engaging in PvP combat inside land claims (when it's disabled)
                 if (!activeConfig.getConfig().pvp.protectPlayersInClaims || !activeConfig.getConfig().pvp.protectPlayersInAdminClaims) {
-                    Claim attackerClaim = this.dataStore.getClaimAt(attacker.getLocation(), false, attackerData.lastClaim);
+                    Claim attackerClaim = this.dataStore.getPlayerClaimTracker().getClaim(attacker);
                     if (!attackerData.ignoreClaims) {
                         // ignore claims mode allows for pvp inside land claims
                         if (attackerClaim != null && !attackerData.inPvpCombat(defender.getWorld()) &&
@@ -329,17 +354,16 @@ public boolean protectEntity(Entity entity, Cause cause) {
                                         attackerClaim.isAdminClaim() && attackerClaim.parent != null
                                                 && activeConfig.getConfig().pvp.protectPlayersInAdminSubDivisions
                                         || !attackerClaim.isAdminClaim() && activeConfig.getConfig().pvp.protectPlayersInClaims)) {
-                            attackerData.lastClaim = attackerClaim;
                             PreventPvPEvent pvpEvent = new PreventPvPEvent(attackerClaim);
                             Sponge.getGame().getEventManager().post(pvpEvent);
                             if (!pvpEvent.isCancelled()) {
-                                GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + cause.root() + "][Entity: " + entity + "][CancelReason: Cannot fight while PVP Immune.]", CustomLogEntryTypes.Debug);
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][Entity: {}][CancelReason: Cannot fight while PVP Immune.]", cause.root(), entity);
                                 GriefPrevention.sendMessage(attacker, TextMode.Err, Messages.CantFightWhileImmune);
                                 return true;
                             }
                         }
 
-                        Claim defenderClaim = this.dataStore.getClaimAt(defender.getLocation(), false, defenderData.lastClaim);
+                        Claim defenderClaim = this.dataStore.getPlayerClaimTracker().getClaim(defender);
                         if (defenderClaim != null &&
                                 !defenderData.inPvpCombat(defender.getWorld()) &&
                                 (defenderClaim.isAdminClaim() && defenderClaim.parent == null
@@ -348,11 +372,10 @@ public boolean protectEntity(Entity entity, Cause cause) {
                                                 && activeConfig.getConfig().pvp.protectPlayersInAdminSubDivisions
                                         ||
                                         !defenderClaim.isAdminClaim() && activeConfig.getConfig().pvp.protectPlayersInClaims)) {
-                            defenderData.lastClaim = defenderClaim;
                             PreventPvPEvent pvpEvent = new PreventPvPEvent(defenderClaim);
                             Sponge.getGame().getEventManager().post(pvpEvent);
                             if (!pvpEvent.isCancelled()) {
-                                GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + cause.root() + "][Entity: " + entity + "][CancelReason: Player in PVP Safe Zone.]", CustomLogEntryTypes.Debug);
+                                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][Entity: {}][CancelReason: Player in PVP Safe Zone.]", cause.root(), entity);
                                 GriefPrevention.sendMessage(attacker, TextMode.Err, Messages.PlayerInPvPSafeZone);
                                 return true;
                             }
@@ -416,17 +439,17 @@ public void onEntityDamageMonitor(DamageEntityEvent event) {
 
         PlayerData defenderData = this.dataStore.getPlayerData(defender.getWorld().getProperties(), defender.getUniqueId());
         PlayerData attackerData = this.dataStore.getPlayerData(attacker.getWorld().getProperties(), attacker.getUniqueId());
-        Claim attackerClaim = this.dataStore.getClaimAt(attacker.getLocation(), false, null);
-        Claim defenderClaim = this.dataStore.getClaimAt(defender.getLocation(), false, null);
+        Claim attackerClaim = this.dataStore.getPlayerClaimTracker().getClaim(attacker);
+        Claim defenderClaim = this.dataStore.getPlayerClaimTracker().getClaim(defender);
 
         if (attacker != defender) {
             long now = Calendar.getInstance().getTimeInMillis();
             if (defenderClaim != null) {
-                if (GriefPrevention.getActiveConfig(defender.getWorld().getProperties()).getConfig().pvp.protectPlayersInClaims) {
+                if (GriefPrevention.getEffectiveConfig(defender.getWorld().getProperties()).getConfig().pvp.protectPlayersInClaims) {
                     return;
                 }
             } else if (attackerClaim != null) {
-                if (GriefPrevention.getActiveConfig(attacker.getWorld().getProperties()).getConfig().pvp.protectPlayersInClaims) {
+                if (GriefPrevention.getEffectiveConfig(attacker.getWorld().getProperties()).getConfig().pvp.protectPlayersInClaims) {
                     return;
                 }
             }
@@ -452,7 +475,7 @@ public void onEntityDropItemDeath(DropItemEvent.Destruct event) {
         Living livingEntity = (Living) event.getCause().root();
         // special rule for creative worlds: killed entities don't drop items or experience orbs
         if (GriefPrevention.instance.claimModeIsActive(livingEntity.getLocation().getExtent().getProperties(), ClaimsMode.Creative)) {
-            GriefPrevention.addLogEntry("[Event: DamageEntityEvent][RootCause: " + event.getCause().root() + "][CancelReason: Drops not allowed in creative worlds.]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DamageEntityEvent][RootCause: {}][CancelReason: Drops not allowed in creative worlds.]", event.getCause().root());
             event.setCancelled(true);
             return;
         }
@@ -468,7 +491,7 @@ public void onEntityDropItemDeath(DropItemEvent.Destruct event) {
                         event.getCause().first(Player.class).isPresent() ? event.getCause().first(Player.class).get().getName() : null,
                         player.getName(), true);
                 // don't drop items as usual, they will be sent to the siege winner
-                GriefPrevention.addLogEntry("[Event: DropItemEvent.Destruct][RootCause: " + event.getCause().root() + "][CancelReason: Siege in progress.]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DropItemEvent.Destruct][RootCause: {}][CancelReason: Siege in progress.]", event.getCause().root());
                 event.setCancelled(true);
             }
         }
@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.event;
 
 import com.google.common.collect.Sets;
+import me.ryanhamshire.griefprevention.ClaimFlag;
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPFlags;
@@ -39,9 +40,11 @@
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimCursor;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.CreateClaimResult;
-import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.claim.PlayerClaimTracker.ClaimTransition;
+import me.ryanhamshire.griefprevention.configuration.EffectiveWorldConfig;
 import me.ryanhamshire.griefprevention.task.AutoExtendClaimTask;
 import me.ryanhamshire.griefprevention.task.CheckForPortalTrapTask;
 import me.ryanhamshire.griefprevention.task.EquipShovelProcessingTask;
@@ -209,7 +212,7 @@ else if (!player.hasPermission(GPPermissions.SPAM) && this.bannedWordFinder.hasM
                 if (!playerData.profanityWarned) {
                     playerData.profanityWarned = true;
                     GriefPrevention.sendMessage(player, TextMode.Err, Messages.NoProfanity);
-                    GriefPrevention.addLogEntry("[Event: MessageChannelEvent.Chat][RootCause: " + event.getCause().root() + "][Message: " + event.getRawMessage() + "][CancelReason: " + this.dataStore.getMessage(Messages.NoProfanity) + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: MessageChannelEvent.Chat][RootCause: {}][Message: {}][CancelReason: {}]", event.getCause().root(), event.getRawMessage(), this.dataStore.getMessage(Messages.NoProfanity));
                     event.setCancelled(true);
                     return;
                 }
@@ -509,18 +512,19 @@ public void onPlayerCommandPreprocess(SendCommandEvent event) {
         }
 
         Player player = (Player) source;
-        if (!GriefPrevention.instance.claimsEnabledForWorld(player.getWorld().getProperties())) {
+        EffectiveWorldConfig effectiveConfig = GriefPrevention.getEffectiveConfig(player.getWorld().getProperties());
+        if (!effectiveConfig.claimsEnabled()) {
             return;
         }
         PlayerData playerData = null;
 
         // if a whisper
-        if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().general.whisperCommandList.contains(command) && args.length > 1) {
+        if (effectiveConfig.isWhisperCommand(command) && args.length > 1) {
             // determine target player, might be NULL
             Player targetPlayer = Sponge.getGame().getServer().getPlayer(args[1]).orElse(null);
 
             // if eavesdrop enabled and sender doesn't have the eavesdrop permission, eavesdrop
-            if (GriefPrevention.getActiveConfig(targetPlayer.getWorld().getProperties()).getConfig().general.broadcastWhisperedMessagesToAdmins &&
+            if (GriefPrevention.getEffectiveConfig(targetPlayer.getWorld().getProperties()).getConfig().general.broadcastWhisperedMessagesToAdmins &&
                     !source.hasPermission(GPPermissions.EAVES_DROP)) {
                 // except for when the recipient has eavesdrop permission
                 if (targetPlayer == null || !targetPlayer.hasPermission(GPPermissions.EAVES_DROP)) {
@@ -563,7 +567,7 @@ public void onPlayerCommandPreprocess(SendCommandEvent event) {
         if (playerData == null)
             playerData = this.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
 
-        if (playerData != null && (playerData.inPvpCombat(player.getWorld()) || playerData.siegeData != null) && GriefPrevention.getActiveConfig(((Player) source).getWorld().getProperties()).getConfig().pvp.blockedCommandList.contains(command)) {
+        if (playerData != null && (playerData.inPvpCombat(player.getWorld()) || playerData.siegeData != null) && effectiveConfig.isPvpBlockedCommand(command)) {
             event.setCancelled(true);
             GriefPrevention.sendMessage(event.getCause().first(Player.class).get(), TextMode.Err, Messages.CommandBannedInPvP);
             return;
@@ -597,22 +601,15 @@ public void onPlayerCommandPreprocess(SendCommandEvent event) {
         }
 
         // if requires access trust, check for permission
-        Claim claim = this.dataStore.getClaimAt(player.getLocation(), false, playerData.lastClaim);
-        isMonitoredCommand = false;
+        Claim claim = this.dataStore.getPlayerClaimTracker().getClaim(player);
         String lowerCaseMessage = message.toLowerCase();
-
-        for (String monitoredCommand : GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().claim.accessTrustCommands) {
-            if (lowerCaseMessage.startsWith(monitoredCommand)) {
-                isMonitoredCommand = true;
-                break;
-            }
-        }
+        isMonitoredCommand = effectiveConfig.isAccessTrustCommand(lowerCaseMessage);
 
         if (claim != null) {
             for (String blockedCommand : claim.getClaimData().getFlags().blockCommands) {
                 if (lowerCaseMessage.startsWith(blockedCommand)) {
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Err, Messages.BlockedCommand, lowerCaseMessage, claim.getOwnerName()));
-                    GriefPrevention.addLogEntry("[Event: MessageChannelEvent.Chat][RootCause: " + event.getCause().root() + "][Message: " + message + "][CancelReason: Blocked command.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: MessageChannelEvent.Chat][RootCause: {}][Message: {}][CancelReason: Blocked command.]", event.getCause().root(), message);
                     event.setCancelled(true);
                     return;
                 }
@@ -625,7 +622,7 @@ public void onPlayerCommandPreprocess(SendCommandEvent event) {
                 String reason = claim.allowAccess(player);
                 if (reason != null) {
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Err, reason));
-                    GriefPrevention.addLogEntry("[Event: MessageChannelEvent.Chat][RootCause: " + event.getCause().root() + "][Message: " + message + "][CancelReason: Monitored command.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: MessageChannelEvent.Chat][RootCause: {}][Message: {}][CancelReason: Monitored command.]", event.getCause().root(), message);
                     event.setCancelled(true);
                 }
             }
@@ -678,7 +675,7 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
                     if (cooldownRemaining > 0) {
                         // DAS BOOT!;
                         event.setMessage(Text.of("You must wait " + cooldownRemaining + " seconds before logging-in again."));
-                        GriefPrevention.addLogEntry("[Event: ClientConnectionEvent.Login][Player: " + event.getTargetUser() + "][CancelReason: login spam protection.]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: ClientConnectionEvent.Login][Player: {}][CancelReason: login spam protection.]", event.getTargetUser());
                         event.setCancelled(true);
                         return;
                     }
@@ -711,6 +708,9 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
     @Listener(order = Order.LAST)
     public void onPlayerJoin(ClientConnectionEvent.Join event) {
         Player player = event.getTargetEntity();
+        // permissions are usually (re)loaded on login
+        this.dataStore.invalidateGroupBonusBlocks(player.getUniqueId());
+        this.dataStore.getPlayerNameCache().put(player.getUniqueId(), player.getName());
         if (!GriefPrevention.instance.claimsEnabledForWorld(player.getWorld().getProperties())) {
             return;
         }
@@ -755,7 +755,7 @@ public void onPlayerJoin(ClientConnectionEvent.Join event) {
 
         // FEATURE: auto-ban accounts who use an IP address which was very
         // recently used by another banned account
-        if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().general.smartBan && !hasJoinedBefore) {
+        if (GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().general.smartBan && !hasJoinedBefore) {
             // search temporarily banned IP addresses for this one
             for (int i = 0; i < this.tempBannedIps.size(); i++) {
                 IpBanInfo info = this.tempBannedIps.get(i);
@@ -910,6 +910,8 @@ public void onPlayerKicked(KickPlayerEvent event) {
     @Listener(order= Order.LAST)
     public void onPlayerQuit(ClientConnectionEvent.Disconnect event) {
         Player player = event.getTargetEntity();
+        this.dataStore.getPlayerClaimTracker().removePlayer(player.getUniqueId());
+        this.dataStore.invalidateGroupBonusBlocks(player.getUniqueId());
         if (!GriefPrevention.instance.claimsEnabledForWorld(player.getWorld().getProperties())) {
             return;
         }
@@ -939,7 +941,7 @@ public void onPlayerQuit(ClientConnectionEvent.Disconnect event) {
         }
 
         // FEATURE: players in pvp combat when they log out will die
-        if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().pvp.punishPvpLogout && playerData.inPvpCombat(player.getWorld())) {
+        if (GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().pvp.punishPvpLogout && playerData.inPvpCombat(player.getWorld())) {
             player.offer(Keys.HEALTH, 0d);
         }
 
@@ -1006,7 +1008,7 @@ public void onPlayerDropItem(DropItemEvent.Dispense event) {
 
         // in creative worlds, dropping items is blocked
         if (GriefPrevention.instance.claimModeIsActive(player.getLocation().getExtent().getProperties(), ClaimsMode.Creative)) {
-            GriefPrevention.addLogEntry("[Event: DropItemEvent.Dispense][RootCause: " + event.getCause().root() + "][CancelReason: Drops not allowed in creative worlds.]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DropItemEvent.Dispense][RootCause: {}][CancelReason: Drops not allowed in creative worlds.]", event.getCause().root());
             event.setCancelled(true);
             return;
         }
@@ -1018,34 +1020,36 @@ public void onPlayerDropItem(DropItemEvent.Dispense event) {
         // them or give them away to other players before they are defeated
 
         // if in combat, don't let him drop it
-        if (!GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().pvp.allowCombatItemDrops && playerData.inPvpCombat(player.getWorld())) {
+        if (!GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().pvp.allowCombatItemDrops && playerData.inPvpCombat(player.getWorld())) {
             GriefPrevention.sendMessage(player, TextMode.Err, Messages.PvPNoDrop);
-            GriefPrevention.addLogEntry("[Event: DropItemEvent.Dispense][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.PvPNoDrop) + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DropItemEvent.Dispense][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.PvPNoDrop));
             event.setCancelled(true);
         }
 
         // if he's under siege, don't let him drop it
         else if (playerData.siegeData != null) {
             GriefPrevention.sendMessage(player, TextMode.Err, Messages.SiegeNoDrop);
-            GriefPrevention.addLogEntry("[Event: DropItemEvent.Dispense][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.SiegeNoDrop) + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DropItemEvent.Dispense][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.SiegeNoDrop));
             event.setCancelled(true);
         }
     }
 
-    private void handleEnterExitMessages(DisplaceEntityEvent event) {
-        if (!(event.getCause().root() instanceof Player)) {
+    private void handleEnterExitMessages(Player player, Location<World> toLocation) {
+        if (!GriefPrevention.instance.claimsEnabledForWorld(toLocation.getExtent().getProperties())) {
             return;
         }
 
-        Player player = (Player) event.getCause().root();
-        if (!GriefPrevention.instance.claimsEnabledForWorld(player.getWorld().getProperties())) {
+        // the tracker only looks claims up again once the player reaches another block
+        ClaimTransition transition = this.dataStore.getPlayerClaimTracker().move(player, toLocation);
+        if (transition == null) {
             return;
         }
-        Claim fromClaim = this.dataStore.getClaimAt(event.getFromTransform().getLocation(), false, null);
-        Claim toClaim = this.dataStore.getClaimAt(event.getToTransform().getLocation(), false, null);
+
+        Claim fromClaim = transition.fromClaim;
+        Claim toClaim = transition.toClaim;
         // enter
-        if (fromClaim != toClaim && toClaim != null) {
-            if (GPFlags.getClaimFlagPermission(toClaim, GPFlags.GREETING_MESSAGE) != Tristate.FALSE) {
+        if (toClaim != null) {
+            if (GPFlags.getClaimFlagPermission(toClaim, ClaimFlag.GREETING_MESSAGE) != Tristate.FALSE) {
                 Text welcomeMessage = toClaim.getClaimData().getGreetingMessage();
                 if (!welcomeMessage.equals(Text.of())) {
                     player.sendMessage(welcomeMessage);
@@ -1055,8 +1059,8 @@ private void handleEnterExitMessages(DisplaceEntityEvent event) {
         }
 
         // exit
-        if (fromClaim != null && fromClaim != toClaim) {
-            if (GPFlags.getClaimFlagPermission(fromClaim, GPFlags.FAREWELL_MESSAGE) != Tristate.FALSE) {
+        if (fromClaim != null) {
+            if (GPFlags.getClaimFlagPermission(fromClaim, ClaimFlag.FAREWELL_MESSAGE) != Tristate.FALSE) {
                 Text farewellMessage = fromClaim.getClaimData().getFarewellMessage();
                 if (!farewellMessage.equals(Text.of())) {
                     player.sendMessage(farewellMessage);
@@ -1065,13 +1069,19 @@ private void handleEnterExitMessages(DisplaceEntityEvent event) {
         }
     }
 
-    @Listener
+    // greetings and farewells are only sent once no listener cancelled the move
+    @Listener(order = Order.POST)
     public void onPlayerMove(DisplaceEntityEvent.Move event){
         if (!(event.getCause().root() instanceof Player)) {
             return;
         }
 
-        handleEnterExitMessages(event);
+        handleEnterExitMessages((Player) event.getCause().root(), event.getToTransform().getLocation());
+    }
+
+    @Listener(order = Order.POST)
+    public void onPlayerTeleported(DisplaceEntityEvent.Teleport.TargetPlayer event) {
+        handleEnterExitMessages(event.getTargetEntity(), event.getToTransform().getLocation());
     }
 
     // when a player teleports
@@ -1082,9 +1092,9 @@ public void onPlayerTeleport(DisplaceEntityEvent.Teleport.TargetPlayer event) {
             return;
         }
 
-        handleEnterExitMessages(event);
+        Claim sourceClaim = this.dataStore.getPlayerClaimTracker().getClaim(player, event.getFromTransform().getLocation());
         // these rules only apply to siege worlds only
-        if (!GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().siege.siegeEnabled) {
+        if (!GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().siege.siegeEnabled) {
             return;
         }
 
@@ -1094,13 +1104,12 @@ public void onPlayerTeleport(DisplaceEntityEvent.Teleport.TargetPlayer event) {
 
         // FEATURE: prevent players from using ender pearls to gain access to secured claims
         if (type.equals(TeleportTypes.ENDER_PEARL)) { // && GriefPrevention.instance.config_claims_enderPearlsRequireAccessTrust) {
-            Claim toClaim = this.dataStore.getClaimAt(event.getToTransform().getLocation(), false, playerData.lastClaim);
+            Claim toClaim = this.dataStore.getPlayerClaimTracker().getClaim(player, event.getToTransform().getLocation());
             if (toClaim != null) {
-                playerData.lastClaim = toClaim;
                 String denyReason = toClaim.allowAccess(player);
                 if (denyReason != null) {
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Err, denyReason));
-                    GriefPrevention.addLogEntry("[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     event.setCancelled(true);
                     ((EntityPlayer) player).inventory.addItemStackToInventory(new net.minecraft.item.ItemStack(Items.ender_pearl));
                 }
@@ -1110,19 +1119,18 @@ public void onPlayerTeleport(DisplaceEntityEvent.Teleport.TargetPlayer event) {
         // FEATURE: prevent teleport abuse to win sieges
 
         Location<World> source = event.getFromTransform().getLocation();
-        Claim sourceClaim = this.dataStore.getClaimAt(source, false, playerData.lastClaim);
         if (sourceClaim != null && sourceClaim.siegeData != null) {
             GriefPrevention.sendMessage(player, TextMode.Err, Messages.SiegeNoTeleport);
-            GriefPrevention.addLogEntry("[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.SiegeNoTeleport) + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.SiegeNoTeleport));
             event.setCancelled(true);
             return;
         }
 
         Location<World> destination = event.getToTransform().getLocation();
-        Claim destinationClaim = this.dataStore.getClaimAt(destination, false, null);
+        Claim destinationClaim = this.dataStore.getPlayerClaimTracker().getClaim(player, destination);
         if (destinationClaim != null && destinationClaim.siegeData != null) {
             GriefPrevention.sendMessage(player, TextMode.Err, Messages.BesiegedNoTeleport);
-            GriefPrevention.addLogEntry("[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.BesiegedNoTeleport) + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.BesiegedNoTeleport));
             event.setCancelled(true);
             return;
         }
@@ -1175,7 +1183,7 @@ public void onPlayerTeleport(DisplaceEntityEvent.Teleport.TargetPlayer event) {
                     String denyReason = claim.allowBuild(player, destination);
                     if (denyReason != null) {
                         // cancel and inform about the reason
-                        GriefPrevention.addLogEntry("[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: DisplaceEntityEvent.Teleport.TargetPlayer][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                         event.setCancelled(true);
                         GriefPrevention.sendMessage(player, TextMode.Err, Messages.NoBuildPortalPermission, claim.getOwnerName());
                     }
@@ -1198,13 +1206,13 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
             return;
         }
 
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(entity.getWorld().getProperties());
+        EffectiveWorldConfig activeConfig = GriefPrevention.getEffectiveConfig(entity.getWorld().getProperties());
         Optional<ItemStack> itemInHand = player.getItemInHand();
         if (itemInHand.isPresent()) {
             net.minecraft.item.ItemStack itemstack = (net.minecraft.item.ItemStack)(Object) itemInHand.get();
             if (GriefPrevention.isItemBanned(player, itemInHand.get().getItem(), itemstack.getMetadata())) {
                 GriefPrevention.sendMessage(player, TextColors.RED, Messages.ItemBanned, itemInHand.get().getItem().getId());
-                GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][CancelReason: Item " + itemInHand.get().getItem().getId() + " is banned.]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][CancelReason: Item {} is banned.]", event.getCause().root(), itemInHand.get().getItem().getId());
                 event.setCancelled(true);
                 return;
             }
@@ -1212,7 +1220,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
 
         Claim claim = this.dataStore.getClaimAt(entity.getLocation(), false, null);
         // allow entity protection to be overridden to allow management from other plugins
-        if (activeConfig.getConfig().claim.ignoredEntityIds.contains(entity.getType().getId())) {
+        if (activeConfig.isEntityIgnored(entity.getType().getId())) {
             return;
         }
 
@@ -1226,7 +1234,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
         if (claim != null) {
             String denyReason = claim.allowAccess(player, Optional.of(entity.getLocation()));
             if (denyReason != null) {
-                GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                 event.setCancelled(true);
                 return;
             }
@@ -1245,7 +1253,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
                     spongeEntity.setCreator(playerData.petGiveawayRecipient.getUniqueId());
                     playerData.petGiveawayRecipient = null;
                     GriefPrevention.sendMessage(player, TextMode.Success, Messages.PetGiveawayConfirmation);
-                    GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + event.getTargetEntity() + "][CancelReason: Pet giveaway.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][Entity: {}][CancelReason: Pet giveaway.]", event.getCause().root(), event.getTargetEntity());
                     event.setCancelled(true);
                 }
 
@@ -1259,7 +1267,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
                         message += "  " + GriefPrevention.instance.dataStore.getMessage(Messages.IgnoreClaimsAdvertisement);
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Err, message));
                 }
-                GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + event.getTargetEntity() + "][CancelReason: Entity is tamed.]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][Entity: {}][CancelReason: Entity is tamed.]", event.getCause().root(), event.getTargetEntity());
                 event.setCancelled(true);
                 return;
             }
@@ -1275,7 +1283,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
                     String denyReason = claim.allowAccess(player);
                     if (denyReason != null) {
                         GriefPrevention.sendMessage(player, Text.of(TextMode.Err, denyReason));
-                        GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + event.getTargetEntity() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][Entity: {}][CancelReason: {}]", event.getCause().root(), event.getTargetEntity(), denyReason);
                         event.setCancelled(true);
                         return;
                     }
@@ -1285,14 +1293,14 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
 
         // if the entity is an animal, apply container rules
         if (claim != null && entity instanceof Animal
-                || (entity.getType() == EntityTypes.VILLAGER && GPFlags.getClaimFlagPermission(claim, GPPermissions.VILLAGER_TRADING) == Tristate.FALSE)) {
+                || (entity.getType() == EntityTypes.VILLAGER && GPFlags.getClaimFlagPermission(claim, ClaimFlag.VILLAGER_TRADING) == Tristate.FALSE)) {
                 String denyReason = claim.allowAccess(player, Optional.of(entity.getLocation()));
             if (denyReason != null) {
                 String message = GriefPrevention.instance.dataStore.getMessage(Messages.NoDamageClaimedEntity, claim.getOwnerName());
                 if (player.hasPermission(GPPermissions.IGNORE_CLAIMS))
                     message += "  " + GriefPrevention.instance.dataStore.getMessage(Messages.IgnoreClaimsAdvertisement);
                 GriefPrevention.sendMessage(player, Text.of(TextMode.Err, message));
-                GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + event.getTargetEntity() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][Entity: {}][CancelReason: {}]", event.getCause().root(), event.getTargetEntity(), denyReason);
                 event.setCancelled(true);
                 return;
             }
@@ -1307,7 +1315,7 @@ public void onPlayerInteractEntity(InteractEntityEvent event) {
                 if (denyReason != null) {
                     event.setCancelled(true);
                     GriefPrevention.sendMessage(player, Text.of(TextMode.Err, denyReason));
-                    GriefPrevention.addLogEntry("[Event: InteractEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + event.getTargetEntity() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractEntityEvent][RootCause: {}][Entity: {}][CancelReason: {}]", event.getCause().root(), event.getTargetEntity(), denyReason);
                     return;
                 }
             }
@@ -1351,8 +1359,8 @@ public void onPlayerPickupItem(CollideEntityEvent event) {
                     // decide whether or not to apply this feature to this situation
                     // (depends on the world where it happens)
                     boolean isPvPWorld = GriefPrevention.instance.pvpRulesApply(world);
-                    if ((isPvPWorld && GriefPrevention.getActiveConfig(world.getProperties()).getConfig().pvp.protectItemsOnDeathPvp) ||
-                            (!isPvPWorld && GriefPrevention.getActiveConfig(world.getProperties()).getConfig().pvp.protectItemsOnDeathNonPvp)) {
+                    if ((isPvPWorld && GriefPrevention.getEffectiveConfig(world.getProperties()).getConfig().pvp.protectItemsOnDeathPvp) ||
+                            (!isPvPWorld && GriefPrevention.getEffectiveConfig(world.getProperties()).getConfig().pvp.protectItemsOnDeathNonPvp)) {
 
                         // allow the player to receive a message about how to unlock any drops
                         playerData.dropsAreUnlocked = false;
@@ -1360,8 +1368,8 @@ public void onPlayerPickupItem(CollideEntityEvent event) {
                     }
 
                     // if locked, don't allow pickup
-                    if (!playerData.dropsAreUnlocked && GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().general.lockItemDrops) {
-                        GriefPrevention.addLogEntry("[Event: CollideEntityEvent][RootCause: " + event.getCause().root() + "][Entity: " + entity + "][CancelReason: Drops are locked.]", CustomLogEntryTypes.Debug);
+                    if (!playerData.dropsAreUnlocked && GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().general.lockItemDrops) {
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: CollideEntityEvent][RootCause: {}][Entity: {}][CancelReason: Drops are locked.]", event.getCause().root(), entity);
                         event.setCancelled(true);
 
                         // if hasn't been instructed how to unlock, send explanatory
@@ -1383,7 +1391,7 @@ public void onPlayerPickupItem(CollideEntityEvent event) {
             return;
 
         // if we're preventing spawn camping and the player was previously empty handed...
-        if (GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().pvp.protectFreshSpawns && !player.getItemInHand().isPresent()) {
+        if (GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().pvp.protectFreshSpawns && !player.getItemInHand().isPresent()) {
             // if that player is currently immune to pvp
             PlayerData playerData = this.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
             if (playerData.pvpImmune) {
@@ -1391,7 +1399,7 @@ public void onPlayerPickupItem(CollideEntityEvent event) {
                 long now = Calendar.getInstance().getTimeInMillis();
                 long elapsedSinceLastSpawn = now - playerData.lastSpawn;
                 if (elapsedSinceLastSpawn < 10000) {
-                    GriefPrevention.addLogEntry("[Event: CollideEntityEvent][RootCause: " + event.getCause().root() + "][CancelReason: Player PVP Immune.]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: CollideEntityEvent][RootCause: {}][CancelReason: Player PVP Immune.]", event.getCause().root());
                     event.setCancelled(true);
                     return;
                 }
@@ -1421,7 +1429,7 @@ public void onItemHeldChange(ChangeInventoryEvent.Held event) {
         // if he's switching to the golden shovel
         for (SlotTransaction transaction : event.getTransactions()) {
             ItemStackSnapshot newItemStack = transaction.getFinal();
-            if (newItemStack != null && newItemStack.getType().getId().equals(GriefPrevention.getActiveConfig(player.get().getWorld().getProperties()).getConfig().claim.modificationTool)) {
+            if (newItemStack != null && GriefPrevention.getEffectiveConfig(player.get().getWorld().getProperties()).isModificationTool(newItemStack.getType())) {
                 // give the player his available claim blocks count and claiming
                 // instructions, but only if he keeps the shovel equipped for a
                 // minimum time, to avoid mouse wheel spam
@@ -1478,7 +1486,7 @@ public void onPlayerInteractBlockPrimary(InteractBlockEvent.Primary event) {
                 GriefPrevention.sendMessage((Player) event.getCause().root(), Text.of(TextMode.Err, denyReason));
             }
 
-            GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Primary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Primary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
             event.setCancelled(true);
             return;
         }
@@ -1497,7 +1505,7 @@ public void onPlayerInteractBlockPrimary(InteractBlockEvent.Primary event) {
 
                         denyReason = claim.allowBuild(player, clickedBlock.getLocation().get());
                         if (denyReason != null) {
-                            GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Primary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Primary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                             event.setCancelled(true);
                             GriefPrevention.sendMessage(player, TextMode.Err, Messages.BuildingOutsideClaims, denyReason);
                             //player.sendBlockChange(clickedBlock.getLocation().get(), clickedBlock.getState().getType(), adjacentBlock.getData());
@@ -1527,10 +1535,10 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
         Optional<ItemStack> itemInHand = player.getItemInHand();
 
         // Check if item is banned
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(player.getWorld().getProperties());
+        EffectiveWorldConfig activeConfig = GriefPrevention.getEffectiveConfig(player.getWorld().getProperties());
         if (itemInHand.isPresent() && GriefPrevention.isItemBanned(player, itemInHand.get().getItem(), (
                 ((net.minecraft.item.ItemStack)(Object) itemInHand.get()).getMetadata()))) {
-            GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][Item: " + itemInHand.get() + "][CancelReason: Item " + itemInHand.get().getItem().getId() + " is banned.]", CustomLogEntryTypes.Debug);
+            GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][Item: {}][CancelReason: Item {} is banned.]", event.getCause().root(), itemInHand.get(), itemInHand.get().getItem().getId());
             GriefPrevention.sendMessage(player, TextColors.RED, Messages.ItemBanned, itemInHand.get().getItem().getId());
             event.setCancelled(true);
             return;
@@ -1546,7 +1554,7 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
         Claim playerClaim = this.dataStore.getClaimAt(clickedBlock.getLocation().get(), false, null);
         if (playerData != null && !playerData.ignoreClaims && playerClaim != null) {
             // following a siege where the defender lost, the claim will allow everyone access for a time
-            if (playerClaim.doorsOpen && activeConfig.getConfig().siege.winnerAccessibleBlocks.contains(clickedBlock.getState().getType().getId())) {
+            if (playerClaim.doorsOpen && activeConfig.isWinnerAccessible(clickedBlock.getState().getType())) {
                 if (clickedBlock.getState().getType() == BlockTypes.IRON_DOOR) {
                     ((BlockDoor) clickedBlock.getState().getType()).toggleDoor((net.minecraft.world.World) player.getWorld(), VecHelper.toBlockPos(event.getTargetBlock().getPosition()), true);
                 }
@@ -1566,7 +1574,7 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
                         result = true;
                         event.setUseBlockResult(Tristate.TRUE);
                     }
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     if (!result) {
                         if (event.getCause().root() instanceof Player) {
                             GriefPrevention.sendMessage((Player) event.getCause().root(), Text.of(TextMode.Err, denyReason));
@@ -1587,7 +1595,7 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
 
             // block container use while under siege, so players can't hide items from attackers
             if (playerData.siegeData != null) {
-                GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.SiegeNoContainers) + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.SiegeNoContainers));
                 GriefPrevention.sendMessage(player, TextMode.Err, Messages.SiegeNoContainers);
                 event.setCancelled(true);
                 return;
@@ -1595,7 +1603,7 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
 
             // block container use during pvp combat, same reason
             if (playerData.inPvpCombat(player.getWorld())) {
-                GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.PvPNoContainers) + "]", CustomLogEntryTypes.Debug);
+                GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.PvPNoContainers));
                 GriefPrevention.sendMessage(player, TextMode.Err, Messages.PvPNoContainers);
                 event.setCancelled(true);
                 return;
@@ -1607,7 +1615,7 @@ public void onPlayerInteractBlockSecondary(InteractBlockEvent.Secondary event) {
                 String denyReason = claim.allowAccess(player, clickedBlock.getLocation());
                 if (denyReason != null) {
                     event.setCancelled(true);
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     return;
                 }
@@ -1632,7 +1640,7 @@ else if ((clickedBlock.getState().getType() == BlockTypes.STONE_BUTTON || clicke
 
                 String denyReason = claim.allowAccess(player);
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     event.setCancelled(true);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     return;
@@ -1650,7 +1658,7 @@ else if (clickedBlock.getState().getType() == BlockTypes.CAKE) {
 
                 String denyReason = claim.allowAccess(player);
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     event.setCancelled(true);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     return;
@@ -1673,7 +1681,7 @@ else if (clickedBlock.getState().getType() == BlockTypes.NOTEBLOCK ||
             if (claim != null) {
                 String denyReason = claim.allowBuild(player, clickedBlock);
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     event.setCancelled(true);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     return;
@@ -1695,7 +1703,7 @@ else if (clickedBlock.getState().getType() == BlockTypes.NOTEBLOCK ||
             if ((materialInHand == ItemTypes.DYE || materialInHand == ItemTypes.ARMOR_STAND || materialInHand == ItemTypes.MONSTER_EGG)) {
                 String denyReason = GriefPrevention.instance.allowBuild(player, clickedBlock);
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     event.setCancelled(true);
                 }
@@ -1710,7 +1718,7 @@ else if (materialInHand == ItemTypes.BOAT) {
                 if (claim != null) {
                     String denyReason = claim.allowAccess(player);
                     if (denyReason != null) {
-                        GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                         GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                         event.setCancelled(true);
                     }
@@ -1726,7 +1734,7 @@ else if ((materialInHand == ItemTypes.MINECART || materialInHand == ItemTypes.MI
                 // player needs build permission at this location
                 String denyReason = GriefPrevention.instance.allowBuild(player, clickedBlock);
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     event.setCancelled(true);
                     return;
@@ -1741,7 +1749,7 @@ else if ((materialInHand == ItemTypes.MINECART || materialInHand == ItemTypes.MI
 
                 denyReason = claim.allowMoreEntities();
                 if (denyReason != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                     GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                     event.setCancelled(true);
                     return;
@@ -1767,7 +1775,7 @@ else if (player.getItemInHand().isPresent() && !player.getItemInHand().get().get
                 if (claim != null) {
                     String denyReason = GriefPrevention.instance.allowBreak(player, clickedBlock);
                     if (denyReason != null) {
-                        GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + denyReason + "]", CustomLogEntryTypes.Debug);
+                        GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), denyReason);
                         GriefPrevention.sendMessage(player, TextMode.Err, denyReason);
                         event.setCancelled(true);
                         return;
@@ -1777,7 +1785,7 @@ else if (player.getItemInHand().isPresent() && !player.getItemInHand().get().get
                 return;
             }
 
-                if (!materialInHand.getId().equals(activeConfig.getConfig().claim.modificationTool)) {
+                if (!activeConfig.isModificationTool(materialInHand)) {
                     return;
                 }
 
@@ -1785,7 +1793,7 @@ else if (player.getItemInHand().isPresent() && !player.getItemInHand().get().get
                 if (playerData == null)
                     playerData = this.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
                 if (playerData.siegeData != null) {
-                    GriefPrevention.addLogEntry("[Event: InteractBlockEvent.Secondary][RootCause: " + event.getCause().root() + "][CancelReason: " + this.dataStore.getMessage(Messages.SiegeNoShovel) + "]", CustomLogEntryTypes.Debug);
+                    GriefPrevention.addLogEntry(CustomLogEntryTypes.Debug, "[Event: InteractBlockEvent.Secondary][RootCause: {}][CancelReason: {}]", event.getCause().root(), this.dataStore.getMessage(Messages.SiegeNoShovel));
                     GriefPrevention.sendMessage(player, TextMode.Err, Messages.SiegeNoShovel);
                     event.setCancelled(true);
                     return;
@@ -1869,7 +1877,7 @@ else if (player.getItemInHand().isPresent() && !player.getItemInHand().get().get
                     if (minHeight < 0)
                         minHeight = 0;
 
-                    Claim cachedClaim = null;
+                    ClaimCursor claimCursor = new ClaimCursor(this.dataStore, clickedBlock.getLocation().get().getExtent(), false);
                     for (int x = minx; x <= maxx; x++) {
                         for (int z = minz; z <= maxz; z++) {
                             // circular brush
@@ -1902,15 +1910,13 @@ else if (clickedBlock.getState().getType() == BlockTypes.FLOWING_WATER || clicke
 
                             // fill bottom to top
                             for (int y = minHeight; y <= maxHeight; y++) {
-                                BlockSnapshot block = clickedBlock.getLocation().get().getExtent().createSnapshot(x, y, z);
-
                                 // respect claims
-                                Claim claim = this.dataStore.getClaimAt(block.getLocation().get(), false, cachedClaim);
-                                if (claim != null) {
-                                    cachedClaim = claim;
+                                if (claimCursor.moveTo(x, y, z) != null) {
                                     break;
                                 }
 
+                                BlockSnapshot block = clickedBlock.getLocation().get().getExtent().createSnapshot(x, y, z);
+
                                 // only replace air, spilling water, snow, long grass
                                 if (block.getState().getType() == BlockTypes.AIR || block.getState().getType() == BlockTypes.SNOW
                                         || (block.getState().getType() == BlockTypes.WATER)
@@ -2085,7 +2091,7 @@ else if (clickedBlock.getState().getType() == BlockTypes.FLOWING_WATER || clicke
                         // if resizing someone else's claim, make a log entry
                         if (!playerID.equals(playerData.claimResizing.ownerID) && playerData.claimResizing.parent == null) {
                             GriefPrevention.addLogEntry(player.getName() + " resized " + playerData.claimResizing.getOwnerName() + "'s claim at "
-                                    + GriefPrevention.getfriendlyLocationString(playerData.claimResizing.lesserBoundaryCorner) + ".");
+                                    + GriefPrevention.getfriendlyLocationString(playerData.claimResizing.getLesserBoundaryCorner()) + ".");
                         }
 
                         // if increased to a sufficiently large size and no subdivisions yet, send subdivision instructions
@@ -2383,10 +2389,10 @@ else if (playerData.shovelMode == ShovelMode.Subdivide) {
 
     // helper methods for player events
     private void investigateClaim(Player player, BlockSnapshot clickedBlock, Optional<ItemStack> itemInHand) {
-        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(player.getWorld().getProperties());
+        EffectiveWorldConfig activeConfig = GriefPrevention.getEffectiveConfig(player.getWorld().getProperties());
 
         // if he's investigating a claim
-        if (!itemInHand.isPresent() || !itemInHand.get().getItem().getId().equals(activeConfig.getConfig().claim.investigationTool)) {
+        if (!itemInHand.isPresent() || !activeConfig.isInvestigationTool(itemInHand.get().getItem())) {
             return;
         }
         // if holding shift (sneaking), show all claims in area
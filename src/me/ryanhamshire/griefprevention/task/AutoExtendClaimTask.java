@@ -95,7 +95,7 @@ private int getLowestBuiltY() {
     }
 
     private boolean yTooSmall(int y) {
-        return y == 0 || y <= GriefPrevention.getActiveConfig(this.claim.world.getProperties()).getConfig().claim.maxClaimDepth;
+        return y == 0 || y <= GriefPrevention.getEffectiveConfig(this.claim.world.getProperties()).getConfig().claim.maxClaimDepth;
     }
 
     // runs in the main execution thread, where it can safely change claims and
@@ -37,6 +37,8 @@
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
 
 //FEATURE: automatically remove inactive claims
 //runs every 1 minute in the main thread
@@ -59,6 +61,14 @@ public void run() {
             return;
         }
 
+        // claims active within the shortest expiration can't expire, storage that indexes activity leaves them out
+        Set<UUID> inactiveClaimIds = null;
+        int expirationDays = this.getShortestExpirationDays(GriefPrevention.getActiveConfig(this.worldProperties));
+        if (expirationDays > 0) {
+            inactiveClaimIds = GriefPrevention.instance.dataStore.getClaimIdsInactiveSince(this.worldProperties,
+                    Instant.now().minus(Duration.ofDays(expirationDays)));
+        }
+
         Iterator<Claim> iterator = ((ArrayList) claimList.clone()).iterator();
         while (iterator.hasNext()) {
             Claim claim = iterator.next();
@@ -67,6 +77,10 @@ public void run() {
                 continue;
             }
 
+            if (inactiveClaimIds != null && claim.parent == null && !inactiveClaimIds.contains(claim.id)) {
+                continue;
+            }
+
             // determine area of the default chest claim
             int areaOfDefaultClaim = 0;
             GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(this.worldProperties);
@@ -136,4 +150,16 @@ else if (activeConfig.getConfig().claim.daysInactiveClaimExpiration > 0) {
             }
         }
     }
+
+    // 0 when no claims expire
+    private int getShortestExpirationDays(GriefPreventionConfig<?> activeConfig) {
+        int shortest = 0;
+        for (int days : new int[] {activeConfig.getConfig().claim.daysInactiveChestClaimExpiration,
+                activeConfig.getConfig().claim.daysInactiveClaimExpiration, activeConfig.getConfig().claim.daysInactiveUnusedClaimExpiration}) {
+            if (days > 0 && (shortest == 0 || days < shortest)) {
+                shortest = days;
+            }
+        }
+        return shortest;
+    }
 }
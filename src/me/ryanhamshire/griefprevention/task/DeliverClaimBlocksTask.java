@@ -51,7 +51,7 @@ public DeliverClaimBlocksTask(Player player) {
     public void run() {
         if (this.player == null) {
             for (World world : Sponge.getServer().getWorlds()) {
-                if (GriefPrevention.getActiveConfig(world.getProperties()).getConfig().claim.claimBlocksEarned  <= 0) {
+                if (GriefPrevention.getEffectiveConfig(world.getProperties()).getConfig().claim.claimBlocksEarned  <= 0) {
                     return;
                 }
 
@@ -83,7 +83,7 @@ public void run() {
                         (lastLocation == null || lastLocation.getPosition().distanceSquared(player.getLocation().getPosition()) >= 0) &&
                         !((net.minecraft.block.Block) player.getLocation().getBlockType()).getMaterial().isLiquid()) {
                     // add blocks
-                    int accruedBlocks = GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().claim.claimBlocksEarned / 6;
+                    int accruedBlocks = GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).getConfig().claim.claimBlocksEarned / 6;
                     if (accruedBlocks < 0) {
                         accruedBlocks = 1;
                     }
@@ -47,8 +47,8 @@ public EquipShovelProcessingTask(Player player) {
     @Override
     public void run() {
         // if he's not holding the golden shovel anymore, do nothing
-        if (!player.getItemInHand().isPresent() || (!player.getItemInHand().get().getItem().getId()
-                .equals(GriefPrevention.getActiveConfig(player.getWorld().getProperties()).getConfig().claim.modificationTool))) {
+        if (!player.getItemInHand().isPresent()
+                || !GriefPrevention.getEffectiveConfig(player.getWorld().getProperties()).isModificationTool(player.getItemInHand().get().getItem())) {
             return;
         }
 
@@ -24,10 +24,12 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
+import com.flowpowered.math.vector.Vector3i;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimCursor;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockTypes;
@@ -75,16 +77,16 @@ public void run() {
         // band around the outside of the chunk)
         // those data were sent to the processing thread for referernce
         // purposes, but aren't part of the area selected for restoration
-        Claim cachedClaim = null;
+        World world = this.lesserCorner.getExtent();
+        ClaimCursor claimCursor = new ClaimCursor(GriefPrevention.instance.dataStore, world, false);
         for (int x = 1; x < this.snapshots.length - 1; x++) {
             for (int z = 1; z < this.snapshots[0][0].length - 1; z++) {
                 for (int y = this.miny; y < this.snapshots[0].length; y++) {
                     BlockSnapshot blockUpdate = this.snapshots[x][y][z];
-                    BlockState currentBlock = blockUpdate.getLocation().get().getBlock();
+                    Vector3i position = blockUpdate.getPosition();
+                    BlockState currentBlock = world.getBlock(position.getX(), position.getY(), position.getZ());
                     if (blockUpdate.getState() != currentBlock) {
-                        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(blockUpdate.getLocation().get(), false, cachedClaim);
-                        if (claim != null) {
-                            cachedClaim = claim;
+                        if (claimCursor.moveTo(position.getX(), position.getY(), position.getZ()) != null) {
                             break;
                         }
 
@@ -51,7 +51,7 @@ public void run() {
         Player attacker = this.siegeData.attacker;
 
         // where is the defender?
-        Claim defenderClaim = dataStore.getClaimAt(defender.getLocation(), false, null);
+        Claim defenderClaim = dataStore.getPlayerClaimTracker().getClaim(defender);
 
         // if this is a new claim and he has some permission there, extend the siege to include it
         if (defenderClaim != null) {
@@ -0,0 +1,141 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import org.spongepowered.api.CatalogType;
+import org.spongepowered.api.Sponge;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+// set of catalog types compiled from config id lists such as "minecraft:wool" or "minecraft:wool:14"
+// ids are resolved through the registry once so matching is an identity lookup plus a meta bit test
+public final class CatalogTypeMatcher<T extends CatalogType> {
+
+    private static final int[] NO_EXTRA_META = new int[0];
+
+    private final Map<T, Entry> entries;
+
+    private CatalogTypeMatcher(Map<T, Entry> entries) {
+        this.entries = entries;
+    }
+
+    // ids that don't resolve to a registered type can never match and are dropped
+    public static <T extends CatalogType> CatalogTypeMatcher<T> compile(Class<T> typeClass, List<String> ids) {
+        Map<T, Entry> entries = new IdentityHashMap<>();
+        for (String id : ids) {
+            String typeId = id;
+            int meta = -1;
+            // a meta suffix follows the namespaced id, e.g. "minecraft:wool:14"
+            int separator = id.lastIndexOf(':');
+            if (separator > id.indexOf(':') && isNumber(id, separator + 1)) {
+                typeId = id.substring(0, separator);
+                meta = Integer.parseInt(id.substring(separator + 1));
+            }
+
+            Optional<T> type = Sponge.getRegistry().getType(typeClass, typeId);
+            if (!type.isPresent()) {
+                continue;
+            }
+
+            Entry entry = entries.get(type.get());
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(type.get(), entry);
+            }
+            entry.add(meta);
+        }
+        return new CatalogTypeMatcher<>(entries);
+    }
+
+    private static boolean isNumber(String id, int start) {
+        if (start >= id.length() || id.length() - start > 9) {
+            return false;
+        }
+        for (int i = start; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    // matches types listed without a meta value
+    public boolean contains(@Nullable T type) {
+        if (type == null) {
+            return false;
+        }
+        Entry entry = this.entries.get(type);
+        return entry != null && entry.anyMeta;
+    }
+
+    public boolean contains(@Nullable T type, int meta) {
+        if (type == null) {
+            return false;
+        }
+        Entry entry = this.entries.get(type);
+        return entry != null && entry.matches(meta);
+    }
+
+    private static final class Entry {
+
+        boolean anyMeta;
+        // meta values 0-63 are kept as bits, anything above goes to a small sorted array
+        long metaMask;
+        int[] extraMeta = NO_EXTRA_META;
+
+        void add(int meta) {
+            if (meta < 0) {
+                this.anyMeta = true;
+            } else if (meta < 64) {
+                this.metaMask |= 1L << meta;
+            } else if (Arrays.binarySearch(this.extraMeta, meta) < 0) {
+                int[] extra = Arrays.copyOf(this.extraMeta, this.extraMeta.length + 1);
+                extra[extra.length - 1] = meta;
+                Arrays.sort(extra);
+                this.extraMeta = extra;
+            }
+        }
+
+        boolean matches(int meta) {
+            if (this.anyMeta) {
+                return true;
+            }
+            if (meta >= 0 && meta < 64) {
+                return (this.metaMask & (1L << meta)) != 0;
+            }
+            return meta >= 64 && Arrays.binarySearch(this.extraMeta, meta) >= 0;
+        }
+    }
+}
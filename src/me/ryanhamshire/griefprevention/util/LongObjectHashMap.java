@@ -0,0 +1,242 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// open addressing hash map keyed by primitive longs
+// lookups never box the key or allocate, which matters for hot paths such as claim lookups by chunk
+public class LongObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // key 0 can't be told apart from an empty slot so it is stored on the side
+    private boolean hasZeroKey = false;
+    private V zeroValue;
+
+    private long[] keys;
+    private V[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        this.allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR)));
+    }
+
+    // copies another map, the values themselves are shared
+    public LongObjectHashMap(LongObjectHashMap<V> other) {
+        this.hasZeroKey = other.hasZeroKey;
+        this.zeroValue = other.zeroValue;
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+        this.mask = other.mask;
+        this.resizeThreshold = other.resizeThreshold;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return this.hasZeroKey;
+        }
+
+        return this.indexOf(key) >= 0;
+    }
+
+    public V get(long key) {
+        if (key == 0) {
+            return this.zeroValue;
+        }
+
+        int index = this.indexOf(key);
+        return index >= 0 ? this.values[index] : null;
+    }
+
+    public V put(long key, V value) {
+        if (key == 0) {
+            V previous = this.zeroValue;
+            if (!this.hasZeroKey) {
+                this.hasZeroKey = true;
+                this.size++;
+            }
+            this.zeroValue = value;
+            return previous;
+        }
+
+        int index = mix(key) & this.mask;
+        while (this.keys[index] != 0) {
+            if (this.keys[index] == key) {
+                V previous = this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size >= this.resizeThreshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    public V remove(long key) {
+        if (key == 0) {
+            if (!this.hasZeroKey) {
+                return null;
+            }
+
+            V previous = this.zeroValue;
+            this.hasZeroKey = false;
+            this.zeroValue = null;
+            this.size--;
+            return previous;
+        }
+
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        V previous = this.values[index];
+        this.size--;
+        this.shiftKeys(index);
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.values, null);
+        this.hasZeroKey = false;
+        this.zeroValue = null;
+        this.size = 0;
+    }
+
+    // returns a copy of all values currently in the map
+    public List<V> values() {
+        List<V> result = new ArrayList<>(this.size);
+        if (this.hasZeroKey) {
+            result.add(this.zeroValue);
+        }
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0) {
+                result.add(this.values[i]);
+            }
+        }
+        return result;
+    }
+
+    private int indexOf(long key) {
+        int index = mix(key) & this.mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    // backward shift deletion keeps probe chains intact without tombstones
+    private void shiftKeys(int index) {
+        int last;
+        while (true) {
+            last = index;
+            index = (index + 1) & this.mask;
+            long current;
+            while (true) {
+                if ((current = this.keys[index]) == 0) {
+                    this.keys[last] = 0;
+                    this.values[last] = null;
+                    return;
+                }
+                int slot = mix(current) & this.mask;
+                if (last <= index ? last >= slot || slot > index : last >= slot && slot > index) {
+                    break;
+                }
+                index = (index + 1) & this.mask;
+            }
+            this.keys[last] = current;
+            this.values[last] = this.values[index];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        this.allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = mix(key) & this.mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        return Math.min(capacity, 1 << 30);
+    }
+
+    // murmur3 finalizer, spreads packed coordinates across the table
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// two dimensional R-tree over inclusive integer rectangles (Guttman, quadratic split)
+// used to answer rectangle intersection and nearest neighbour queries on the x/z plane
+public class RTree<T> {
+
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private Node root = new Node(true);
+    private int size = 0;
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.root = new Node(true);
+        this.size = 0;
+    }
+
+    public void insert(T value, int minX, int minZ, int maxX, int maxZ) {
+        this.insert(new Entry<T>(value, minX, minZ, maxX, maxZ));
+        this.size++;
+    }
+
+    // removes a value by identity, the bounds must be the ones it was inserted with
+    public boolean remove(T value, int minX, int minZ, int maxX, int maxZ) {
+        Node leaf = this.findLeaf(this.root, value, minX, minZ, maxX, maxZ);
+        if (leaf == null) {
+            return false;
+        }
+
+        for (int i = 0; i < leaf.count; i++) {
+            if (((Entry<?>) leaf.items[i]).value == value) {
+                leaf.removeAt(i);
+                break;
+            }
+        }
+
+        this.condenseTree(leaf);
+        this.size--;
+        return true;
+    }
+
+    // collects every value whose rectangle intersects the given one
+    @SuppressWarnings("unchecked")
+    public <C extends Collection<? super T>> C search(int minX, int minZ, int maxX, int maxZ, C results) {
+        if (this.size == 0) {
+            return results;
+        }
+
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(this.root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int i = 0; i < node.count; i++) {
+                Rect item = node.items[i];
+                if (!item.intersects(minX, minZ, maxX, maxZ)) {
+                    continue;
+                }
+
+                if (node.leaf) {
+                    results.add(((Entry<T>) item).value);
+                } else {
+                    stack.push((Node) item);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    // returns whether any rectangle intersects the given one, stopping at the first match
+    public boolean intersectsAny(int minX, int minZ, int maxX, int maxZ) {
+        if (this.size == 0) {
+            return false;
+        }
+
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(this.root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int i = 0; i < node.count; i++) {
+                Rect item = node.items[i];
+                if (item.intersects(minX, minZ, maxX, maxZ)) {
+                    if (node.leaf) {
+                        return true;
+                    }
+                    stack.push((Node) item);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // returns the value whose rectangle is closest to the point, or null when empty
+    // a point inside a rectangle has distance 0 to it
+    @SuppressWarnings("unchecked")
+    public T nearest(int x, int z) {
+        if (this.size == 0) {
+            return null;
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+        queue.add(new Candidate(this.root, this.root.distanceSquared(x, z)));
+        while (!queue.isEmpty()) {
+            Rect rect = queue.poll().rect;
+            if (rect instanceof Entry) {
+                return ((Entry<T>) rect).value;
+            }
+
+            Node node = (Node) rect;
+            for (int i = 0; i < node.count; i++) {
+                queue.add(new Candidate(node.items[i], node.items[i].distanceSquared(x, z)));
+            }
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> values() {
+        List<T> results = new ArrayList<T>(this.size);
+        ArrayDeque<Node> stack = new ArrayDeque<Node>();
+        stack.push(this.root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int i = 0; i < node.count; i++) {
+                if (node.leaf) {
+                    results.add(((Entry<T>) node.items[i]).value);
+                } else {
+                    stack.push((Node) node.items[i]);
+                }
+            }
+        }
+        return results;
+    }
+
+    private void insert(Rect item) {
+        Node node = this.chooseNode(item, 0);
+        node.add(item);
+        this.adjustTree(node);
+    }
+
+    // descends to the node at the given height (0 = leaf) needing the least enlargement
+    private Node chooseNode(Rect item, int height) {
+        Node node = this.root;
+        while (node.height() > height) {
+            Rect best = null;
+            long bestEnlargement = Long.MAX_VALUE;
+            long bestArea = Long.MAX_VALUE;
+            for (int i = 0; i < node.count; i++) {
+                Rect child = node.items[i];
+                long area = child.area();
+                long enlargement = Rect.area(Math.min(child.minX, item.minX), Math.min(child.minZ, item.minZ),
+                        Math.max(child.maxX, item.maxX), Math.max(child.maxZ, item.maxZ)) - area;
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = (Node) best;
+        }
+        return node;
+    }
+
+    // walks up from a modified node fixing bounds and splitting overflowing nodes
+    private void adjustTree(Node node) {
+        while (node != null) {
+            Node sibling = null;
+            if (node.count > MAX_ENTRIES) {
+                sibling = this.split(node);
+            } else {
+                node.recalculateBounds();
+            }
+
+            if (node.parent == null) {
+                if (sibling != null) {
+                    Node newRoot = new Node(false);
+                    newRoot.add(node);
+                    newRoot.add(sibling);
+                    this.root = newRoot;
+                }
+                return;
+            }
+
+            if (sibling != null) {
+                node.parent.add(sibling);
+            }
+            node = node.parent;
+        }
+    }
+
+    private Node split(Node node) {
+        Rect[] items = new Rect[node.count];
+        System.arraycopy(node.items, 0, items, 0, node.count);
+        boolean[] assigned = new boolean[items.length];
+
+        // pick the two seeds that would waste the most area if grouped together
+        int seedA = 0;
+        int seedB = 1;
+        long worstWaste = Long.MIN_VALUE;
+        for (int i = 0; i < items.length; i++) {
+            for (int j = i + 1; j < items.length; j++) {
+                long waste = Rect.area(Math.min(items[i].minX, items[j].minX), Math.min(items[i].minZ, items[j].minZ),
+                        Math.max(items[i].maxX, items[j].maxX), Math.max(items[i].maxZ, items[j].maxZ)) - items[i].area() - items[j].area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        node.clearItems();
+        Node sibling = new Node(node.leaf);
+        node.add(items[seedA]);
+        sibling.add(items[seedB]);
+        assigned[seedA] = true;
+        assigned[seedB] = true;
+        int remaining = items.length - 2;
+
+        while (remaining > 0) {
+            // make sure both groups end up with the minimum number of entries
+            if (node.count + remaining == MIN_ENTRIES || sibling.count + remaining == MIN_ENTRIES) {
+                Node target = node.count + remaining == MIN_ENTRIES ? node : sibling;
+                for (int i = 0; i < items.length; i++) {
+                    if (!assigned[i]) {
+                        target.add(items[i]);
+                        assigned[i] = true;
+                    }
+                }
+                break;
+            }
+
+            // otherwise assign the entry with the strongest preference for one group
+            int next = -1;
+            long nextDifference = -1;
+            long nextEnlargementA = 0;
+            long nextEnlargementB = 0;
+            for (int i = 0; i < items.length; i++) {
+                if (assigned[i]) {
+                    continue;
+                }
+                long enlargementA = node.enlargement(items[i]);
+                long enlargementB = sibling.enlargement(items[i]);
+                long difference = Math.abs(enlargementA - enlargementB);
+                if (difference > nextDifference) {
+                    next = i;
+                    nextDifference = difference;
+                    nextEnlargementA = enlargementA;
+                    nextEnlargementB = enlargementB;
+                }
+            }
+
+            Node target;
+            if (nextEnlargementA != nextEnlargementB) {
+                target = nextEnlargementA < nextEnlargementB ? node : sibling;
+            } else if (node.area() != sibling.area()) {
+                target = node.area() < sibling.area() ? node : sibling;
+            } else {
+                target = node.count <= sibling.count ? node : sibling;
+            }
+            target.add(items[next]);
+            assigned[next] = true;
+            remaining--;
+        }
+
+        return sibling;
+    }
+
+    private Node findLeaf(Node node, T value, int minX, int minZ, int maxX, int maxZ) {
+        for (int i = 0; i < node.count; i++) {
+            Rect item = node.items[i];
+            if (node.leaf) {
+                if (((Entry<?>) item).value == value) {
+                    return node;
+                }
+            } else if (item.contains(minX, minZ, maxX, maxZ)) {
+                Node leaf = this.findLeaf((Node) item, value, minX, minZ, maxX, maxZ);
+                if (leaf != null) {
+                    return leaf;
+                }
+            }
+        }
+        return null;
+    }
+
+    // removes underfull nodes on the way up and reinserts their orphaned items
+    private void condenseTree(Node node) {
+        List<Node> eliminated = new ArrayList<Node>();
+        while (node.parent != null) {
+            Node parent = node.parent;
+            if (node.count < MIN_ENTRIES) {
+                parent.remove(node);
+                eliminated.add(node);
+            } else {
+                node.recalculateBounds();
+            }
+            node = parent;
+        }
+        node.recalculateBounds();
+
+        while (!this.root.leaf && this.root.count == 1) {
+            this.root = (Node) this.root.items[0];
+            this.root.parent = null;
+        }
+
+        // reinsert leaf entries of eliminated subtrees so tree heights never need to match
+        for (Node orphan : eliminated) {
+            this.reinsertEntries(orphan);
+        }
+    }
+
+    private void reinsertEntries(Node node) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                this.insert(node.items[i]);
+            } else {
+                this.reinsertEntries((Node) node.items[i]);
+            }
+        }
+    }
+
+    private static class Rect {
+
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
+
+        boolean intersects(int minX, int minZ, int maxX, int maxZ) {
+            return this.minX <= maxX && this.maxX >= minX && this.minZ <= maxZ && this.maxZ >= minZ;
+        }
+
+        boolean contains(int minX, int minZ, int maxX, int maxZ) {
+            return this.minX <= minX && this.maxX >= maxX && this.minZ <= minZ && this.maxZ >= maxZ;
+        }
+
+        long area() {
+            return area(this.minX, this.minZ, this.maxX, this.maxZ);
+        }
+
+        long enlargement(Rect other) {
+            return area(Math.min(this.minX, other.minX), Math.min(this.minZ, other.minZ), Math.max(this.maxX, other.maxX),
+                    Math.max(this.maxZ, other.maxZ)) - this.area();
+        }
+
+        long distanceSquared(int x, int z) {
+            long dx = x < this.minX ? (long) this.minX - x : x > this.maxX ? (long) x - this.maxX : 0;
+            long dz = z < this.minZ ? (long) this.minZ - z : z > this.maxZ ? (long) z - this.maxZ : 0;
+            return dx * dx + dz * dz;
+        }
+
+        static long area(int minX, int minZ, int maxX, int maxZ) {
+            return ((long) maxX - minX + 1) * ((long) maxZ - minZ + 1);
+        }
+    }
+
+    private static final class Entry<T> extends Rect {
+
+        final T value;
+
+        Entry(T value, int minX, int minZ, int maxX, int maxZ) {
+            this.value = value;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+    }
+
+    private static final class Node extends Rect {
+
+        final boolean leaf;
+        Node parent;
+        Rect[] items = new Rect[MAX_ENTRIES + 1];
+        int count;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        int height() {
+            int height = 0;
+            Node node = this;
+            while (!node.leaf) {
+                node = (Node) node.items[0];
+                height++;
+            }
+            return height;
+        }
+
+        void add(Rect item) {
+            this.items[this.count++] = item;
+            if (item instanceof Node) {
+                ((Node) item).parent = this;
+            }
+            if (this.count == 1) {
+                this.minX = item.minX;
+                this.minZ = item.minZ;
+                this.maxX = item.maxX;
+                this.maxZ = item.maxZ;
+            } else {
+                this.minX = Math.min(this.minX, item.minX);
+                this.minZ = Math.min(this.minZ, item.minZ);
+                this.maxX = Math.max(this.maxX, item.maxX);
+                this.maxZ = Math.max(this.maxZ, item.maxZ);
+            }
+        }
+
+        void remove(Rect item) {
+            for (int i = 0; i < this.count; i++) {
+                if (this.items[i] == item) {
+                    this.removeAt(i);
+                    return;
+                }
+            }
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(this.items, index + 1, this.items, index, this.count - index - 1);
+            this.items[--this.count] = null;
+        }
+
+        void clearItems() {
+            for (int i = 0; i < this.count; i++) {
+                this.items[i] = null;
+            }
+            this.count = 0;
+        }
+
+        void recalculateBounds() {
+            if (this.count == 0) {
+                return;
+            }
+            this.minX = Integer.MAX_VALUE;
+            this.minZ = Integer.MAX_VALUE;
+            this.maxX = Integer.MIN_VALUE;
+            this.maxZ = Integer.MIN_VALUE;
+            for (int i = 0; i < this.count; i++) {
+                Rect item = this.items[i];
+                this.minX = Math.min(this.minX, item.minX);
+                this.minZ = Math.min(this.minZ, item.minZ);
+                this.maxX = Math.max(this.maxX, item.maxX);
+                this.maxZ = Math.max(this.maxZ, item.maxZ);
+            }
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final Rect rect;
+        final long distance;
+
+        Candidate(Rect rect, long distance) {
+            this.rect = rect;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Long.compare(this.distance, other.distance);
+        }
+    }
+}